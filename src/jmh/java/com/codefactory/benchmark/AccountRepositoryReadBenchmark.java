@@ -0,0 +1,72 @@
+package com.codefactory.benchmark;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.repository.InMemoryAccountRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read throughput of {@link InMemoryAccountRepository#getBankAccount(String)} at increasing thread counts.
+ * With lock-free reads, ops/ms should grow close to linearly with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AccountRepositoryReadBenchmark {
+
+    @Param({"10000"})
+    private int accounts;
+
+    private InMemoryAccountRepository accountRepository;
+    private String[] ibans;
+
+    @Setup
+    public void setup() {
+        accountRepository = new InMemoryAccountRepository();
+        ibans = new String[accounts];
+        final Instant now = Instant.now();
+        for (int i = 0; i < accounts; i++) {
+            ibans[i] = String.format("DE00123451230%09d", i);
+            accountRepository.saveAccount(Account.builder()
+                    .IBAN(ibans[i])
+                    .accountType(AccountType.CHECKING_ACCOUNT)
+                    .balance(1_000)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<Account> getBankAccount1Thread() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Optional<Account> getBankAccount2Threads() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Account> getBankAccount4Threads() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Optional<Account> getBankAccount8Threads() {
+        return lookup();
+    }
+
+    private Optional<Account> lookup() {
+        return accountRepository.getBankAccount(ibans[ThreadLocalRandom.current().nextInt(ibans.length)]);
+    }
+}
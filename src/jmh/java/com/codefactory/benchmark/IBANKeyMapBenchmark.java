@@ -0,0 +1,74 @@
+package com.codefactory.benchmark;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.repository.IBANKey;
+import com.codefactory.domain.repository.LongAccountMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency and footprint of the {@link LongAccountMap} keyed by {@link IBANKey} against the
+ * {@code ConcurrentHashMap<String, Account>} it replaced.
+ * <p>
+ * The packed lookups include parsing the IBAN into its key, as the repository does. The footprint of each map,
+ * without the accounts themselves, is printed per account once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IBANKeyMapBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int accounts;
+
+    private ConcurrentMap<String, Account> stringKeyed;
+    private LongAccountMap longKeyed;
+    private String[] ibans;
+
+    @Setup
+    public void setup() {
+        stringKeyed = new ConcurrentHashMap<>();
+        longKeyed = new LongAccountMap();
+        ibans = new String[accounts];
+        final Account[] all = new Account[accounts];
+        final Instant now = Instant.now();
+        for (int i = 0; i < accounts; i++) {
+            ibans[i] = IBANKey.toIBAN(i + 1);
+            all[i] = Account.builder()
+                    .IBAN(ibans[i])
+                    .accountType(AccountType.CHECKING_ACCOUNT)
+                    .balance(1_000)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build();
+            stringKeyed.put(ibans[i], all[i]);
+            longKeyed.put(IBANKey.of(ibans[i]), all[i]);
+        }
+
+        final long accountBytes = GraphLayout.parseInstance((Object) all).totalSize();
+        System.out.printf("%nbytes per account: ConcurrentHashMap<String, Account>=%.1f, LongAccountMap=%.1f%n",
+                (double) (GraphLayout.parseInstance(stringKeyed, all).totalSize() - accountBytes) / accounts,
+                (double) (GraphLayout.parseInstance(longKeyed, all).totalSize() - accountBytes) / accounts);
+    }
+
+    @Benchmark
+    public Account stringKeyedLookup() {
+        return stringKeyed.get(randomIBAN());
+    }
+
+    @Benchmark
+    public Account longKeyedLookup() {
+        return longKeyed.get(IBANKey.of(randomIBAN()));
+    }
+
+    private String randomIBAN() {
+        return ibans[ThreadLocalRandom.current().nextInt(ibans.length)];
+    }
+}
@@ -0,0 +1,101 @@
+package com.codefactory.benchmark;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.repository.InMemoryAccountRepository;
+import com.codefactory.service.BankAccountService;
+import com.codefactory.service.TransactionService;
+import com.codefactory.service.TransferResult;
+import com.codefactory.service.aggregate.AccountAggregates;
+import com.codefactory.service.audit.AuditLog;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.coalescing.DepositCoalescer;
+import com.codefactory.service.hot.HotAccounts;
+import com.codefactory.service.iban.IBANAllocator;
+import com.codefactory.service.lock.StripedAccountLock;
+import com.codefactory.service.shard.LedgerShards;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deposits and transfers on the lock-based engine against the sharded single-writer engine, see {@link LedgerShards}.
+ * <p>
+ * Throughput and the latency distribution are measured at 1, 4 and 8 threads, once with 16 accounts, where most
+ * requests contend for the same few accounts, and once with 100000. The sharded engine runs one shard per CPU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public abstract class LedgerEngineBenchmark {
+
+    private final static long INITIAL_BALANCE = 1_000_000_000L;
+
+    @Param({"striped-locks", "sharded"})
+    private String engine;
+
+    @Param({"16", "100000"})
+    private int accounts;
+
+    private TransactionService transactionService;
+    private LedgerShards ledgerShards;
+    private AuditLog auditLog;
+    private String[] ibans;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        final Clock clock = Clock.systemUTC();
+        final StripedAccountLock accountLock = new StripedAccountLock(1024);
+        final InMemoryAccountRepository accountRepository = new InMemoryAccountRepository();
+        auditLog = new AuditLog(clock, 1 << 16, 1.0, line -> {
+        });
+        ledgerShards = new LedgerShards(accountLock, "sharded".equals(engine), 0, 1024);
+        final AccountAggregates accountAggregates = new AccountAggregates(accountRepository);
+        final AccountChangeStream accountChangeStream = new AccountChangeStream(clock, false, 1, null, 0);
+        final HotAccounts hotAccounts = new HotAccounts(accountRepository, accountLock, accountAggregates,
+                accountChangeStream, false, 1000, 0);
+        final BankAccountService bankAccountService = new BankAccountService(clock, accountRepository, accountLock,
+                new IBANAllocator(1, 1024), auditLog, hotAccounts, accountAggregates, accountChangeStream);
+        transactionService = new TransactionService(clock, bankAccountService, accountLock, auditLog, hotAccounts,
+                ledgerShards, new DepositCoalescer(false, 0, 1), accountAggregates, accountChangeStream);
+
+        ibans = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ibans[i] = accountRepository.saveAccount(bankAccountService.buildAccount(AccountType.CHECKING_ACCOUNT,
+                    INITIAL_BALANCE));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        ledgerShards.close();
+        auditLog.close();
+    }
+
+    @Benchmark
+    public TransferResult creditAccount() {
+        return transactionService.creditAccount(1, ibans[ThreadLocalRandom.current().nextInt(ibans.length)]);
+    }
+
+    @Benchmark
+    public TransferResult transferMoney() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int from = random.nextInt(ibans.length);
+        final int to = (from + 1 + random.nextInt(ibans.length - 1)) % ibans.length;
+        return transactionService.transferMoney(1, ibans[from], ibans[to]);
+    }
+
+    @Threads(1)
+    public static class OneThread extends LedgerEngineBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends LedgerEngineBenchmark {
+    }
+
+    @Threads(8)
+    public static class EightThreads extends LedgerEngineBenchmark {
+    }
+}
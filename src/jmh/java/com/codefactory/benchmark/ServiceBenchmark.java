@@ -0,0 +1,133 @@
+package com.codefactory.benchmark;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.repository.InMemoryAccountRepository;
+import com.codefactory.service.BankAccountService;
+import com.codefactory.service.TransactionService;
+import com.codefactory.service.TransferResult;
+import com.codefactory.service.aggregate.AccountAggregates;
+import com.codefactory.service.audit.AuditLog;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.coalescing.DepositCoalescer;
+import com.codefactory.service.hot.HotAccounts;
+import com.codefactory.service.iban.IBANAllocator;
+import com.codefactory.service.lock.StripedAccountLock;
+import com.codefactory.service.shard.LedgerShards;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the service and repository hot paths, wired the way the application wires them.
+ * <p>
+ * Each benchmark runs at every account population and, through the nested subclasses, at 1, 4 and 8 threads. The
+ * accounts are rebuilt before every iteration, so ledgers and accounts created by the previous iteration do not
+ * pile up. One in four accounts is a private loan account; transfers only run between checking accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public abstract class ServiceBenchmark {
+
+    private final static long INITIAL_BALANCE = 1_000_000_000L;
+    private final static Set<AccountType> LOAN_ACCOUNTS = EnumSet.of(AccountType.PRIVATE_LOAN_ACCOUNT);
+
+    @Param({"1000", "100000"})
+    private int accounts;
+
+    private InMemoryAccountRepository accountRepository;
+    private BankAccountService bankAccountService;
+    private TransactionService transactionService;
+    private AuditLog auditLog;
+    private String[] ibans;
+    private String[] checkingIbans;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        final Clock clock = Clock.systemUTC();
+        final StripedAccountLock accountLock = new StripedAccountLock(1024);
+        accountRepository = new InMemoryAccountRepository();
+        auditLog = new AuditLog(clock, 1 << 16, 1.0, line -> {
+        });
+        final AccountAggregates accountAggregates = new AccountAggregates(accountRepository);
+        final AccountChangeStream accountChangeStream = new AccountChangeStream(clock, false, 1, null, 0);
+        final HotAccounts hotAccounts = new HotAccounts(accountRepository, accountLock, accountAggregates,
+                accountChangeStream, false, 1000, 0);
+        bankAccountService = new BankAccountService(clock, accountRepository, accountLock, new IBANAllocator(1, 1024),
+                auditLog, hotAccounts, accountAggregates, accountChangeStream);
+        transactionService = new TransactionService(clock, bankAccountService, accountLock, auditLog, hotAccounts,
+                new LedgerShards(accountLock, false, 0, 1), new DepositCoalescer(false, 0, 1), accountAggregates,
+                accountChangeStream);
+
+        ibans = new String[accounts];
+        checkingIbans = new String[accounts - accounts / 4];
+        for (int i = 0, checking = 0; i < accounts; i++) {
+            final AccountType accountType = i % 4 == 3 ? AccountType.PRIVATE_LOAN_ACCOUNT : AccountType.CHECKING_ACCOUNT;
+            final Account account = bankAccountService.buildAccount(accountType, INITIAL_BALANCE);
+            ibans[i] = accountRepository.saveAccount(account);
+            if (accountType == AccountType.CHECKING_ACCOUNT) {
+                checkingIbans[checking++] = ibans[i];
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        auditLog.close();
+    }
+
+    @Benchmark
+    public TransferResult creditAccount() {
+        return transactionService.creditAccount(1, random(ibans));
+    }
+
+    @Benchmark
+    public TransferResult transferMoney() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int from = random.nextInt(checkingIbans.length);
+        final int to = (from + 1 + random.nextInt(checkingIbans.length - 1)) % checkingIbans.length;
+        return transactionService.transferMoney(1, checkingIbans[from], checkingIbans[to]);
+    }
+
+    @Benchmark
+    public long getAccountBalance() {
+        return bankAccountService.getAccountBalance(random(ibans));
+    }
+
+    @Benchmark
+    public String createAccount() {
+        return bankAccountService.createAccount(AccountType.CHECKING_ACCOUNT);
+    }
+
+    @Benchmark
+    public List<Account> getBankAccountsByPage() {
+        return accountRepository.getBankAccountsBy(LOAN_ACCOUNTS, random(ibans), 100);
+    }
+
+    @Benchmark
+    public Set<Account> getBankAccountsBy() {
+        return accountRepository.getBankAccountsBy(LOAN_ACCOUNTS);
+    }
+
+    private static String random(final String[] ibans) {
+        return ibans[ThreadLocalRandom.current().nextInt(ibans.length)];
+    }
+
+    @Threads(1)
+    public static class OneThread extends ServiceBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends ServiceBenchmark {
+    }
+
+    @Threads(8)
+    public static class EightThreads extends ServiceBenchmark {
+    }
+}
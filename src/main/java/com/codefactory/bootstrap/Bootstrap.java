@@ -2,6 +2,7 @@ package com.codefactory.bootstrap;
 
 import com.codefactory.domain.entity.Account;
 import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.Money;
 import com.codefactory.domain.repository.AccountRepository;
 import com.codefactory.service.BankAccountService;
 import lombok.RequiredArgsConstructor;
@@ -16,29 +17,35 @@ import java.math.BigDecimal;
 @RequiredArgsConstructor
 public class Bootstrap implements CommandLineRunner {
 
+    private static final long INITIAL_BALANCE = Money.toMinorUnits(BigDecimal.valueOf(1000.00));
+
     private final BankAccountService bankAccountService;
     private final AccountRepository accountRepository;
 
 
     @Override
     public void run(String... args) throws Exception {
-        final Account savingsAccount = bankAccountService.buildAccount(AccountType.SAVINGS_ACCOUNT, BigDecimal.valueOf(1000.00));
+        if (!accountRepository.getAllBankAccounts().isEmpty()) {
+            log.info("{} accounts were recovered, skipping demo accounts", accountRepository.getAllBankAccounts().size());
+            return;
+        }
+        final Account savingsAccount = bankAccountService.buildAccount(AccountType.SAVINGS_ACCOUNT, INITIAL_BALANCE);
         createAccount(savingsAccount);
-        final Account loanAccount = bankAccountService.buildAccount(AccountType.PRIVATE_LOAN_ACCOUNT, BigDecimal.valueOf(1000.00));
+        final Account loanAccount = bankAccountService.buildAccount(AccountType.PRIVATE_LOAN_ACCOUNT, INITIAL_BALANCE);
         createAccount(loanAccount);
     }
 
     private void createAccount(Account account) {
         Account checkingAccount = null;
         if (account.getAccountType() == AccountType.SAVINGS_ACCOUNT) {
-            checkingAccount = bankAccountService.buildAccount(AccountType.CHECKING_ACCOUNT, BigDecimal.valueOf(1000.00));
-            accountRepository.saveAccount(checkingAccount);
+            checkingAccount = bankAccountService.buildAccount(AccountType.CHECKING_ACCOUNT, INITIAL_BALANCE);
+            bankAccountService.saveCreatedAccount(checkingAccount);
             log.info("Account with IBAN = {} and type = {} has been created", checkingAccount.getIBAN(),
                     checkingAccount.getAccountType().toString());
         }
 
         account.setReferenceAccount(checkingAccount);
-        final String IBAN = accountRepository.saveAccount(account);
+        final String IBAN = bankAccountService.saveCreatedAccount(account);
         log.info("Account with IBAN = {} and type = {} has been created", IBAN, account.getAccountType().toString());
     }
 }
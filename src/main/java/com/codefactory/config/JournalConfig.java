@@ -0,0 +1,54 @@
+package com.codefactory.config;
+
+import com.codefactory.domain.repository.InMemoryAccountRepository;
+import com.codefactory.domain.repository.journal.AccountJournal;
+import com.codefactory.domain.repository.journal.AccountSnapshotStore;
+import com.codefactory.domain.repository.journal.JournalDurability;
+import com.codefactory.domain.repository.journal.JournalingAccountRepository;
+import com.codefactory.service.lock.StripedAccountLock;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "bank.journal.enabled", havingValue = "true")
+public class JournalConfig {
+
+    @Bean(destroyMethod = "close")
+    @Primary
+    public JournalingAccountRepository journalingAccountRepository(
+            final ObjectProvider<InMemoryAccountRepository> accountRepository,
+            final StripedAccountLock accountLock,
+            @Value("${bank.repository.type:in-memory}") final String repositoryType,
+            @Value("${bank.hot-accounts.enabled:false}") final boolean hotAccountsEnabled,
+            @Value("${bank.journal.directory:data/journal}") final String directory,
+            @Value("${bank.journal.durability:GROUP_COMMIT}") final JournalDurability durability,
+            @Value("${bank.journal.flush-interval-ms:10}") final long flushIntervalMillis,
+            @Value("${bank.journal.max-batch-size:4096}") final int maxBatchSize,
+            @Value("${bank.journal.segment-bytes:67108864}") final long segmentBytes) throws IOException {
+        if (hotAccountsEnabled) {
+            throw new IllegalStateException("bank.journal.enabled=true cannot be combined with bank.hot-accounts.enabled=true, "
+                    + "hot credits are acknowledged before they are journaled");
+        }
+        final InMemoryAccountRepository inMemoryAccountRepository = accountRepository.getIfAvailable();
+        if (inMemoryAccountRepository == null) {
+            throw new IllegalStateException("bank.journal.enabled=true needs the in-memory repository, disable the journal or "
+                    + "set bank.repository.type=in-memory, bank.repository.type=" + repositoryType);
+        }
+        final Path path = Paths.get(directory);
+        final AccountJournal journal = new AccountJournal(path, durability, flushIntervalMillis, maxBatchSize, segmentBytes);
+        final JournalingAccountRepository journalingAccountRepository =
+                new JournalingAccountRepository(inMemoryAccountRepository, journal, new AccountSnapshotStore(path), accountLock);
+        journalingAccountRepository.open();
+        return journalingAccountRepository;
+    }
+}
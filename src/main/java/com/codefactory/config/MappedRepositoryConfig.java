@@ -0,0 +1,28 @@
+package com.codefactory.config;
+
+import com.codefactory.domain.repository.mapped.MappedAccountRepository;
+import com.codefactory.domain.repository.mapped.MappedAccountStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+@ConditionalOnProperty(name = "bank.repository.type", havingValue = "mapped")
+public class MappedRepositoryConfig {
+
+    @Bean(destroyMethod = "close")
+    public MappedAccountRepository mappedAccountRepository(
+            @Value("${bank.repository.mapped.path:data/accounts.dat}") final String path,
+            @Value("${bank.repository.mapped.capacity:1048576}") final int capacity,
+            @Value("${bank.hot-accounts.enabled:false}") final boolean hotAccountsEnabled) throws IOException {
+        if (hotAccountsEnabled) {
+            throw new IllegalStateException("bank.repository.type=mapped cannot be combined with bank.hot-accounts.enabled=true, "
+                    + "hot credits are acknowledged before they are saved");
+        }
+        return new MappedAccountRepository(new MappedAccountStore(Paths.get(path), capacity));
+    }
+}
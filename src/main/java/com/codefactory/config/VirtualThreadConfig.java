@@ -0,0 +1,57 @@
+package com.codefactory.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs every request on its own virtual thread instead of a thread of the Tomcat pool when
+ * {@code bank.execution.mode=virtual-threads}.
+ * <p>
+ * A request blocked on the repository then parks a virtual thread rather than holding one of the
+ * {@code server.tomcat.threads.max} pool threads, so the number of requests in flight is no longer capped by the pool.
+ * Controllers and services are unchanged. The application targets Java 11, so the executor is created reflectively
+ * and needs a Java 21 runtime; on an older one Tomcat keeps its pool and a warning is logged.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "bank.execution.mode", havingValue = "virtual-threads")
+public class VirtualThreadConfig {
+
+    private static final int VIRTUAL_THREADS_FEATURE_VERSION = 21;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadExecutorCustomizer() {
+        final Optional<ExecutorService> executor = newVirtualThreadPerTaskExecutor();
+        if (executor.isEmpty()) {
+            log.warn("Virtual threads need Java {}, requests run on the Tomcat pool, javaVersion={}",
+                    VIRTUAL_THREADS_FEATURE_VERSION, Runtime.version());
+            return protocolHandler -> {
+            };
+        }
+        log.info("Requests run on virtual threads, javaVersion={}", Runtime.version());
+        return protocolHandler -> protocolHandler.setExecutor(executor.get());
+    }
+
+    /**
+     * Returns {@code Executors.newVirtualThreadPerTaskExecutor()}, or nothing when the runtime has no virtual threads.
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        if (Runtime.version().feature() < VIRTUAL_THREADS_FEATURE_VERSION) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual thread executor could not be created", e);
+            return Optional.empty();
+        }
+    }
+}
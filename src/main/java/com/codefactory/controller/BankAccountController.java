@@ -1,8 +1,18 @@
 package com.codefactory.controller;
 
 import com.codefactory.controller.dto.*;
+import com.codefactory.domain.entity.Account;
 import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.Money;
+import com.codefactory.exception.InvalidPageRequestException;
 import com.codefactory.service.BankAccountService;
+import com.codefactory.service.change.AccountChange;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.utils.CursorUtility;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
@@ -10,12 +20,21 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 @Slf4j
 @RestController
@@ -24,10 +43,24 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 public class BankAccountController {
 
     private final static String ACCOUNT_ENDPOINT = "/account";
+    private final static String ACCOUNT_BULK_ENDPOINT = "/account/bulk";
+    private final static String ACCOUNT_STREAM_ENDPOINT = "/account/stream";
     private final static String LOCK_ACCOUNT_ENDPOINT = "/account/lock";
     private final static String ACCOUNT_BALANCE_ENDPOINT = "/account/balance";
+    private final static String ACCOUNT_AGGREGATES_ENDPOINT = "/account/aggregates";
+    private final static String ACCOUNT_CHANGES_ENDPOINT = "/account/changes";
+    private final static String ACCOUNT_CHANGES_STREAM_ENDPOINT = "/account/changes/stream";
+    private final static String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private final static String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    private final static byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.UTF_8);
+    private final static int MAX_PAGE_SIZE = 1000;
+    private final static int MAX_CHANGES = 1000;
+    // a waiting change request holds no thread, but each one keeps its connection and a registered waiter
+    private final static long MAX_WAIT_MILLIS = 25_000;
 
     private final BankAccountService bankAccountService;
+    private final AccountChangeStream accountChangeStream;
+    private final ObjectMapper objectMapper;
 
     @ApiOperation(value = "Create Bank Account")
     @ApiResponses(value = {
@@ -41,18 +74,70 @@ public class BankAccountController {
                 .build();
     }
 
-    @ApiOperation(value = "Filter Accounts by accountTypes")
+    @ApiOperation(value = "Create Bank Accounts in bulk, a number of accounts per accountType")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "filtered accounts by accountTypes successfully")
+            @ApiResponse(code = 201, message = "created the accounts successfully"),
+            @ApiResponse(code = 400, message = "accounts are missing or a count is out of range")
+    })
+    @PostMapping(value = ACCOUNT_BULK_ENDPOINT, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public BulkCreateAccountResponseDto createAccounts(@RequestBody @Valid final BulkCreateAccountRequestDto bulkCreateAccountRequestDto) {
+        final List<CreatedAccountDto> accounts = new ArrayList<>();
+        for (AccountCountDto accountCount : bulkCreateAccountRequestDto.getAccounts()) {
+            bankAccountService.createAccounts(AccountType.of(accountCount.getAccountType()), accountCount.getCount())
+                    .forEach(account -> accounts.add(CreatedAccountDto.builder()
+                            .IBAN(account.getIBAN())
+                            .referenceIBAN(account.getReferenceAccount().map(Account::getIBAN).orElse(null))
+                            .build()));
+        }
+        return BulkCreateAccountResponseDto.builder()
+                .accounts(accounts)
+                .build();
+    }
+
+    @ApiOperation(value = "Filter Accounts by accountTypes, one page at a time in IBAN order")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "filtered accounts by accountTypes successfully"),
+            @ApiResponse(code = 400, message = "Page size or cursor is not valid")
     })
     @GetMapping(value = ACCOUNT_ENDPOINT, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
-    public AccountResponseDto filterAccounts(@RequestParam(value = "accountTypes") final Set<AccountTypeDto> accountTypes) {
-        final Set<AccountType> types = accountTypes.stream().map(AccountType::of).collect(Collectors.toSet());
+    public AccountResponseDto filterAccounts(@RequestParam(value = "accountTypes") final Set<AccountTypeDto> accountTypes,
+                                             @RequestParam(value = "pageSize", defaultValue = "100") final int pageSize,
+                                             @RequestParam(value = "cursor", required = false) final String cursor) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new InvalidPageRequestException("pageSize should be between 1 and " + MAX_PAGE_SIZE + ", pageSize=" + pageSize);
+        }
+
+        final List<Account> accounts = bankAccountService.filterAccountsBy(toAccountTypes(accountTypes),
+                CursorUtility.decode(cursor), pageSize + 1);
+        final boolean hasNextPage = accounts.size() > pageSize;
+        final List<Account> page = hasNextPage ? accounts.subList(0, pageSize) : accounts;
         return AccountResponseDto.builder()
-                .accounts(bankAccountService.filterAccountsBy(types))
+                .accounts(page)
+                .nextCursor(hasNextPage ? CursorUtility.encode(page.get(pageSize - 1).getIBAN()) : null)
                 .build();
     }
 
+    @ApiOperation(value = "Stream all Accounts of the given accountTypes as newline delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "streamed accounts by accountTypes successfully")
+    })
+    @GetMapping(value = ACCOUNT_STREAM_ENDPOINT, produces = APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamAccounts(@RequestParam(value = "accountTypes") final Set<AccountTypeDto> accountTypes) {
+        final Set<AccountType> types = toAccountTypes(accountTypes);
+        final ObjectWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return outputStream -> {
+            try (Stream<Account> accounts = bankAccountService.streamAccountsBy(types)) {
+                for (Account account : (Iterable<Account>) accounts::iterator) {
+                    writer.writeValue(outputStream, account);
+                    outputStream.write('\n');
+                }
+            }
+        };
+    }
+
     @ApiOperation(value = "Get Account Balance for an IBAN")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Account balance returned successfully"),
@@ -61,10 +146,101 @@ public class BankAccountController {
     @GetMapping(value = ACCOUNT_BALANCE_ENDPOINT, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
     public AccountBalanceResponseDto getAccountBalance(@RequestParam(value = "iban") final String IBAN) {
         return AccountBalanceResponseDto.builder()
-                .balance(bankAccountService.getAccountBalance(IBAN))
+                .balance(Money.toBigDecimal(bankAccountService.getAccountBalance(IBAN)))
+                .build();
+    }
+
+    @ApiOperation(value = "Get account count, locked account count and total balance per accountType")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Account aggregates returned successfully")
+    })
+    @GetMapping(value = ACCOUNT_AGGREGATES_ENDPOINT, produces = APPLICATION_JSON_VALUE)
+    public AccountAggregatesResponseDto getAccountAggregates() {
+        return AccountAggregatesResponseDto.builder()
+                .aggregates(bankAccountService.getAccountAggregates().stream()
+                        .map(aggregate -> AccountAggregateDto.builder()
+                                .accountType(aggregate.getAccountType())
+                                .accountCount(aggregate.getAccountCount())
+                                .lockedAccountCount(aggregate.getLockedAccountCount())
+                                .totalBalance(Money.toBigDecimal(aggregate.getTotalBalance()))
+                                .build())
+                        .collect(Collectors.toList()))
                 .build();
     }
 
+    @ApiOperation(value = "Get the account changes from fromSequence on, by default from now, waiting up to waitMillis")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Account changes returned successfully"),
+            @ApiResponse(code = 400, message = "fromSequence, maxChanges or waitMillis is not valid"),
+            @ApiResponse(code = 404, message = "Account change stream is not enabled"),
+            @ApiResponse(code = 410, message = "Account changes from fromSequence are no longer retained")
+    })
+    @GetMapping(value = ACCOUNT_CHANGES_ENDPOINT, produces = APPLICATION_JSON_VALUE)
+    public DeferredResult<AccountChangesResponseDto> getAccountChanges(@RequestParam(value = "fromSequence", required = false) final Long fromSequence,
+                                                                       @RequestParam(value = "maxChanges", defaultValue = "100") final int maxChanges,
+                                                                       @RequestParam(value = "waitMillis", defaultValue = "0") final long waitMillis) {
+        checkChangesRequest(maxChanges, waitMillis);
+        final long from = fromSequence != null ? fromSequence : accountChangeStream.getNextSequence();
+        final List<AccountChange> available = accountChangeStream.read(from, maxChanges);
+        if (!available.isEmpty() || waitMillis == 0) {
+            final DeferredResult<AccountChangesResponseDto> result = new DeferredResult<>();
+            result.setResult(toChangesResponse(from, available));
+            return result;
+        }
+
+        // the request thread is released; the publisher of the next change or the timeout completes the response
+        final DeferredResult<AccountChangesResponseDto> result = new DeferredResult<>(waitMillis,
+                () -> toChangesResponse(from, List.of()));
+        final CompletableFuture<List<AccountChange>> changes = accountChangeStream.await(from, maxChanges);
+        changes.whenComplete((published, e) -> {
+            if (e != null) {
+                result.setErrorResult(e);
+            } else {
+                result.setResult(toChangesResponse(from, published));
+            }
+        });
+        result.onCompletion(() -> changes.cancel(false));
+        return result;
+    }
+
+    @ApiOperation(value = "Stream the account changes as server-sent events for waitMillis, resuming after Last-Event-ID")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "streamed account changes successfully"),
+            @ApiResponse(code = 400, message = "Last-Event-ID, fromSequence or waitMillis is not valid"),
+            @ApiResponse(code = 404, message = "Account change stream is not enabled"),
+            @ApiResponse(code = 410, message = "Account changes from the requested sequence are no longer retained")
+    })
+    @GetMapping(value = ACCOUNT_CHANGES_STREAM_ENDPOINT, produces = TEXT_EVENT_STREAM_VALUE)
+    public StreamingResponseBody streamAccountChanges(@RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) final Long lastEventId,
+                                                      @RequestParam(value = "fromSequence", required = false) final Long fromSequence,
+                                                      @RequestParam(value = "waitMillis", defaultValue = "20000") final long waitMillis) {
+        checkChangesRequest(MAX_CHANGES, waitMillis);
+        final long from = lastEventId != null ? lastEventId + 1
+                : fromSequence != null ? fromSequence : accountChangeStream.getNextSequence();
+        // rejects a disabled stream or an invalid or expired sequence before the response is committed
+        accountChangeStream.read(from, 1);
+
+        final ObjectWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        return outputStream -> {
+            long next = from;
+            long remaining;
+            while ((remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0) {
+                final List<AccountChange> changes = accountChangeStream.poll(next, MAX_CHANGES, remaining);
+                for (AccountChange change : changes) {
+                    outputStream.write(("id: " + change.getSequence() + "\nevent: " + change.getChangeType() + "\ndata: ")
+                            .getBytes(StandardCharsets.UTF_8));
+                    writer.writeValue(outputStream, change);
+                    outputStream.write(EVENT_END);
+                }
+                outputStream.flush();
+                next += changes.size();
+            }
+        };
+    }
+
     @ApiOperation(value = "Lock Bank Account")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Bank account locked successfully"),
@@ -86,4 +262,23 @@ public class BankAccountController {
     public void unlockAccount(@RequestBody @Valid final UnlockAccountRequestDto unlockAccountRequestDto) {
         bankAccountService.unlockAccount(unlockAccountRequestDto.getIBAN());
     }
+
+    private static AccountChangesResponseDto toChangesResponse(final long from, final List<AccountChange> changes) {
+        return AccountChangesResponseDto.builder()
+                .changes(changes)
+                .nextSequence(from + changes.size())
+                .build();
+    }
+
+    private void checkChangesRequest(final int maxChanges, final long waitMillis) {
+        if (maxChanges < 1 || maxChanges > MAX_CHANGES || waitMillis < 0 || waitMillis > MAX_WAIT_MILLIS) {
+            throw new InvalidPageRequestException("maxChanges should be between 1 and " + MAX_CHANGES
+                    + " and waitMillis between 0 and " + MAX_WAIT_MILLIS + ", maxChanges=" + maxChanges
+                    + ", waitMillis=" + waitMillis);
+        }
+    }
+
+    private Set<AccountType> toAccountTypes(final Set<AccountTypeDto> accountTypes) {
+        return accountTypes.stream().map(AccountType::of).collect(Collectors.toSet());
+    }
 }
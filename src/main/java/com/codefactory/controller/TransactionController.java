@@ -1,17 +1,42 @@
 package com.codefactory.controller;
 
+import com.codefactory.controller.dto.BatchTransferRequestDto;
+import com.codefactory.controller.dto.BatchTransferResponseDto;
 import com.codefactory.controller.dto.DepositRequestDto;
 import com.codefactory.controller.dto.TransactionHistoryResponseDto;
 import com.codefactory.controller.dto.TransferRequestDto;
+import com.codefactory.controller.dto.TransferResultDto;
+import com.codefactory.domain.entity.Money;
+import com.codefactory.domain.entity.TransactionPage;
+import com.codefactory.domain.entity.TransactionType;
+import com.codefactory.exception.BankAccountIsLockedException;
+import com.codefactory.exception.BankAccountNotFoundException;
+import com.codefactory.exception.InSufficientBalanceException;
+import com.codefactory.exception.InvalidAmountException;
+import com.codefactory.exception.InvalidPageRequestException;
+import com.codefactory.exception.SameAccountTransferException;
+import com.codefactory.exception.UnsupportedTransferException;
+import com.codefactory.exception.WithdrawalNotSupportedException;
+import com.codefactory.service.BatchTransferResult;
 import com.codefactory.service.TransactionService;
+import com.codefactory.service.TransferCommand;
+import com.codefactory.service.TransferResult;
+import com.codefactory.service.idempotency.IdempotencyCache;
+import com.codefactory.service.utils.CursorUtility;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
@@ -23,44 +48,144 @@ public class TransactionController {
 
     private final static String TRANSACTION_ENDPOINT = "/transaction";
     private final static String TRANSFER_ENDPOINT = "/transaction/transfer";
+    private final static String BATCH_TRANSFER_ENDPOINT = "/transaction/transfer/batch";
     private final static String DEPOSIT_ENDPOINT = "/transaction/deposit";
+    private final static String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private final static int MAX_LIMIT = 1000;
 
     private final TransactionService transactionService;
+    private final IdempotencyCache idempotencyCache;
 
     @ApiOperation(value = "Deposit money into an account")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Money deposited successfully"),
+            @ApiResponse(code = 400, message = "Amount is not valid"),
             @ApiResponse(code = 403, message = "Bank Account is locked"),
             @ApiResponse(code = 404, message = "Bank Account with IBAN not found"),
+            @ApiResponse(code = 422, message = "Idempotency-Key was already used for a different request"),
     })
     @PostMapping(value = DEPOSIT_ENDPOINT, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
-    public void depositMoney(@RequestBody @Valid final DepositRequestDto depositRequestDto) {
-        transactionService.creditAccount(depositRequestDto.getAmount(), depositRequestDto.getIBAN());
+    public void depositMoney(@RequestBody @Valid final DepositRequestDto depositRequestDto,
+                             @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) final String idempotencyKey) {
+        final long amount = Money.toMinorUnits(depositRequestDto.getAmount());
+        final String IBAN = depositRequestDto.getIBAN();
+        throwIfRejected(idempotent(idempotencyKey, DEPOSIT_ENDPOINT + ' ' + IBAN + ' ' + amount,
+                () -> transactionService.creditAccount(amount, IBAN)));
     }
 
     @ApiOperation(value = "Transfer money from one account to another")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Money transferred successfully"),
             @ApiResponse(code = 400, message = "Account has insufficient balance"),
+            @ApiResponse(code = 400, message = "Amount is not valid"),
+            @ApiResponse(code = 400, message = "Transfer needs two different accounts"),
             @ApiResponse(code = 403, message = "Bank Account is locked"),
             @ApiResponse(code = 403, message = "Savings account can only send to reference checking account"),
             @ApiResponse(code = 404, message = "Bank Account with IBAN not found"),
             @ApiResponse(code = 406, message = "Withdrawal not supported for bank account"),
+            @ApiResponse(code = 422, message = "Idempotency-Key was already used for a different request"),
     })
     @PostMapping(value = TRANSFER_ENDPOINT, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
-    public void transferMoney(@RequestBody @Valid final TransferRequestDto dto) {
-        transactionService.transferMoney(dto.getAmount(), dto.getFromIBAN(), dto.getToIBAN());
+    public void transferMoney(@RequestBody @Valid final TransferRequestDto dto,
+                              @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) final String idempotencyKey) {
+        final long amount = Money.toMinorUnits(dto.getAmount());
+        throwIfRejected(idempotent(idempotencyKey, TRANSFER_ENDPOINT + ' ' + dto.getFromIBAN() + ' ' + dto.getToIBAN() + ' ' + amount,
+                () -> transactionService.transferMoney(amount, dto.getFromIBAN(), dto.getToIBAN())));
     }
 
-    @ApiOperation(value = "Get transaction history")
+    @ApiOperation(value = "Transfer money for a batch of transfers, optionally all or nothing")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Batch processed, see the status of each transfer"),
+            @ApiResponse(code = 400, message = "Amount is not valid"),
+    })
+    @PostMapping(value = BATCH_TRANSFER_ENDPOINT, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+    public BatchTransferResponseDto transferMoney(@RequestBody @Valid final BatchTransferRequestDto dto) {
+        final List<TransferCommand> transfers = dto.getTransfers().stream()
+                .map(transfer -> TransferCommand.builder()
+                        .amount(Money.toMinorUnits(transfer.getAmount()))
+                        .fromIBAN(transfer.getFromIBAN())
+                        .toIBAN(transfer.getToIBAN())
+                        .build())
+                .collect(Collectors.toList());
+
+        final BatchTransferResult result = transactionService.transferMoney(transfers, dto.isAtomic());
+        return BatchTransferResponseDto.builder()
+                .committed(result.isCommitted())
+                .results(IntStream.range(0, transfers.size())
+                        .mapToObj(index -> TransferResultDto.builder().index(index).status(result.getStatuses().get(index)).build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    @ApiOperation(value = "Get transaction history created in [from, to), oldest first, one page at a time")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Transaction history returned successfully"),
+            @ApiResponse(code = 400, message = "Limit or cursor is not valid"),
             @ApiResponse(code = 404, message = "Bank Account with IBAN not found"),
     })
     @GetMapping(value = TRANSACTION_ENDPOINT, produces = APPLICATION_JSON_VALUE)
-    public TransactionHistoryResponseDto getTransactionHistory(@RequestParam("iban") final String IBAN) {
+    public TransactionHistoryResponseDto getTransactionHistory(
+            @RequestParam("iban") final String IBAN,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant to,
+            @RequestParam(value = "transactionType", required = false) final TransactionType transactionType,
+            @RequestParam(value = "limit", defaultValue = "100") final int limit,
+            @RequestParam(value = "cursor", required = false) final String cursor) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidPageRequestException("limit should be between 1 and " + MAX_LIMIT + ", limit=" + limit);
+        }
+
+        final TransactionPage page = transactionService.getTransactionHistory(IBAN, from, to, transactionType,
+                decodePosition(cursor), limit);
         return TransactionHistoryResponseDto.builder()
-                .transactionHistory(transactionService.getTransactionHistory(IBAN))
+                .transactionHistory(page.getTransactions())
+                .nextCursor(page.getNextPosition() == null ? null : CursorUtility.encode(page.getNextPosition().toString()))
                 .build();
     }
+
+    /**
+     * Runs {@code operation} once per {@code Idempotency-Key}; retries get the result of the first run. Requests without
+     * a key always run.
+     */
+    private TransferResult idempotent(final String idempotencyKey, final String request, final Supplier<TransferResult> operation) {
+        return idempotencyKey == null ? operation.get() : idempotencyCache.execute(idempotencyKey, request, operation);
+    }
+
+    /**
+     * Maps a rejected deposit or transfer to the exception carrying its HTTP status.
+     */
+    private static void throwIfRejected(final TransferResult result) {
+        switch (result.getStatus()) {
+            case SUCCESS:
+                return;
+            case INVALID_AMOUNT:
+                throw new InvalidAmountException("Amount should be positive, IBAN= " + result.getIBAN());
+            case ACCOUNT_NOT_FOUND:
+                throw new BankAccountNotFoundException("BankAccount not found, IBAN= " + result.getIBAN());
+            case ACCOUNT_LOCKED:
+                throw new BankAccountIsLockedException("BankAccount with is locked, IBAN = " + result.getIBAN());
+            case INSUFFICIENT_BALANCE:
+                throw new InSufficientBalanceException("Account has insufficient balance, IBAN= " + result.getIBAN());
+            case WITHDRAWAL_NOT_SUPPORTED:
+                throw new WithdrawalNotSupportedException("Withdrawal not supported for fromAccount, IBAN= " + result.getIBAN());
+            case UNSUPPORTED_TRANSFER:
+                throw new UnsupportedTransferException("Savings account can only send to reference checking account");
+            case SAME_ACCOUNT:
+                throw new SameAccountTransferException("Transfer needs two different accounts, IBAN= " + result.getIBAN());
+            default:
+                throw new IllegalStateException("Unexpected transfer status, status=" + result.getStatus());
+        }
+    }
+
+    private long decodePosition(final String cursor) {
+        final String position = CursorUtility.decode(cursor);
+        if (position == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(position);
+        } catch (NumberFormatException e) {
+            throw new InvalidPageRequestException("Cursor is not valid, cursor=" + cursor);
+        }
+    }
 }
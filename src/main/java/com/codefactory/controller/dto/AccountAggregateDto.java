@@ -0,0 +1,21 @@
+package com.codefactory.controller.dto;
+
+import com.codefactory.domain.entity.AccountType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountAggregateDto {
+
+    private AccountType accountType;
+    private long accountCount;
+    private long lockedAccountCount;
+    private BigDecimal totalBalance;
+}
@@ -0,0 +1,19 @@
+package com.codefactory.controller.dto;
+
+import com.codefactory.service.change.AccountChange;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountChangesResponseDto {
+
+    private List<AccountChange> changes;
+    private long nextSequence;
+}
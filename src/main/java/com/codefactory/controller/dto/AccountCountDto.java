@@ -0,0 +1,23 @@
+package com.codefactory.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountCountDto {
+
+    @NotNull
+    private AccountTypeDto accountType;
+    @Min(1)
+    @Max(100_000)
+    private int count;
+}
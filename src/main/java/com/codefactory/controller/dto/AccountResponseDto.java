@@ -6,7 +6,7 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
-import java.util.Set;
+import java.util.List;
 
 @Builder
 @Getter
@@ -14,5 +14,6 @@ import java.util.Set;
 @AllArgsConstructor
 public class AccountResponseDto {
 
-    private Set<Account> accounts;
+    private List<Account> accounts;
+    private String nextCursor;
 }
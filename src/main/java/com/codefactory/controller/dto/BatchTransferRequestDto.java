@@ -0,0 +1,20 @@
+package com.codefactory.controller.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Builder
+@Getter
+public class BatchTransferRequestDto {
+
+    private final boolean atomic;
+    @Valid
+    @NotEmpty
+    @Size(max = 10_000)
+    private final List<@Valid TransferRequestDto> transfers;
+}
@@ -0,0 +1,18 @@
+package com.codefactory.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferResponseDto {
+
+    private boolean committed;
+    private List<TransferResultDto> results;
+}
@@ -0,0 +1,22 @@
+package com.codefactory.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCreateAccountRequestDto {
+
+    @NotEmpty
+    @Size(max = 10)
+    private List<@Valid AccountCountDto> accounts;
+}
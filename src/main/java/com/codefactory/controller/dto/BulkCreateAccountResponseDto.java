@@ -0,0 +1,17 @@
+package com.codefactory.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCreateAccountResponseDto {
+
+    private List<CreatedAccountDto> accounts;
+}
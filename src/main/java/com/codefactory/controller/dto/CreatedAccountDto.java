@@ -0,0 +1,19 @@
+package com.codefactory.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreatedAccountDto {
+
+    @JsonProperty(value = "iban")
+    private String IBAN;
+    @JsonProperty(value = "referenceIban")
+    private String referenceIBAN;
+}
@@ -6,7 +6,7 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
-import java.util.Set;
+import java.util.List;
 
 @Getter
 @Builder
@@ -14,5 +14,6 @@ import java.util.Set;
 @NoArgsConstructor
 public class TransactionHistoryResponseDto {
 
-    private Set<Transaction> transactionHistory;
+    private List<Transaction> transactionHistory;
+    private String nextCursor;
 }
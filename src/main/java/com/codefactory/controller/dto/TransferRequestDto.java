@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Getter;
 
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
 import java.math.BigDecimal;
 
 @Builder
@@ -18,5 +19,6 @@ public class TransferRequestDto {
     @JsonProperty(value = "fromIban")
     private final String fromIBAN;
     @NotNull
+    @Positive
     private final BigDecimal amount;
 }
@@ -0,0 +1,17 @@
+package com.codefactory.controller.dto;
+
+import com.codefactory.service.TransferStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResultDto {
+
+    private int index;
+    private TransferStatus status;
+}
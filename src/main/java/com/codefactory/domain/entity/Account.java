@@ -2,15 +2,14 @@ package com.codefactory.domain.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.Set;
 
 @Builder
 @Getter
@@ -19,17 +18,19 @@ public class Account {
 
     @JsonProperty("iban")
     private final String IBAN;
-    private BigDecimal balance;
+    @JsonSerialize(using = MinorUnitsSerializer.class)
+    @JsonDeserialize(using = MinorUnitsDeserializer.class)
+    private volatile long balance;
     private final AccountType accountType;
     @JsonIgnore
-    private Account referenceAccount;
+    private volatile Account referenceAccount;
     private final Instant createdAt;
-    private Instant updatedAt;
+    private volatile Instant updatedAt;
     @Builder.Default
-    private boolean isLocked = false;
+    private volatile boolean isLocked = false;
     @Builder.Default
     @JsonIgnore
-    private Set<Transaction> transactions = new HashSet<>();
+    private final TransactionLedger transactions = new TransactionLedger();
 
     public Optional<Account> getReferenceAccount() {
         return Optional.ofNullable(referenceAccount);
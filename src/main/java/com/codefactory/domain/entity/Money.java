@@ -0,0 +1,46 @@
+package com.codefactory.domain.entity;
+
+import com.codefactory.exception.InvalidAmountException;
+import lombok.experimental.UtilityClass;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts are held internally as a {@code long} count of minor units (cents), so balance arithmetic on the
+ * transaction path never allocates. {@link BigDecimal} is only used when converting at the API boundary.
+ */
+@UtilityClass
+public class Money {
+
+    public static final int MINOR_UNIT_DIGITS = 2;
+
+    public long toMinorUnits(final BigDecimal amount) {
+        try {
+            return amount.setScale(MINOR_UNIT_DIGITS, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new InvalidAmountException("Amount should have at most " + MINOR_UNIT_DIGITS
+                    + " decimal places and fit the balance range, amount=" + amount.toPlainString());
+        }
+    }
+
+    public BigDecimal toBigDecimal(final long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, MINOR_UNIT_DIGITS);
+    }
+
+    public long add(final long augend, final long addend) {
+        final long sum = augend + addend;
+        if (((augend ^ sum) & (addend ^ sum)) < 0) {
+            throw new InvalidAmountException("Amount would overflow the balance range");
+        }
+        return sum;
+    }
+
+    public long subtract(final long minuend, final long subtrahend) {
+        final long difference = minuend - subtrahend;
+        if (((minuend ^ subtrahend) & (minuend ^ difference)) < 0) {
+            throw new InvalidAmountException("Amount would overflow the balance range");
+        }
+        return difference;
+    }
+}
@@ -1,16 +1,19 @@
 package com.codefactory.domain.entity;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Builder;
 import lombok.Getter;
 
-import java.math.BigDecimal;
 import java.time.Instant;
 
 @Builder
 @Getter
 public class Transaction {
 
-    private final BigDecimal amount;
+    @JsonSerialize(using = MinorUnitsSerializer.class)
+    @JsonDeserialize(using = MinorUnitsDeserializer.class)
+    private final long amount;
     private final TransactionType transactionType;
     private final Instant createdAt;
 }
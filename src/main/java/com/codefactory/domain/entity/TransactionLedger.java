@@ -0,0 +1,279 @@
+package com.codefactory.domain.entity;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Append-only, time-ordered transaction log of a single account.
+ * <p>
+ * Entries are addressed by their position, starting at 0. The most recent entries live in a hot segment as
+ * {@link Transaction} objects. The hot segment starts small and doubles until it holds {@code segmentSize} entries,
+ * so accounts with few transactions stay cheap. Once it is full it is compacted into column arrays (timestamp,
+ * amount, type) so older entries cost no per-entry object headers, and a new hot segment is started. Every sealed segment
+ * holds exactly {@code segmentSize} entries, which makes positional access O(1) and range lookups by
+ * {@code createdAt} a binary search, O(log n).
+ * <p>
+ * The ledger has a single writer at a time: appends happen while holding the account's stripe lock. Readers never
+ * lock; they work on a consistent snapshot of the entries appended before the read started. Timestamps never go
+ * backwards: an entry stamped earlier than its predecessor, e.g. after a wall clock adjustment, is recorded with the
+ * predecessor's timestamp.
+ */
+public class TransactionLedger implements Iterable<Transaction> {
+
+    private static final int DEFAULT_SEGMENT_SIZE = 1024;
+    private static final int INITIAL_HOT_SEGMENT_SIZE = 8;
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+
+    private final int segmentSize;
+    private volatile State state;
+
+    public TransactionLedger() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    TransactionLedger(final int segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize should be positive, segmentSize=" + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        this.state = new State(new CompactSegment[0], newHotSegment(), segmentSize);
+    }
+
+    public void append(final Transaction transaction) {
+        final State current = state;
+        final long size = current.size();
+        Transaction entry = transaction;
+        if (size > 0) {
+            final long previous = current.createdAtNanos(size - 1, segmentSize);
+            if (toNanos(transaction.getCreatedAt()) < previous) {
+                entry = Transaction.builder()
+                        .amount(transaction.getAmount())
+                        .transactionType(transaction.getTransactionType())
+                        .createdAt(toInstant(previous))
+                        .build();
+            }
+        }
+
+        HotSegment head = current.head;
+        if (head.count == head.entries.length) {
+            head = head.grow(Math.min(head.entries.length * 2, segmentSize));
+            state = new State(current.sealed, head, segmentSize);
+        }
+        head.entries[head.count] = entry;
+        head.count = head.count + 1;
+        if (head.count == segmentSize) {
+            final CompactSegment[] sealed = Arrays.copyOf(current.sealed, current.sealed.length + 1);
+            sealed[sealed.length - 1] = head.compact();
+            state = new State(sealed, newHotSegment(), segmentSize);
+        }
+    }
+
+    public long size() {
+        return state.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public Transaction get(final long position) {
+        final State snapshot = state;
+        checkPosition(position, snapshot.size());
+        return snapshot.get(position, segmentSize);
+    }
+
+    /**
+     * Position of the first entry created at or after {@code instant}, or {@link #size()} if there is none.
+     */
+    public long firstPositionAtOrAfter(final Instant instant) {
+        return firstPositionAtOrAfter(state, instant);
+    }
+
+    /**
+     * Entries created in {@code [from, to)}, oldest first. Either bound may be {@code null} to leave it open.
+     */
+    public List<Transaction> between(final Instant from, final Instant to) {
+        final State snapshot = state;
+        final long start = from == null ? 0 : firstPositionAtOrAfter(snapshot, from);
+        final long end = to == null ? snapshot.size() : firstPositionAtOrAfter(snapshot, to);
+        final List<Transaction> transactions = new ArrayList<>((int) Math.min(Math.max(0, end - start), Integer.MAX_VALUE));
+        for (long position = start; position < end; position++) {
+            transactions.add(snapshot.get(position, segmentSize));
+        }
+        return transactions;
+    }
+
+    /**
+     * Up to {@code limit} entries created in {@code [from, to)}, oldest first, starting no earlier than
+     * {@code startPosition} and keeping only entries of {@code transactionType}. Bounds and type may be {@code null}.
+     * Only the returned entries are materialized.
+     */
+    public TransactionPage page(final Instant from, final Instant to, final TransactionType transactionType,
+                                final long startPosition, final int limit) {
+        final State snapshot = state;
+        final long start = Math.max(startPosition, from == null ? 0 : firstPositionAtOrAfter(snapshot, from));
+        final long end = to == null ? snapshot.size() : firstPositionAtOrAfter(snapshot, to);
+        final List<Transaction> transactions = new ArrayList<>(Math.min(limit, segmentSize));
+        long position = start;
+        while (position < end && transactions.size() < limit) {
+            if (transactionType == null || snapshot.typeOf(position, segmentSize) == transactionType) {
+                transactions.add(snapshot.get(position, segmentSize));
+            }
+            position++;
+        }
+        return TransactionPage.builder()
+                .transactions(transactions)
+                .nextPosition(position < end ? position : null)
+                .build();
+    }
+
+    public List<Transaction> toList() {
+        return between(null, null);
+    }
+
+    @Override
+    public Iterator<Transaction> iterator() {
+        final State snapshot = state;
+        final long size = snapshot.size();
+        return new Iterator<Transaction>() {
+            private long position;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot.get(position++, segmentSize);
+            }
+        };
+    }
+
+    private long firstPositionAtOrAfter(final State snapshot, final Instant instant) {
+        final long target = toNanos(instant);
+        long low = 0;
+        long high = snapshot.size();
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            if (snapshot.createdAtNanos(middle, segmentSize) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private HotSegment newHotSegment() {
+        return new HotSegment(Math.min(INITIAL_HOT_SEGMENT_SIZE, segmentSize));
+    }
+
+    private static void checkPosition(final long position, final long size) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("position=" + position + ", size=" + size);
+        }
+    }
+
+    static long toNanos(final Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+
+    static Instant toInstant(final long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+    }
+
+    private static final class State {
+        private final CompactSegment[] sealed;
+        private final HotSegment head;
+        private final int segmentSize;
+
+        private State(final CompactSegment[] sealed, final HotSegment head, final int segmentSize) {
+            this.sealed = sealed;
+            this.head = head;
+            this.segmentSize = segmentSize;
+        }
+
+        private long size() {
+            return (long) sealed.length * segmentSize + head.count;
+        }
+
+        private Transaction get(final long position, final int segmentSize) {
+            final int segment = (int) (position / segmentSize);
+            final int offset = (int) (position % segmentSize);
+            return segment < sealed.length ? sealed[segment].get(offset) : head.entries[offset];
+        }
+
+        private TransactionType typeOf(final long position, final int segmentSize) {
+            final int segment = (int) (position / segmentSize);
+            final int offset = (int) (position % segmentSize);
+            return segment < sealed.length
+                    ? TRANSACTION_TYPES[sealed[segment].types[offset]]
+                    : head.entries[offset].getTransactionType();
+        }
+
+        private long createdAtNanos(final long position, final int segmentSize) {
+            final int segment = (int) (position / segmentSize);
+            final int offset = (int) (position % segmentSize);
+            return segment < sealed.length
+                    ? sealed[segment].createdAtNanos[offset]
+                    : toNanos(head.entries[offset].getCreatedAt());
+        }
+    }
+
+    private static final class HotSegment {
+        private final Transaction[] entries;
+        private volatile int count;
+
+        private HotSegment(final int capacity) {
+            this.entries = new Transaction[capacity];
+        }
+
+        private HotSegment grow(final int capacity) {
+            final HotSegment grown = new HotSegment(capacity);
+            System.arraycopy(entries, 0, grown.entries, 0, count);
+            grown.count = count;
+            return grown;
+        }
+
+        private CompactSegment compact() {
+            final int size = count;
+            final long[] createdAtNanos = new long[size];
+            final long[] amounts = new long[size];
+            final byte[] types = new byte[size];
+            for (int i = 0; i < size; i++) {
+                createdAtNanos[i] = toNanos(entries[i].getCreatedAt());
+                amounts[i] = entries[i].getAmount();
+                types[i] = (byte) entries[i].getTransactionType().ordinal();
+            }
+            return new CompactSegment(createdAtNanos, amounts, types);
+        }
+    }
+
+    private static final class CompactSegment {
+        private final long[] createdAtNanos;
+        private final long[] amounts;
+        private final byte[] types;
+
+        private CompactSegment(final long[] createdAtNanos, final long[] amounts, final byte[] types) {
+            this.createdAtNanos = createdAtNanos;
+            this.amounts = amounts;
+            this.types = types;
+        }
+
+        private Transaction get(final int offset) {
+            return Transaction.builder()
+                    .amount(amounts[offset])
+                    .transactionType(TRANSACTION_TYPES[types[offset]])
+                    .createdAt(toInstant(createdAtNanos[offset]))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.codefactory.domain.entity;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class TransactionPage {
+
+    private final List<Transaction> transactions;
+    /**
+     * Ledger position to resume from, or {@code null} when the requested range is exhausted.
+     */
+    private final Long nextPosition;
+}
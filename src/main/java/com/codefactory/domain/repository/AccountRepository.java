@@ -3,19 +3,67 @@ package com.codefactory.domain.repository;
 import com.codefactory.domain.entity.Account;
 import com.codefactory.domain.entity.AccountType;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
+/**
+ * Storage for bank accounts keyed by IBAN.
+ * <p>
+ * Implementations must be safe for concurrent use without external locking. Reads are expected to outnumber writes
+ * by far and must not serialize on a shared monitor. Callers that read-modify-write an account are responsible for
+ * holding its {@link com.codefactory.service.lock.StripedAccountLock} stripe across the read and the save.
+ */
 public interface AccountRepository {
 
     Map<String, Account> getAllBankAccounts();
 
     String saveAccount(Account account);
 
+    /**
+     * Saves the given accounts as one unit. Implementations that persist changes must record them atomically, so a
+     * transfer is never recovered with only one of its two sides applied.
+     */
+    default void saveAccounts(Collection<Account> accounts) {
+        accounts.forEach(this::saveAccount);
+    }
+
     Optional<Account> getBankAccount(String IBAN);
 
     Set<Account> getBankAccountsBy(Set<AccountType> accountTypes);
 
+    /**
+     * Returns at most {@code limit} accounts of the given types in ascending IBAN order, starting right after
+     * {@code afterIBAN} or from the beginning when it is {@code null}.
+     */
+    List<Account> getBankAccountsBy(Set<AccountType> accountTypes, String afterIBAN, int limit);
+
+    /**
+     * Lazily streams the accounts of the given types without materializing them in a collection.
+     */
+    Stream<Account> streamBankAccountsBy(Set<AccountType> accountTypes);
+
+    /**
+     * Number of stored accounts of {@code accountType}.
+     */
+    default long countBankAccountsBy(AccountType accountType) {
+        try (Stream<Account> accounts = streamBankAccountsBy(EnumSet.of(accountType))) {
+            return accounts.count();
+        }
+    }
+
+    /**
+     * Deletes every account and then runs the listeners registered with {@link #onDeleteAll(Runnable)}.
+     */
     void deleteAllAccounts();
+
+    /**
+     * Registers {@code listener} to run after every {@link #deleteAllAccounts()}, including one replayed from a
+     * journal, so that state derived from the accounts can be reset.
+     */
+    void onDeleteAll(Runnable listener);
 }
@@ -0,0 +1,74 @@
+package com.codefactory.domain.repository;
+
+/**
+ * Packs IBANs of this bank into a {@code long}.
+ * <p>
+ * An IBAN of the bank is {@code DE}, two check digits, the bank code and a ten digit account number. Country and
+ * bank code are fixed and the check digits follow from the account number, so the account number alone identifies
+ * the IBAN and {@link #toIBAN(long)} restores it. Any other string, including one of the bank with wrong check
+ * digits, has no key.
+ */
+public final class IBANKey {
+
+    public static final String BANK_CODE = "12345123";
+    public static final long NONE = -1;
+    public static final long MAX_ACCOUNT_NUMBER = 9_999_999_999L;
+
+    private static final String COUNTRY_CODE = "DE";
+    private static final int ACCOUNT_NUMBER_LENGTH = 10;
+    private static final int IBAN_LENGTH = 4 + BANK_CODE.length() + ACCOUNT_NUMBER_LENGTH;
+    private static final int ACCOUNT_NUMBER_OFFSET = IBAN_LENGTH - ACCOUNT_NUMBER_LENGTH;
+
+    /**
+     * Remainder of the bank code shifted left by the account number digits.
+     */
+    private static final long BANK_CODE_REMAINDER = Long.parseLong(BANK_CODE) % 97 * (10_000_000_000L % 97) % 97;
+    /**
+     * Remainder contributed by the country code and the {@code 00} check digit placeholder, "DE00" being 131400.
+     */
+    private static final long COUNTRY_CODE_REMAINDER = 131_400 % 97;
+    private static final long COUNTRY_CODE_SHIFT = 1_000_000 % 97;
+
+    private IBANKey() {
+    }
+
+    /**
+     * Key of {@code IBAN}, or {@link #NONE} if it is not a valid IBAN of the bank.
+     */
+    public static long of(final String IBAN) {
+        if (IBAN.length() != IBAN_LENGTH || !IBAN.startsWith(COUNTRY_CODE) || !IBAN.startsWith(BANK_CODE, 4)) {
+            return NONE;
+        }
+        long accountNumber = 0;
+        for (int i = ACCOUNT_NUMBER_OFFSET; i < IBAN_LENGTH; i++) {
+            final int digit = IBAN.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NONE;
+            }
+            accountNumber = accountNumber * 10 + digit;
+        }
+        final int checkDigits = checkDigitsOf(accountNumber);
+        return IBAN.charAt(2) == '0' + checkDigits / 10 && IBAN.charAt(3) == '0' + checkDigits % 10 ? accountNumber : NONE;
+    }
+
+    public static String toIBAN(final long accountNumber) {
+        final int checkDigits = checkDigitsOf(accountNumber);
+        final char[] IBAN = new char[IBAN_LENGTH];
+        COUNTRY_CODE.getChars(0, COUNTRY_CODE.length(), IBAN, 0);
+        IBAN[2] = (char) ('0' + checkDigits / 10);
+        IBAN[3] = (char) ('0' + checkDigits % 10);
+        BANK_CODE.getChars(0, BANK_CODE.length(), IBAN, 4);
+        long digits = accountNumber;
+        for (int i = IBAN_LENGTH - 1; i >= ACCOUNT_NUMBER_OFFSET; i--) {
+            IBAN[i] = (char) ('0' + digits % 10);
+            digits /= 10;
+        }
+        return new String(IBAN);
+    }
+
+    private static int checkDigitsOf(final long accountNumber) {
+        long remainder = (BANK_CODE_REMAINDER + accountNumber % 97) % 97;
+        remainder = (remainder * COUNTRY_CODE_SHIFT + COUNTRY_CODE_REMAINDER) % 97;
+        return (int) (98 - remainder);
+    }
+}
@@ -2,51 +2,208 @@ package com.codefactory.domain.repository;
 
 import com.codefactory.domain.entity.Account;
 import com.codefactory.domain.entity.AccountType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
-import javax.annotation.PostConstruct;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * {@link AccountRepository} backed by a {@link LongAccountMap}.
+ * <p>
+ * IBANs of this bank are stored under their {@link IBANKey}, so the primary map holds a {@code long} and a reference
+ * per account. Any other IBAN, such as one recovered from an older store, falls back to a {@link ConcurrentHashMap}.
+ * <p>
+ * Reads never take a lock and never block writers. Saves do lock in places: saving a new IBAN of this bank takes the
+ * insert lock of the {@link LongAccountMap}, which also covers a resize, while replacing one that is already stored
+ * is a CAS; IBANs in the fallback map lock their bin on every save. A {@link #saveAccount(Account)} happens-before
+ * every subsequent lookup of the same IBAN, so a freshly created account is fully visible to any thread that finds
+ * it. Balance, lock flag and timestamps are mutated in place by the services while holding the account's stripe
+ * lock and are published through volatile fields on {@link Account}, so lock-free readers always observe the last
+ * committed value of each field.
+ * <p>
+ * Every account is also indexed under its {@link AccountType}, ordered by IBAN, so filtering by type only visits the
+ * matching accounts. The index is updated after the primary map, so a concurrent filter may miss an account whose
+ * save has not returned yet, but never returns an account under the wrong type.
+ */
 @Repository
+@ConditionalOnProperty(name = "bank.repository.type", havingValue = "in-memory", matchIfMissing = true)
 public class InMemoryAccountRepository implements AccountRepository {
 
-    private Map<String, Account> bankAccounts;
+    private final LongAccountMap bankAccounts = new LongAccountMap();
+    private final ConcurrentMap<String, Account> otherBankAccounts = new ConcurrentHashMap<>();
+    private final Map<String, Account> bankAccountsView = new AccountsView();
+    private final Map<AccountType, ConcurrentSkipListMap<String, Account>> accountsByType = new EnumMap<>(AccountType.class);
+    private final Map<AccountType, LongAdder> accountCounts = new EnumMap<>(AccountType.class);
+    private final List<Runnable> deleteAllListeners = new CopyOnWriteArrayList<>();
+
+    public InMemoryAccountRepository() {
+        for (AccountType accountType : AccountType.values()) {
+            accountsByType.put(accountType, new ConcurrentSkipListMap<>());
+            accountCounts.put(accountType, new LongAdder());
+        }
+    }
 
     @Override
     public Map<String, Account> getAllBankAccounts() {
-        return bankAccounts;
+        return bankAccountsView;
     }
 
     @Override
-    public synchronized String saveAccount(final Account account) {
+    public String saveAccount(final Account account) {
         final String IBAN = account.getIBAN();
-        bankAccounts.put(IBAN, account);
+        final long key = IBANKey.of(IBAN);
+        final Account previous = key != IBANKey.NONE ? bankAccounts.put(key, account) : otherBankAccounts.put(IBAN, account);
+        if (previous == null) {
+            accountCounts.get(account.getAccountType()).increment();
+        } else if (previous.getAccountType() != account.getAccountType()) {
+            accountsByType.get(previous.getAccountType()).remove(IBAN, previous);
+            accountCounts.get(previous.getAccountType()).decrement();
+            accountCounts.get(account.getAccountType()).increment();
+        }
+        accountsByType.get(account.getAccountType()).put(IBAN, account);
         return IBAN;
     }
 
     @Override
-    public synchronized Optional<Account> getBankAccount(String IBAN) {
-        return Optional.ofNullable(bankAccounts.get(IBAN));
+    public Optional<Account> getBankAccount(String IBAN) {
+        return Optional.ofNullable(lookup(IBAN));
     }
 
     @Override
-    public synchronized Set<Account> getBankAccountsBy(Set<AccountType> accountTypes) {
-        return bankAccounts.values().stream()
-                .filter(account -> accountTypes.contains(account.getAccountType()))
+    public Set<Account> getBankAccountsBy(Set<AccountType> accountTypes) {
+        return accountTypes.stream()
+                .flatMap(accountType -> accountsByType.get(accountType).values().stream())
                 .collect(Collectors.toSet());
     }
 
+    @Override
+    public List<Account> getBankAccountsBy(Set<AccountType> accountTypes, String afterIBAN, int limit) {
+        final List<Iterator<Account>> iterators = new ArrayList<>(accountTypes.size());
+        for (AccountType accountType : accountTypes) {
+            final ConcurrentSkipListMap<String, Account> index = accountsByType.get(accountType);
+            iterators.add((afterIBAN == null ? index : index.tailMap(afterIBAN, false)).values().iterator());
+        }
+        return mergeByIBAN(iterators, limit);
+    }
+
+    @Override
+    public Stream<Account> streamBankAccountsBy(Set<AccountType> accountTypes) {
+        return accountTypes.stream()
+                .flatMap(accountType -> accountsByType.get(accountType).values().stream());
+    }
+
+    @Override
+    public long countBankAccountsBy(final AccountType accountType) {
+        return accountCounts.get(accountType).sum();
+    }
+
     @Override
     public void deleteAllAccounts() {
         bankAccounts.clear();
+        otherBankAccounts.clear();
+        accountsByType.values().forEach(Map::clear);
+        accountCounts.values().forEach(LongAdder::reset);
+        deleteAllListeners.forEach(Runnable::run);
     }
 
-    @PostConstruct
-    private void init() {
-        bankAccounts = new ConcurrentHashMap<>();
+    @Override
+    public void onDeleteAll(final Runnable listener) {
+        deleteAllListeners.add(listener);
+    }
+
+    private Account lookup(final String IBAN) {
+        final long key = IBANKey.of(IBAN);
+        return key != IBANKey.NONE ? bankAccounts.get(key) : otherBankAccounts.get(IBAN);
+    }
+
+    private static List<Account> mergeByIBAN(final List<Iterator<Account>> iterators, final int limit) {
+        final Account[] heads = new Account[iterators.size()];
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = iterators.get(i).hasNext() ? iterators.get(i).next() : null;
+        }
+
+        final List<Account> page = new ArrayList<>(Math.min(limit, 1024));
+        while (page.size() < limit) {
+            int smallest = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] != null && (smallest < 0 || heads[i].getIBAN().compareTo(heads[smallest].getIBAN()) < 0)) {
+                    smallest = i;
+                }
+            }
+            if (smallest < 0) {
+                break;
+            }
+            page.add(heads[smallest]);
+            heads[smallest] = iterators.get(smallest).hasNext() ? iterators.get(smallest).next() : null;
+        }
+        return page;
+    }
+
+    /**
+     * Read-only map view over both maps, keyed by IBAN.
+     */
+    private final class AccountsView extends AbstractMap<String, Account> {
+
+        @Override
+        public int size() {
+            return bankAccounts.size() + otherBankAccounts.size();
+        }
+
+        @Override
+        public boolean containsKey(final Object IBAN) {
+            return get(IBAN) != null;
+        }
+
+        @Override
+        public Account get(final Object IBAN) {
+            return IBAN instanceof String ? lookup((String) IBAN) : null;
+        }
+
+        @Override
+        public Set<Entry<String, Account>> entrySet() {
+            return new AbstractSet<Entry<String, Account>>() {
+                @Override
+                public int size() {
+                    return AccountsView.this.size();
+                }
+
+                @Override
+                public Iterator<Entry<String, Account>> iterator() {
+                    final Iterator<Account> accounts = Stream.concat(
+                            StreamSupport.stream(Spliterators.spliteratorUnknownSize(bankAccounts.values(), Spliterator.NONNULL), false),
+                            otherBankAccounts.values().stream()).iterator();
+                    return new Iterator<Entry<String, Account>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return accounts.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Account> next() {
+                            final Account account = accounts.next();
+                            return new SimpleImmutableEntry<>(account.getIBAN(), account);
+                        }
+                    };
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,216 @@
+package com.codefactory.domain.repository;
+
+import com.codefactory.domain.entity.Account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent open-addressing map from non-negative {@code long} keys to accounts.
+ * <p>
+ * Keys and values live in two parallel arrays, so an entry costs a {@code long} and a reference instead of a node
+ * object and a boxed or string key. Lookups never lock: keys are published with release stores after their value
+ * and read with acquire loads. Replacing the value of an existing key is a CAS on its slot and does not lock either;
+ * only inserting a new key takes the insert lock.
+ * <p>
+ * The table doubles once it is half full. The resize runs under the insert lock, copies every entry into the next
+ * table and then swaps the old slot to {@code MOVED}; readers and writers that meet {@code MOVED} continue in the
+ * next table, where the entry is already present, so nothing is lost while the copy runs.
+ */
+public class LongAccountMap {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Account MOVED = Account.builder().build();
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Account[].class);
+
+    private final ReentrantLock insertLock = new ReentrantLock();
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private volatile int size;
+
+    public int size() {
+        return size;
+    }
+
+    public Account get(final long key) {
+        Table current = table;
+        while (true) {
+            final int slot = current.find(key);
+            if (slot < 0) {
+                return null;
+            }
+            final Account account = (Account) VALUES.getAcquire(current.values, slot);
+            if (account != MOVED) {
+                return account;
+            }
+            current = current.next;
+        }
+    }
+
+    /**
+     * Associates {@code account} with {@code key} and returns the account it replaced, if any.
+     */
+    public Account put(final long key, final Account account) {
+        final Account previous = replace(table, key, account);
+        if (previous != null) {
+            return previous;
+        }
+
+        insertLock.lock();
+        try {
+            Table current = table;
+            final Account replaced = replace(current, key, account);
+            if (replaced != null) {
+                return replaced;
+            }
+            if ((size + 1) * 2 > current.keys.length) {
+                current = resize(current);
+            }
+            current.insert(key, account);
+            size = size + 1;
+            return null;
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    /**
+     * Forgets every entry. Concurrent replacements of existing keys may be lost.
+     */
+    public void clear() {
+        insertLock.lock();
+        try {
+            table = new Table(INITIAL_CAPACITY);
+            size = 0;
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    /**
+     * Weakly consistent iterator over the accounts, in no particular order.
+     */
+    public Iterator<Account> values() {
+        final Table start = table;
+        return new Iterator<Account>() {
+            private int slot = -1;
+            private Account next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Account next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final Account account = next;
+                next = advance();
+                return account;
+            }
+
+            private Account advance() {
+                while (++slot < start.keys.length) {
+                    final long stored = (long) KEYS.getAcquire(start.keys, slot);
+                    if (stored == 0) {
+                        continue;
+                    }
+                    final Account account = (Account) VALUES.getAcquire(start.values, slot);
+                    final Account current = account != MOVED ? account : get(stored - 1);
+                    if (current != null) {
+                        return current;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private Account replace(Table current, final long key, final Account account) {
+        while (true) {
+            final int slot = current.find(key);
+            if (slot < 0) {
+                return null;
+            }
+            final Account existing = (Account) VALUES.getAcquire(current.values, slot);
+            if (existing == MOVED) {
+                current = current.next;
+            } else if (VALUES.compareAndSet(current.values, slot, existing, account)) {
+                return existing;
+            }
+        }
+    }
+
+    private Table resize(final Table old) {
+        final Table next = new Table(old.keys.length * 2);
+        old.next = next;
+        for (int slot = 0; slot < old.keys.length; slot++) {
+            final long stored = (long) KEYS.getAcquire(old.keys, slot);
+            if (stored == 0) {
+                continue;
+            }
+            Account account;
+            do {
+                account = (Account) VALUES.getAcquire(old.values, slot);
+                next.insert(stored - 1, account);
+            } while (!VALUES.compareAndSet(old.values, slot, account, MOVED));
+        }
+        table = next;
+        return next;
+    }
+
+    private static int spread(final long key) {
+        final long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * One generation of the arrays; a key is stored as {@code key + 1} so that {@code 0} marks an empty slot.
+     */
+    private static final class Table {
+
+        private final long[] keys;
+        private final Account[] values;
+        private final int mask;
+        private volatile Table next;
+
+        private Table(final int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Account[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private int find(final long key) {
+            for (int slot = spread(key) & mask; ; slot = (slot + 1) & mask) {
+                final long stored = (long) KEYS.getAcquire(keys, slot);
+                if (stored == 0) {
+                    return -1;
+                }
+                if (stored == key + 1) {
+                    return slot;
+                }
+            }
+        }
+
+        /**
+         * Stores {@code account} under {@code key}, overwriting the value if the key is present. Callers hold the
+         * insert lock.
+         */
+        private void insert(final long key, final Account account) {
+            int slot = spread(key) & mask;
+            long stored;
+            while ((stored = (long) KEYS.getAcquire(keys, slot)) != 0 && stored != key + 1) {
+                slot = (slot + 1) & mask;
+            }
+            VALUES.setRelease(values, slot, account);
+            if (stored == 0) {
+                KEYS.setRelease(keys, slot, key + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.codefactory.domain.repository.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only journal with group commit, split into segment files.
+ * <p>
+ * Every record is framed as {@code [int length][long lsn][payload][int crc32]}, where the checksum covers the LSN and
+ * the payload and LSNs increase by one per record. Callers only enqueue records; a single writer thread drains
+ * whatever has queued up, writes it with one write and forces it with one fsync, so concurrent writers share the
+ * fsync instead of paying for one each. See {@link JournalDurability} for when a write is acknowledged.
+ * <p>
+ * Segments are named after the LSN of their first record. Once a segment grows past {@code segmentBytes} it is
+ * forced and closed and a new one is started, so records covered by a snapshot can be dropped a whole segment at a
+ * time with {@link #truncateBefore(long)}.
+ * <p>
+ * A crash can leave a partially written record at the end of the last segment. Replay stops at the first record
+ * that is short, fails its checksum or breaks the LSN sequence, and the segment is truncated there before new
+ * records are appended. Once a write fails the journal refuses every further write, so nothing is acknowledged that
+ * may not be on disk.
+ */
+@Slf4j
+public class AccountJournal implements Closeable {
+
+    private static final int FRAME_OVERHEAD = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final JournalDurability durability;
+    private final long flushIntervalNanos;
+    private final int maxBatchSize;
+    private final long segmentBytes;
+    private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private Thread writer;
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private volatile long nextLsn = 1;
+    private volatile boolean running;
+    private volatile IOException failure;
+
+    public AccountJournal(final Path directory, final JournalDurability durability, final long flushIntervalMillis,
+                          final int maxBatchSize, final long segmentBytes) {
+        if (flushIntervalMillis <= 0 || maxBatchSize <= 0 || segmentBytes <= 0) {
+            throw new IllegalArgumentException("flushIntervalMillis, maxBatchSize and segmentBytes should be positive, "
+                    + "flushIntervalMillis=" + flushIntervalMillis + ", maxBatchSize=" + maxBatchSize
+                    + ", segmentBytes=" + segmentBytes);
+        }
+        this.directory = directory;
+        this.durability = durability;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Hands every intact record with an LSN of at least {@code fromLsn} to {@code handler} in LSN order, cuts off a
+     * torn tail and starts accepting appends.
+     */
+    public synchronized void open(final long fromLsn, final RecordHandler handler) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Journal is already open, directory=" + directory);
+        }
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.put(firstLsnOf(file), file);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            nextLsn = Math.max(1, fromLsn);
+            openSegment();
+        } else {
+            if (segments.firstKey() > fromLsn) {
+                throw new IOException("Journal is missing records, directory=" + directory + ", fromLsn=" + fromLsn
+                        + ", firstLsn=" + segments.firstKey());
+            }
+            nextLsn = segments.firstKey();
+            for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+                replay(segment.getKey(), segment.getValue(), fromLsn, handler, segment.getKey().equals(segments.lastKey()));
+            }
+            if (nextLsn < fromLsn) {
+                throw new IOException("Journal ends before the snapshot, directory=" + directory + ", fromLsn=" + fromLsn
+                        + ", nextLsn=" + nextLsn);
+            }
+            channel = FileChannel.open(segments.lastEntry().getValue(), READ, WRITE);
+            channel.position(channel.size());
+        }
+        log.info("Journal opened, directory={}, segments={}, nextLsn={}", directory, segments.size(), nextLsn);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "account-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues {@code payload} as the next record. The returned future completes when the record is durable according
+     * to the configured {@link JournalDurability}, or exceptionally if it could not be written.
+     */
+    public CompletableFuture<Void> append(final byte[] payload) {
+        return enqueue(new PendingRecord(payload));
+    }
+
+    /**
+     * Completes once every record queued before the call has been forced to disk, whatever the durability policy.
+     */
+    public CompletableFuture<Void> flush() {
+        return enqueue(new PendingRecord(null));
+    }
+
+    /**
+     * LSN the next appended record will get. Every record with a lower LSN has already been handed to the writer.
+     */
+    public long nextLsn() {
+        return nextLsn;
+    }
+
+    /**
+     * Deletes the closed segments whose records all have an LSN below {@code lsn}.
+     */
+    public void truncateBefore(final long lsn) throws IOException {
+        final List<Path> obsolete = new ArrayList<>();
+        synchronized (segments) {
+            Map.Entry<Long, Path> segment = segments.firstEntry();
+            Map.Entry<Long, Path> next = segment == null ? null : segments.higherEntry(segment.getKey());
+            while (next != null && next.getKey() <= lsn) {
+                obsolete.add(segments.remove(segment.getKey()));
+                segment = next;
+                next = segments.higherEntry(segment.getKey());
+            }
+        }
+        for (Path file : obsolete) {
+            Files.deleteIfExists(file);
+        }
+        if (!obsolete.isEmpty()) {
+            log.info("Journal truncated, directory={}, beforeLsn={}, deletedSegments={}", directory, lsn, obsolete.size());
+        }
+    }
+
+    public JournalDurability getDurability() {
+        return durability;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending(new IOException("Journal was closed, directory=" + directory));
+        if (channel.isOpen()) {
+            channel.force(true);
+            channel.close();
+        }
+        log.info("Journal closed, directory={}, nextLsn={}", directory, nextLsn);
+    }
+
+    private CompletableFuture<Void> enqueue(final PendingRecord record) {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal is not writable, directory=" + directory, failure);
+        }
+        if (!running) {
+            throw new IllegalStateException("Journal is not open, directory=" + directory);
+        }
+        queue.add(record);
+        return record.durable;
+    }
+
+    private void replay(final long firstLsn, final Path file, final long fromLsn, final RecordHandler handler,
+                        final boolean last) throws IOException {
+        if (firstLsn != nextLsn) {
+            throw new IOException("Journal segments are not contiguous, segment=" + file + ", expectedLsn=" + nextLsn);
+        }
+        final long size = Files.size(file);
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (position + FRAME_OVERHEAD <= size) {
+                final int length = in.readInt();
+                if (length < 0 || position + FRAME_OVERHEAD + length > size) {
+                    break;
+                }
+                final byte[] frame = new byte[Long.BYTES + length];
+                in.readFully(frame);
+                final int checksum = in.readInt();
+                crc.reset();
+                crc.update(frame);
+                final long lsn = ByteBuffer.wrap(frame).getLong();
+                if ((int) crc.getValue() != checksum || lsn != nextLsn) {
+                    break;
+                }
+
+                if (lsn >= fromLsn) {
+                    handler.handle(lsn, new DataInputStream(new ByteArrayInputStream(frame, Long.BYTES, length)));
+                }
+                nextLsn = lsn + 1;
+                position += FRAME_OVERHEAD + length;
+            }
+        } catch (EOFException e) {
+            // torn tail, everything up to position has been replayed
+        }
+
+        if (position < size) {
+            if (!last) {
+                throw new IOException("Journal segment is corrupt, segment=" + file + ", validBytes=" + position);
+            }
+            log.warn("Truncating torn journal tail, segment={}, validBytes={}, size={}", file, position, size);
+            try (FileChannel torn = FileChannel.open(file, WRITE)) {
+                torn.truncate(position);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        final List<PendingRecord> batch = new ArrayList<>(maxBatchSize);
+        long lastForce = System.nanoTime();
+        boolean unforced = false;
+        while (running || !queue.isEmpty()) {
+            try {
+                final PendingRecord first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                boolean barrier = false;
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                    barrier = write(batch);
+                    unforced = true;
+                }
+                if (unforced && (barrier || durability == JournalDurability.GROUP_COMMIT
+                        || System.nanoTime() - lastForce >= flushIntervalNanos)) {
+                    channel.force(false);
+                    lastForce = System.nanoTime();
+                    unforced = false;
+                }
+                batch.forEach(record -> record.durable.complete(null));
+                batch.clear();
+                if (channel.position() >= segmentBytes) {
+                    channel.force(false);
+                    channel.close();
+                    openSegment();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Journal write failed, no further writes are accepted, directory={}", directory, e);
+                failure = e;
+                running = false;
+                batch.forEach(record -> record.durable.completeExceptionally(e));
+                failPending(e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the records of {@code batch} and tells whether it contains a {@link #flush()} barrier.
+     */
+    private boolean write(final List<PendingRecord> batch) throws IOException {
+        boolean barrier = false;
+        int size = 0;
+        for (PendingRecord record : batch) {
+            if (record.payload == null) {
+                barrier = true;
+            } else {
+                size += FRAME_OVERHEAD + record.payload.length;
+            }
+        }
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+        }
+
+        buffer.clear();
+        long lsn = nextLsn;
+        for (PendingRecord record : batch) {
+            if (record.payload == null) {
+                continue;
+            }
+            final int start = buffer.position();
+            buffer.putInt(record.payload.length);
+            buffer.putLong(lsn++);
+            buffer.put(record.payload);
+            crc.reset();
+            crc.update(buffer.array(), start + Integer.BYTES, Long.BYTES + record.payload.length);
+            buffer.putInt((int) crc.getValue());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        nextLsn = lsn;
+        return barrier;
+    }
+
+    private void openSegment() throws IOException {
+        final Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextLsn, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, CREATE, READ, WRITE);
+        channel.truncate(0);
+        synchronized (segments) {
+            segments.put(nextLsn, file);
+        }
+    }
+
+    private void failPending(final IOException cause) {
+        PendingRecord record;
+        while ((record = queue.poll()) != null) {
+            record.durable.completeExceptionally(cause);
+        }
+    }
+
+    private static long firstLsnOf(final Path file) {
+        final String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Receives the payload of a replayed record.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+
+        void handle(long lsn, DataInput payload) throws IOException;
+    }
+
+    private static final class PendingRecord {
+        private final byte[] payload;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private PendingRecord(final byte[] payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.codefactory.domain.repository.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot files of the account state, named after the journal LSN replay has to resume from.
+ * <p>
+ * A snapshot is {@code [int magic][int version][long replayFromLsn]}, followed by one length prefixed entry per
+ * account, an {@code int -1} terminator, the entry count and a CRC32 of everything before it. It is written to a
+ * temporary file by {@link #prepare(long, Iterator)} and only becomes visible to {@link #loadLatest(EntryHandler)}
+ * once {@link #commit(Path, long)} has moved it into place, so a crash while writing leaves the previous snapshot
+ * in charge.
+ */
+@Slf4j
+public class AccountSnapshotStore {
+
+    private static final int MAGIC = 0x42414e4b;
+    private static final int VERSION = 1;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+
+    public AccountSnapshotStore(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Hands every entry of the latest snapshot to {@code handler} and returns the LSN replay has to resume from, or
+     * {@code 1} when there is no snapshot yet.
+     */
+    public long loadLatest(final EntryHandler handler) throws IOException {
+        final List<Path> snapshots = listSnapshots();
+        if (snapshots.isEmpty()) {
+            return 1;
+        }
+
+        final Path snapshot = snapshots.get(snapshots.size() - 1);
+        final CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a snapshot of this version, snapshot=" + snapshot);
+            }
+            final long replayFromLsn = in.readLong();
+            long entries = 0;
+            byte[] entry = new byte[256];
+            int length;
+            while ((length = in.readInt()) >= 0) {
+                if (entry.length < length) {
+                    entry = new byte[Math.max(length, entry.length * 2)];
+                }
+                in.readFully(entry, 0, length);
+                handler.handle(new DataInputStream(new ByteArrayInputStream(entry, 0, length)));
+                entries++;
+            }
+            final long count = in.readLong();
+            final int expected = (int) crc.getValue();
+            if (in.readInt() != expected || count != entries) {
+                throw new IOException("Snapshot is corrupt, snapshot=" + snapshot);
+            }
+            log.info("Snapshot loaded, snapshot={}, accounts={}, replayFromLsn={}", snapshot, entries, replayFromLsn);
+            return replayFromLsn;
+        }
+    }
+
+    /**
+     * Writes {@code entries} to a temporary snapshot file and forces it to disk.
+     */
+    public Path prepare(final long replayFromLsn, final Iterator<byte[]> entries) throws IOException {
+        Files.createDirectories(directory);
+        final Path temporary = directory.resolve(nameOf(replayFromLsn) + TEMPORARY_SUFFIX);
+        final CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(replayFromLsn);
+            long count = 0;
+            while (entries.hasNext()) {
+                final byte[] entry = entries.next();
+                out.writeInt(entry.length);
+                out.write(entry);
+                count++;
+            }
+            out.writeInt(-1);
+            out.writeLong(count);
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        return temporary;
+    }
+
+    /**
+     * Makes a prepared snapshot the latest one and deletes the snapshots it supersedes. The directory is forced
+     * after the move, so once this returns the snapshot survives a crash and the journal it covers can be dropped.
+     */
+    public void commit(final Path prepared, final long replayFromLsn) throws IOException {
+        final Path snapshot = directory.resolve(nameOf(replayFromLsn));
+        Files.move(prepared, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        }
+        for (Path older : listSnapshots()) {
+            if (lsnOf(older) < replayFromLsn) {
+                Files.deleteIfExists(older);
+            }
+        }
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        final List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            files.forEach(snapshots::add);
+        }
+        snapshots.sort((first, second) -> Long.compare(lsnOf(first), lsnOf(second)));
+        return snapshots;
+    }
+
+    private static String nameOf(final long replayFromLsn) {
+        return String.format("%s%020d%s", SNAPSHOT_PREFIX, replayFromLsn, SNAPSHOT_SUFFIX);
+    }
+
+    private static long lsnOf(final Path snapshot) {
+        final String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    /**
+     * Receives one snapshot entry.
+     */
+    @FunctionalInterface
+    public interface EntryHandler {
+
+        void handle(DataInput entry) throws IOException;
+    }
+}
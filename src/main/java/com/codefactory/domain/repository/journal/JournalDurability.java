@@ -0,0 +1,19 @@
+package com.codefactory.domain.repository.journal;
+
+/**
+ * When a journaled write is acknowledged to the caller.
+ */
+public enum JournalDurability {
+
+    /**
+     * The write returns once its record has been forced to disk. Records from concurrent writers are forced together
+     * by one fsync, so the cost of an fsync is shared by everything that arrived while the previous one was running.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * The write returns as soon as its record is queued. The journal is forced every flush interval, so a crash can
+     * lose the writes of the last interval.
+     */
+    ASYNC
+}
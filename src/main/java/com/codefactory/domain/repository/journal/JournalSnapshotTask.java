@@ -0,0 +1,39 @@
+package com.codefactory.domain.repository.journal;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Snapshots the journaled repository every {@code bank.journal.snapshot-interval-ms} and once more on shutdown, so
+ * a restart only has to replay the journal written since the last snapshot.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "bank.journal.enabled", havingValue = "true")
+public class JournalSnapshotTask {
+
+    private final JournalingAccountRepository accountRepository;
+
+    @Scheduled(initialDelayString = "${bank.journal.snapshot-interval-ms:300000}",
+            fixedDelayString = "${bank.journal.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        try {
+            accountRepository.snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Snapshot failed, the journal is kept until the next one succeeds", e);
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+}
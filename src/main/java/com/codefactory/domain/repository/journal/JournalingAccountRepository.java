@@ -0,0 +1,391 @@
+package com.codefactory.domain.repository.journal;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.Transaction;
+import com.codefactory.domain.entity.TransactionLedger;
+import com.codefactory.domain.entity.TransactionType;
+import com.codefactory.domain.repository.AccountRepository;
+import com.codefactory.service.lock.StripedAccountLock;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * {@link AccountRepository} decorator that records every save in an {@link AccountJournal}, periodically
+ * snapshots the delegate to an {@link AccountSnapshotStore} and rebuilds the delegate from the latest snapshot plus
+ * the journal tail on {@link #open()}.
+ * <p>
+ * A save is journaled as the full state of each account (type, balance, lock flag, reference account, timestamps)
+ * plus the ledger entries appended since the account was last journaled, so creation, balance changes and
+ * lock/unlock all end up in the journal without the services knowing about it. Accounts saved together through
+ * {@link #saveAccounts(Collection)} share one record, so a transfer is replayed with both sides or not at all.
+ * They are encoded in the order they were passed, so a reference account saved ahead of its savings account is
+ * linked on replay.
+ * Ledger entries carry their position and replay skips positions the account already has, which makes replaying a
+ * record over a state that already contains it harmless.
+ * <p>
+ * Records are encoded by the caller while it holds the account's stripe lock, so they capture a consistent state
+ * and records of the same account reach the journal in the order the changes were made. A save encodes its record,
+ * appends it, waits until it is durable (with {@link JournalDurability#GROUP_COMMIT}) and only then saves the
+ * accounts in the delegate, so an account is never found by its IBAN before its creation is on disk, and a save whose
+ * record could not be appended leaves a new account out of the delegate. The caller keeps its stripe locks while the
+ * save waits for the fsync; that is what keeps the records of one account in change order, and the wait is shared by
+ * every save of the same group commit. Accounts are changed in place by the services, so an account that was already
+ * saved shows its new state before the save returns. That state cannot be rolled back here, so when an append or its
+ * durability wait fails the repository fails stop: every later read, save and snapshot throws, so nothing is served
+ * or snapshotted from a state that was never journaled, and a restart restores the journaled state.
+ * <p>
+ * {@link #snapshot()} runs without stopping writers: it waits for the saves between their append and their delegate
+ * update to finish, notes the next LSN, copies each account under its own stripe lock, and restore replays everything
+ * from the noted LSN on top of the copy. Reads go straight to the delegate.
+ */
+@Slf4j
+public class JournalingAccountRepository implements AccountRepository, Closeable {
+
+    private static final byte ACCOUNTS_RECORD = 1;
+    private static final byte DELETE_ALL_RECORD = 2;
+    private static final AccountType[] ACCOUNT_TYPES = AccountType.values();
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+
+    private final AccountRepository delegate;
+    private final AccountJournal journal;
+    private final AccountSnapshotStore snapshots;
+    private final StripedAccountLock accountLock;
+    private final ConcurrentMap<String, Long> journaledLedgerSizes = new ConcurrentHashMap<>();
+    private final ReadWriteLock appendLock = new ReentrantReadWriteLock(true);
+    private volatile RuntimeException failure;
+
+    public JournalingAccountRepository(final AccountRepository delegate, final AccountJournal journal,
+                                       final AccountSnapshotStore snapshots, final StripedAccountLock accountLock) {
+        this.delegate = delegate;
+        this.journal = journal;
+        this.snapshots = snapshots;
+        this.accountLock = accountLock;
+    }
+
+    /**
+     * Loads the latest snapshot, replays the journal written after it and starts journaling.
+     */
+    public void open() throws IOException {
+        final long start = System.nanoTime();
+        final Map<String, String> references = new HashMap<>();
+        final long replayFromLsn = snapshots.loadLatest(entry -> applyAccount(entry, references));
+        references.forEach((IBAN, referenceIBAN) -> delegate.getBankAccount(IBAN)
+                .ifPresent(account -> account.setReferenceAccount(delegate.getBankAccount(referenceIBAN).orElse(null))));
+
+        journal.open(replayFromLsn, (lsn, payload) -> apply(payload));
+        log.info("Accounts restored, accounts={}, replayFromLsn={}, tookMillis={}", delegate.getAllBankAccounts().size(),
+                replayFromLsn, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Writes a snapshot of every account without stopping writers and drops the journal segments it covers.
+     */
+    public synchronized void snapshot() throws IOException {
+        checkNotFailed();
+        final long start = System.nanoTime();
+        final long replayFromLsn;
+        // every record below the noted LSN has to be in the delegate before it is copied
+        appendLock.writeLock().lock();
+        try {
+            replayFromLsn = journal.nextLsn();
+        } finally {
+            appendLock.writeLock().unlock();
+        }
+        final Iterator<byte[]> entries = delegate.getAllBankAccounts().values().stream()
+                .map(account -> accountLock.withLock(account.getIBAN(), () -> encodeSnapshotEntry(account)))
+                .iterator();
+        final Path prepared = snapshots.prepare(replayFromLsn, entries);
+
+        // every change copied into the snapshot has been queued by now; it must be on disk before the snapshot counts
+        await(journal.flush());
+        snapshots.commit(prepared, replayFromLsn);
+        journal.truncateBefore(replayFromLsn);
+        log.info("Snapshot written, replayFromLsn={}, tookMillis={}", replayFromLsn, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public Map<String, Account> getAllBankAccounts() {
+        checkNotFailed();
+        return delegate.getAllBankAccounts();
+    }
+
+    @Override
+    public String saveAccount(final Account account) {
+        saveAccounts(List.of(account));
+        return account.getIBAN();
+    }
+
+    @Override
+    public void saveAccounts(final Collection<Account> accounts) {
+        final Set<Account> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Account> distinct = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            if (seen.add(account)) {
+                distinct.add(account);
+            }
+        }
+        checkNotFailed();
+        appendLock.readLock().lock();
+        try {
+            append(encodeAccounts(distinct));
+            distinct.forEach(delegate::saveAccount);
+        } finally {
+            appendLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Account> getBankAccount(final String IBAN) {
+        checkNotFailed();
+        return delegate.getBankAccount(IBAN);
+    }
+
+    @Override
+    public Set<Account> getBankAccountsBy(final Set<AccountType> accountTypes) {
+        checkNotFailed();
+        return delegate.getBankAccountsBy(accountTypes);
+    }
+
+    @Override
+    public List<Account> getBankAccountsBy(final Set<AccountType> accountTypes, final String afterIBAN, final int limit) {
+        checkNotFailed();
+        return delegate.getBankAccountsBy(accountTypes, afterIBAN, limit);
+    }
+
+    @Override
+    public Stream<Account> streamBankAccountsBy(final Set<AccountType> accountTypes) {
+        checkNotFailed();
+        return delegate.streamBankAccountsBy(accountTypes);
+    }
+
+    @Override
+    public long countBankAccountsBy(final AccountType accountType) {
+        checkNotFailed();
+        return delegate.countBankAccountsBy(accountType);
+    }
+
+    @Override
+    public void deleteAllAccounts() {
+        checkNotFailed();
+        appendLock.readLock().lock();
+        try {
+            append(new byte[]{DELETE_ALL_RECORD});
+            delegate.deleteAllAccounts();
+            journaledLedgerSizes.clear();
+        } finally {
+            appendLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Registers {@code listener} with the delegate, which runs it both after {@link #deleteAllAccounts()} and after a
+     * replayed delete.
+     */
+    @Override
+    public void onDeleteAll(final Runnable listener) {
+        delegate.onDeleteAll(listener);
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    /**
+     * Appends {@code record} and, with {@link JournalDurability#GROUP_COMMIT}, waits until it is durable. A failed
+     * write makes the repository fail stop, see the class doc.
+     */
+    private void append(final byte[] record) {
+        try {
+            final CompletableFuture<Void> durable = journal.append(record);
+            if (journal.getDurability() == JournalDurability.GROUP_COMMIT) {
+                await(durable);
+            }
+        } catch (UncheckedIOException | CompletionException e) {
+            if (failure == null) {
+                log.error("Journal append failed, accounts may hold changes that were never journaled; every later"
+                        + " call fails until restart", e);
+            }
+            failure = e;
+            throw e;
+        }
+    }
+
+    private void checkNotFailed() {
+        final RuntimeException cause = failure;
+        if (cause != null) {
+            throw new IllegalStateException("Journal append failed, restart to restore the journaled accounts", cause);
+        }
+    }
+
+    private static void await(final CompletableFuture<Void> durable) {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException
+                    ? new UncheckedIOException("Journal write failed", (IOException) e.getCause())
+                    : e;
+        }
+    }
+
+    private byte[] encodeAccounts(final Collection<Account> accounts) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 * accounts.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ACCOUNTS_RECORD);
+            out.writeInt(accounts.size());
+            for (Account account : accounts) {
+                final boolean known = delegate.getBankAccount(account.getIBAN()).filter(saved -> saved == account).isPresent();
+                final long from = known ? journaledLedgerSizes.getOrDefault(account.getIBAN(), 0L) : 0L;
+                journaledLedgerSizes.put(account.getIBAN(), encodeAccount(account, from, out));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeSnapshotEntry(final Account account) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            encodeAccount(account, 0, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes the state of {@code account} and its ledger entries from position {@code from} on, and returns the
+     * ledger size the encoded entries end at.
+     */
+    private static long encodeAccount(final Account account, final long from, final DataOutputStream out) throws IOException {
+        out.writeUTF(account.getIBAN());
+        out.writeByte(account.getAccountType().ordinal());
+        out.writeLong(account.getBalance());
+        out.writeBoolean(account.isLocked());
+        final Optional<Account> referenceAccount = account.getReferenceAccount();
+        out.writeBoolean(referenceAccount.isPresent());
+        if (referenceAccount.isPresent()) {
+            out.writeUTF(referenceAccount.get().getIBAN());
+        }
+        writeInstant(account.getCreatedAt(), out);
+        writeInstant(account.getUpdatedAt(), out);
+
+        final TransactionLedger ledger = account.getTransactions();
+        final long to = ledger.size();
+        out.writeLong(from);
+        out.writeInt((int) (to - from));
+        for (long position = from; position < to; position++) {
+            final Transaction transaction = ledger.get(position);
+            writeInstant(transaction.getCreatedAt(), out);
+            out.writeLong(transaction.getAmount());
+            out.writeByte(transaction.getTransactionType().ordinal());
+        }
+        return to;
+    }
+
+    private void apply(final DataInput in) throws IOException {
+        final byte recordType = in.readByte();
+        if (recordType == DELETE_ALL_RECORD) {
+            delegate.deleteAllAccounts();
+            journaledLedgerSizes.clear();
+            return;
+        }
+        if (recordType != ACCOUNTS_RECORD) {
+            throw new IOException("Unknown journal record type, recordType=" + recordType);
+        }
+
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            applyAccount(in, null);
+        }
+    }
+
+    /**
+     * Applies one encoded account to the delegate. Reference accounts are linked right away unless
+     * {@code unresolvedReferences} is given, in which case they are collected for the caller to link once every
+     * account has been loaded.
+     */
+    private void applyAccount(final DataInput in, final Map<String, String> unresolvedReferences) throws IOException {
+        final String IBAN = in.readUTF();
+        final AccountType accountType = ACCOUNT_TYPES[in.readByte()];
+        final long balance = in.readLong();
+        final boolean locked = in.readBoolean();
+        final String referenceIBAN = in.readBoolean() ? in.readUTF() : null;
+        final Instant createdAt = readInstant(in);
+        final Instant updatedAt = readInstant(in);
+
+        final Account account = delegate.getBankAccount(IBAN)
+                .filter(saved -> saved.getAccountType() == accountType && saved.getCreatedAt().equals(createdAt))
+                .orElseGet(() -> Account.builder()
+                        .IBAN(IBAN)
+                        .accountType(accountType)
+                        .createdAt(createdAt)
+                        .build());
+        account.setBalance(balance);
+        account.setLocked(locked);
+        account.setUpdatedAt(updatedAt);
+        if (referenceIBAN != null && unresolvedReferences != null) {
+            unresolvedReferences.put(IBAN, referenceIBAN);
+        } else {
+            account.setReferenceAccount(referenceIBAN == null ? null : delegate.getBankAccount(referenceIBAN).orElse(null));
+        }
+
+        final TransactionLedger ledger = account.getTransactions();
+        final long from = in.readLong();
+        final int entries = in.readInt();
+        if (from > ledger.size()) {
+            throw new IOException("Journal is missing ledger entries, IBAN=" + IBAN + ", expected=" + ledger.size()
+                    + ", found=" + from);
+        }
+        for (int i = 0; i < entries; i++) {
+            final Transaction transaction = Transaction.builder()
+                    .createdAt(readInstant(in))
+                    .amount(in.readLong())
+                    .transactionType(TRANSACTION_TYPES[in.readByte()])
+                    .build();
+            if (from + i == ledger.size()) {
+                ledger.append(transaction);
+            }
+        }
+
+        delegate.saveAccount(account);
+        journaledLedgerSizes.put(IBAN, ledger.size());
+    }
+
+    private static void writeInstant(final Instant instant, final DataOutputStream out) throws IOException {
+        out.writeLong(instant.getEpochSecond());
+        out.writeInt(instant.getNano());
+    }
+
+    private static Instant readInstant(final DataInput in) throws IOException {
+        final long epochSecond = in.readLong();
+        return Instant.ofEpochSecond(epochSecond, in.readInt());
+    }
+}
@@ -0,0 +1,25 @@
+package com.codefactory.domain.repository.mapped;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Forces the mapped account store to disk every {@code bank.repository.mapped.force-interval-ms}, which bounds the
+ * changes an operating system crash can lose; closing the store forces it once more on shutdown.
+ */
+@Component
+@EnableScheduling
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "bank.repository.type", havingValue = "mapped")
+public class MappedAccountForceTask {
+
+    private final MappedAccountRepository accountRepository;
+
+    @Scheduled(fixedDelayString = "${bank.repository.mapped.force-interval-ms:1000}")
+    public void force() {
+        accountRepository.force();
+    }
+}
@@ -0,0 +1,236 @@
+package com.codefactory.domain.repository.mapped;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.TransactionLedger;
+import com.codefactory.domain.repository.AccountRepository;
+import com.codefactory.domain.repository.mapped.MappedAccountStore.AccountRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link AccountRepository} backed by a {@link MappedAccountStore}.
+ * <p>
+ * Accounts are not kept as objects: every lookup materializes a fresh {@link Account} from its record, and
+ * {@link #saveAccount(Account)} writes the record back. This fits the services, which always re-read an account
+ * under its stripe lock, change it and save it. A reference account is stored as the slot of its record.
+ * <p>
+ * Transaction ledgers stay on the heap, keyed by slot, and are only registered once they hold an entry, so accounts
+ * without transactions cost no heap at all. Ledgers are not written to the file: after a restart every account
+ * keeps its balance but its transaction history is empty, and {@link #MappedAccountRepository(MappedAccountStore)}
+ * logs a warning when it opens a file that already holds accounts. Use the in-memory repository with the journal
+ * when the history has to survive a restart.
+ * <p>
+ * Since every lookup returns a new {@link Account}, two lookups of the same IBAN must never be changed and saved
+ * together: the later save would overwrite the first. The services never do, a transfer to the same account is
+ * rejected before either side is changed.
+ * <p>
+ * Saves reach the disk when {@link MappedAccountForceTask} forces the store, every
+ * {@code bank.repository.mapped.force-interval-ms}; see {@link MappedAccountStore} for what a crash in between loses.
+ * <p>
+ * There is no per-type index: filtering by type scans the records, and a page keeps only the {@code limit}
+ * smallest matching IBANs while scanning.
+ */
+@Slf4j
+public class MappedAccountRepository implements AccountRepository, Closeable {
+
+    private final MappedAccountStore store;
+    private final ConcurrentMap<Integer, TransactionLedger> ledgers = new ConcurrentHashMap<>();
+    private final Map<String, Account> bankAccountsView = new AccountsView();
+    private final List<Runnable> deleteAllListeners = new CopyOnWriteArrayList<>();
+
+    public MappedAccountRepository(final MappedAccountStore store) {
+        this.store = store;
+        if (store.size() > 0) {
+            log.warn("Transaction history is not persisted by the mapped repository and starts empty, accounts={}",
+                    store.size());
+        }
+    }
+
+    @Override
+    public Map<String, Account> getAllBankAccounts() {
+        return bankAccountsView;
+    }
+
+    @Override
+    public String saveAccount(final Account account) {
+        final AccountRecord record = new AccountRecord();
+        record.IBAN = account.getIBAN();
+        record.balance = account.getBalance();
+        record.accountType = account.getAccountType();
+        record.locked = account.isLocked();
+        record.createdAtSeconds = account.getCreatedAt().getEpochSecond();
+        record.createdAtNanos = account.getCreatedAt().getNano();
+        record.updatedAtSeconds = account.getUpdatedAt().getEpochSecond();
+        record.updatedAtNanos = account.getUpdatedAt().getNano();
+        record.referenceSlot = account.getReferenceAccount()
+                .map(referenceAccount -> {
+                    final int slot = store.slotOf(referenceAccount.getIBAN());
+                    return slot >= 0 ? slot : store.slotOf(saveAccount(referenceAccount));
+                })
+                .orElse(-1);
+
+        final int slot = store.put(record);
+        if (!account.getTransactions().isEmpty()) {
+            ledgers.put(slot, account.getTransactions());
+        }
+        return record.IBAN;
+    }
+
+    @Override
+    public Optional<Account> getBankAccount(final String IBAN) {
+        final int slot = store.slotOf(IBAN);
+        return slot < 0 ? Optional.empty() : Optional.of(materialize(slot, true));
+    }
+
+    @Override
+    public Set<Account> getBankAccountsBy(final Set<AccountType> accountTypes) {
+        return streamBankAccountsBy(accountTypes).collect(Collectors.toSet());
+    }
+
+    @Override
+    public List<Account> getBankAccountsBy(final Set<AccountType> accountTypes, final String afterIBAN, final int limit) {
+        final PriorityQueue<String> smallest = new PriorityQueue<>(Math.min(limit, 1024) + 1, (first, second) -> second.compareTo(first));
+        final int size = store.size();
+        for (int slot = 0; slot < size; slot++) {
+            if (!accountTypes.contains(store.typeOf(slot))) {
+                continue;
+            }
+            final String IBAN = store.IBANOf(slot);
+            if (afterIBAN != null && IBAN.compareTo(afterIBAN) <= 0) {
+                continue;
+            }
+            if (smallest.size() < limit) {
+                smallest.add(IBAN);
+            } else if (limit > 0 && IBAN.compareTo(smallest.peek()) < 0) {
+                smallest.poll();
+                smallest.add(IBAN);
+            }
+        }
+
+        final List<Account> page = new ArrayList<>(smallest.size());
+        while (!smallest.isEmpty()) {
+            getBankAccount(smallest.poll()).ifPresent(page::add);
+        }
+        Collections.reverse(page);
+        return page;
+    }
+
+    @Override
+    public Stream<Account> streamBankAccountsBy(final Set<AccountType> accountTypes) {
+        return IntStream.range(0, store.size())
+                .filter(slot -> accountTypes.contains(store.typeOf(slot)))
+                .mapToObj(slot -> materialize(slot, true));
+    }
+
+    @Override
+    public void deleteAllAccounts() {
+        store.clear();
+        ledgers.clear();
+        deleteAllListeners.forEach(Runnable::run);
+    }
+
+    @Override
+    public void onDeleteAll(final Runnable listener) {
+        deleteAllListeners.add(listener);
+    }
+
+    /**
+     * Writes every saved account through to the disk, see {@link MappedAccountStore#force()}.
+     */
+    public void force() {
+        store.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    private Account materialize(final int slot, final boolean withReference) {
+        final AccountRecord record = store.read(slot, new AccountRecord());
+        final TransactionLedger ledger = ledgers.get(slot);
+        return Account.builder()
+                .IBAN(record.IBAN)
+                .balance(record.balance)
+                .accountType(record.accountType)
+                .isLocked(record.locked)
+                .createdAt(record.getCreatedAt())
+                .updatedAt(record.getUpdatedAt())
+                .referenceAccount(withReference && record.referenceSlot >= 0 ? materialize(record.referenceSlot, false) : null)
+                .transactions(ledger != null ? ledger : new TransactionLedger())
+                .build();
+    }
+
+    /**
+     * Read-only map view over the store; lookups go through the hash index and iteration materializes each account.
+     */
+    private final class AccountsView extends AbstractMap<String, Account> {
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        @Override
+        public boolean containsKey(final Object IBAN) {
+            return IBAN instanceof String && store.slotOf((String) IBAN) >= 0;
+        }
+
+        @Override
+        public Account get(final Object IBAN) {
+            return IBAN instanceof String ? getBankAccount((String) IBAN).orElse(null) : null;
+        }
+
+        @Override
+        public Set<Entry<String, Account>> entrySet() {
+            return new AbstractSet<Entry<String, Account>>() {
+                @Override
+                public int size() {
+                    return store.size();
+                }
+
+                @Override
+                public Iterator<Entry<String, Account>> iterator() {
+                    final int size = store.size();
+                    return new Iterator<Entry<String, Account>>() {
+                        private int slot;
+
+                        @Override
+                        public boolean hasNext() {
+                            return slot < size;
+                        }
+
+                        @Override
+                        public Entry<String, Account> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            final Account account = materialize(slot++, true);
+                            return new SimpleImmutableEntry<>(account.getIBAN(), account);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.codefactory.domain.repository.mapped;
+
+import com.codefactory.domain.entity.AccountType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Fixed-width account records and their IBAN hash index in one memory-mapped file.
+ * <p>
+ * The file starts with a one page header, followed by an open-addressing hash table of {@code int} slot references
+ * and then the records, {@value #RECORD_SIZE} bytes each. Nothing but the mapping lives on the heap, and reopening an
+ * existing file needs no rebuild.
+ * <p>
+ * Lookups never lock. Index entries and the record count are published with release stores and read with acquire
+ * loads, and a record is fully written before its index entry appears. Updates of a record are guarded by a
+ * per-record sequence lock: the writer moves the version to an odd value, writes the fields and releases it at the
+ * next even value, and a reader retries until it saw the same even version before and after copying the fields.
+ * Inserts are serialized by a single lock; the IBAN of a slot never changes once the slot is published.
+ * <p>
+ * Writes go to the page cache and survive a crash of the process, but they only reach the disk when the mapping is
+ * {@link #force() forced}, which the repository does periodically and {@link #close()} does once more. After an
+ * operating system crash or power loss the changes made since the last force may be lost, and since the kernel writes
+ * pages back in any order a record may be torn or an index entry may point to a record that was never written. The
+ * header records whether the store was closed cleanly: opening a store that was not logs a warning and releases the
+ * sequence locks of records whose write was cut off, keeping whatever fields reached the disk. There is no further
+ * recovery; use the in-memory repository with the journal when every acknowledged change has to survive a crash.
+ * <p>
+ * The index hashes the IBAN through a 64-bit finalizer, so sequentially allocated IBANs, which differ only in their
+ * last digits, spread over the whole table instead of clustering into long probe chains.
+ */
+@Slf4j
+public class MappedAccountStore implements Closeable {
+
+    static final int RECORD_SIZE = 96;
+    static final int MAX_IBAN_LENGTH = 34;
+
+    private static final int MAGIC = 0x4d414343;
+    private static final int VERSION = 2;
+    private static final int PAGE_SIZE = 4096;
+    private static final int RECORDS_PER_CHUNK = 1 << 22;
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_COUNT = 16;
+    private static final int HEADER_CLEAN = 20;
+
+    private static final int RECORD_VERSION = 0;
+    private static final int RECORD_BALANCE = 8;
+    private static final int RECORD_CREATED_AT_SECONDS = 16;
+    private static final int RECORD_UPDATED_AT_SECONDS = 24;
+    private static final int RECORD_CREATED_AT_NANOS = 32;
+    private static final int RECORD_UPDATED_AT_NANOS = 36;
+    private static final int RECORD_REFERENCE = 40;
+    private static final int RECORD_TYPE = 44;
+    private static final int RECORD_FLAGS = 45;
+    private static final int RECORD_IBAN_LENGTH = 46;
+    private static final int RECORD_IBAN = 48;
+
+    private static final byte LOCKED_FLAG = 1;
+    private static final AccountType[] ACCOUNT_TYPES = AccountType.values();
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer[] records;
+    private final int capacity;
+    private final int indexMask;
+    private final ReentrantLock insertLock = new ReentrantLock();
+
+    public MappedAccountStore(final Path path, final int requestedCapacity) throws IOException {
+        if (requestedCapacity <= 0 || requestedCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity should be in (0, " + MAX_CAPACITY + "], capacity=" + requestedCapacity);
+        }
+        final Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.path = path;
+        this.channel = FileChannel.open(path, CREATE, READ, WRITE);
+
+        final boolean created = channel.size() == 0;
+        final MappedByteBuffer existingHeader = channel.map(FileChannel.MapMode.READ_WRITE, 0, PAGE_SIZE);
+        existingHeader.order(ByteOrder.LITTLE_ENDIAN);
+        if (created) {
+            existingHeader.putInt(HEADER_MAGIC, MAGIC);
+            existingHeader.putInt(HEADER_VERSION, VERSION);
+            existingHeader.putInt(HEADER_CAPACITY, requestedCapacity);
+        } else if (existingHeader.getInt(HEADER_MAGIC) != MAGIC || existingHeader.getInt(HEADER_VERSION) != VERSION) {
+            channel.close();
+            throw new IOException("Not an account store of this version, path=" + path);
+        }
+        this.header = existingHeader;
+        this.capacity = header.getInt(HEADER_CAPACITY);
+        if (capacity != requestedCapacity) {
+            log.warn("Account store keeps the capacity it was created with, path={}, capacity={}, requested={}",
+                    path, capacity, requestedCapacity);
+        }
+
+        final int indexSize = Integer.highestOneBit(capacity) << 2;
+        this.indexMask = indexSize - 1;
+        final long indexBytes = roundToPage((long) indexSize * Integer.BYTES);
+        this.index = channel.map(FileChannel.MapMode.READ_WRITE, PAGE_SIZE, indexBytes);
+
+        final int chunks = (capacity + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK;
+        this.records = new MappedByteBuffer[chunks];
+        long position = PAGE_SIZE + indexBytes;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            final int recordsInChunk = Math.min(RECORDS_PER_CHUNK, capacity - chunk * RECORDS_PER_CHUNK);
+            records[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) recordsInChunk * RECORD_SIZE);
+            records[chunk].order(ByteOrder.LITTLE_ENDIAN);
+            position += (long) recordsInChunk * RECORD_SIZE;
+        }
+        if (!created && header.getInt(HEADER_CLEAN) == 0) {
+            log.warn("Account store was not closed cleanly, changes since its last force may be lost or torn, "
+                    + "path={}, accounts={}, interruptedWrites={}", path, size(), releaseInterruptedWrites());
+        }
+        header.putInt(HEADER_CLEAN, 0);
+        header.force();
+        log.info("Account store mapped, path={}, capacity={}, accounts={}", path, capacity, size());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return (int) INTS.getAcquire(header, HEADER_COUNT);
+    }
+
+    /**
+     * Slot of {@code IBAN}, or {@code -1} if it is not stored.
+     */
+    public int slotOf(final String IBAN) {
+        final byte[] key = IBAN.getBytes(StandardCharsets.US_ASCII);
+        for (int bucket = hash(key) & indexMask; ; bucket = (bucket + 1) & indexMask) {
+            final int entry = (int) INTS.getAcquire(index, bucket * Integer.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if (IBANEquals(entry - 1, key)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Writes {@code record} into the slot of its IBAN, allocating a slot if the IBAN is new, and returns the slot.
+     */
+    public int put(final AccountRecord record) {
+        final int existing = slotOf(record.IBAN);
+        if (existing >= 0) {
+            write(existing, record);
+            return existing;
+        }
+
+        insertLock.lock();
+        try {
+            final byte[] key = record.IBAN.getBytes(StandardCharsets.US_ASCII);
+            if (key.length > MAX_IBAN_LENGTH) {
+                throw new IllegalArgumentException("IBAN is too long, IBAN=" + record.IBAN);
+            }
+            int bucket = hash(key) & indexMask;
+            int entry;
+            while ((entry = (int) INTS.getAcquire(index, bucket * Integer.BYTES)) != 0) {
+                if (IBANEquals(entry - 1, key)) {
+                    write(entry - 1, record);
+                    return entry - 1;
+                }
+                bucket = (bucket + 1) & indexMask;
+            }
+
+            final int slot = size();
+            if (slot == capacity) {
+                throw new IllegalStateException("Account store is full, path=" + path + ", capacity=" + capacity);
+            }
+            final MappedByteBuffer chunk = chunkOf(slot);
+            final int offset = offsetOf(slot);
+            chunk.put(offset + RECORD_IBAN_LENGTH, (byte) key.length);
+            for (int i = 0; i < key.length; i++) {
+                chunk.put(offset + RECORD_IBAN + i, key[i]);
+            }
+            write(slot, record);
+            INTS.setRelease(index, bucket * Integer.BYTES, slot + 1);
+            INTS.setRelease(header, HEADER_COUNT, slot + 1);
+            return slot;
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    /**
+     * Copies a consistent view of the record in {@code slot} into {@code into}.
+     */
+    public AccountRecord read(final int slot, final AccountRecord into) {
+        final MappedByteBuffer chunk = chunkOf(slot);
+        final int offset = offsetOf(slot);
+        into.IBAN = IBANOf(slot);
+        while (true) {
+            final long version = (long) LONGS.getAcquire(chunk, offset + RECORD_VERSION);
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            into.balance = chunk.getLong(offset + RECORD_BALANCE);
+            into.createdAtSeconds = chunk.getLong(offset + RECORD_CREATED_AT_SECONDS);
+            into.updatedAtSeconds = chunk.getLong(offset + RECORD_UPDATED_AT_SECONDS);
+            into.createdAtNanos = chunk.getInt(offset + RECORD_CREATED_AT_NANOS);
+            into.updatedAtNanos = chunk.getInt(offset + RECORD_UPDATED_AT_NANOS);
+            into.referenceSlot = chunk.getInt(offset + RECORD_REFERENCE) - 1;
+            into.accountType = ACCOUNT_TYPES[chunk.get(offset + RECORD_TYPE)];
+            into.locked = (chunk.get(offset + RECORD_FLAGS) & LOCKED_FLAG) != 0;
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getOpaque(chunk, offset + RECORD_VERSION) == version) {
+                return into;
+            }
+        }
+    }
+
+    /**
+     * Type of the record in {@code slot}, read without the sequence lock since it is a single byte.
+     */
+    public AccountType typeOf(final int slot) {
+        return ACCOUNT_TYPES[chunkOf(slot).get(offsetOf(slot) + RECORD_TYPE)];
+    }
+
+    public String IBANOf(final int slot) {
+        final MappedByteBuffer chunk = chunkOf(slot);
+        final int offset = offsetOf(slot);
+        final byte[] IBAN = new byte[chunk.get(offset + RECORD_IBAN_LENGTH)];
+        for (int i = 0; i < IBAN.length; i++) {
+            IBAN[i] = chunk.get(offset + RECORD_IBAN + i);
+        }
+        return new String(IBAN, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Forgets every record. Concurrent readers may observe a partially cleared store.
+     */
+    public void clear() {
+        insertLock.lock();
+        try {
+            INTS.setRelease(header, HEADER_COUNT, 0);
+            for (int bucket = 0; bucket <= indexMask; bucket++) {
+                INTS.setRelease(index, bucket * Integer.BYTES, 0);
+            }
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every change made so far through to the disk.
+     */
+    public void force() {
+        for (MappedByteBuffer chunk : records) {
+            chunk.force();
+        }
+        index.force();
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        header.putInt(HEADER_CLEAN, 1);
+        header.force();
+        channel.close();
+        log.info("Account store closed, path={}, accounts={}", path, size());
+    }
+
+    private void write(final int slot, final AccountRecord record) {
+        final MappedByteBuffer chunk = chunkOf(slot);
+        final int offset = offsetOf(slot);
+        long version;
+        do {
+            version = (long) LONGS.getAcquire(chunk, offset + RECORD_VERSION);
+        } while ((version & 1) != 0 || !LONGS.compareAndSet(chunk, offset + RECORD_VERSION, version, version + 1));
+
+        chunk.putLong(offset + RECORD_BALANCE, record.balance);
+        chunk.putLong(offset + RECORD_CREATED_AT_SECONDS, record.createdAtSeconds);
+        chunk.putLong(offset + RECORD_UPDATED_AT_SECONDS, record.updatedAtSeconds);
+        chunk.putInt(offset + RECORD_CREATED_AT_NANOS, record.createdAtNanos);
+        chunk.putInt(offset + RECORD_UPDATED_AT_NANOS, record.updatedAtNanos);
+        chunk.putInt(offset + RECORD_REFERENCE, record.referenceSlot + 1);
+        chunk.put(offset + RECORD_TYPE, (byte) record.accountType.ordinal());
+        chunk.put(offset + RECORD_FLAGS, record.locked ? LOCKED_FLAG : 0);
+        LONGS.setRelease(chunk, offset + RECORD_VERSION, version + 2);
+    }
+
+    private boolean IBANEquals(final int slot, final byte[] key) {
+        final MappedByteBuffer chunk = chunkOf(slot);
+        final int offset = offsetOf(slot);
+        if (chunk.get(offset + RECORD_IBAN_LENGTH) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (chunk.get(offset + RECORD_IBAN + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MappedByteBuffer chunkOf(final int slot) {
+        return records[slot / RECORDS_PER_CHUNK];
+    }
+
+    private static int offsetOf(final int slot) {
+        return (slot % RECORDS_PER_CHUNK) * RECORD_SIZE;
+    }
+
+    /**
+     * Releases the sequence lock of every record left odd by a write that a crash cut off, and returns their count.
+     */
+    private int releaseInterruptedWrites() {
+        int interrupted = 0;
+        for (int slot = 0; slot < size(); slot++) {
+            final MappedByteBuffer chunk = chunkOf(slot);
+            final int offset = offsetOf(slot);
+            final long version = chunk.getLong(offset + RECORD_VERSION);
+            if ((version & 1) != 0) {
+                chunk.putLong(offset + RECORD_VERSION, version + 1);
+                interrupted++;
+            }
+        }
+        return interrupted;
+    }
+
+    private static int hash(final byte[] key) {
+        long hash = 0;
+        for (byte b : key) {
+            hash = 31 * hash + b;
+        }
+        // fmix64 of MurmurHash3, every input bit affects the low bits the table is indexed by
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    private static long roundToPage(final long bytes) {
+        return (bytes + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    /**
+     * Mutable copy of one record, reused by callers to avoid an allocation per read.
+     */
+    public static final class AccountRecord {
+        String IBAN;
+        long balance;
+        AccountType accountType;
+        boolean locked;
+        long createdAtSeconds;
+        int createdAtNanos;
+        long updatedAtSeconds;
+        int updatedAtNanos;
+        int referenceSlot = -1;
+
+        public Instant getCreatedAt() {
+            return Instant.ofEpochSecond(createdAtSeconds, createdAtNanos);
+        }
+
+        public Instant getUpdatedAt() {
+            return Instant.ofEpochSecond(updatedAtSeconds, updatedAtNanos);
+        }
+    }
+}
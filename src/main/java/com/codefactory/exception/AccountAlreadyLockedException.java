@@ -4,7 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(code = HttpStatus.CONFLICT, reason = "Account is already locked")
-public class AccountAlreadyLockedException extends RuntimeException {
+public class AccountAlreadyLockedException extends BusinessRuleException {
     public AccountAlreadyLockedException(String s) {
         super(s);
     }
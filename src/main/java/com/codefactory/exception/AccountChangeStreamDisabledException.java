@@ -0,0 +1,11 @@
+package com.codefactory.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.NOT_FOUND, reason = "Account change stream is not enabled")
+public class AccountChangeStreamDisabledException extends RuntimeException {
+    public AccountChangeStreamDisabledException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,11 @@
+package com.codefactory.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.GONE, reason = "Account changes from the requested sequence are no longer retained")
+public class AccountChangesExpiredException extends RuntimeException {
+    public AccountChangesExpiredException(String s) {
+        super(s);
+    }
+}
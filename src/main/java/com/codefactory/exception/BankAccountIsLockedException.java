@@ -4,7 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(code = HttpStatus.FORBIDDEN,  reason = "Bank account is locked")
-public class BankAccountIsLockedException extends RuntimeException {
+public class BankAccountIsLockedException extends BusinessRuleException {
     public BankAccountIsLockedException(String message) {
         super(message);
     }
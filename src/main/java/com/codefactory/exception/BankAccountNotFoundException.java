@@ -4,7 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "BankAccount was not found")
-public class BankAccountNotFoundException extends RuntimeException {
+public class BankAccountNotFoundException extends BusinessRuleException {
 
     public BankAccountNotFoundException(String message) {
         super(message);
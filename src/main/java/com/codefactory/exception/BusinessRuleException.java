@@ -0,0 +1,12 @@
+package com.codefactory.exception;
+
+/**
+ * Base of the exceptions raised for expected business rejections. They are mapped to an HTTP status and never
+ * logged with a trace, so they skip capturing a stack trace, which is most of the cost of throwing.
+ */
+public abstract class BusinessRuleException extends RuntimeException {
+
+    protected BusinessRuleException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,11 @@
+package com.codefactory.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.UNPROCESSABLE_ENTITY, reason = "Idempotency-Key was already used for a different request")
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String s) {
+        super(s);
+    }
+}
@@ -4,7 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Account has Insufficient balance")
-public class InSufficientBalanceException extends RuntimeException {
+public class InSufficientBalanceException extends BusinessRuleException {
     public InSufficientBalanceException(String s) {
         super(s);
     }
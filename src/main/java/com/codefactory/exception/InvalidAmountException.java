@@ -0,0 +1,11 @@
+package com.codefactory.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Amount is not valid")
+public class InvalidAmountException extends RuntimeException {
+    public InvalidAmountException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,11 @@
+package com.codefactory.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Page size or cursor is not valid")
+public class InvalidPageRequestException extends RuntimeException {
+    public InvalidPageRequestException(String s) {
+        super(s);
+    }
+}
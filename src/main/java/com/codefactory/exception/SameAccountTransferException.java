@@ -0,0 +1,11 @@
+package com.codefactory.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Transfer needs two different accounts")
+public class SameAccountTransferException extends BusinessRuleException {
+    public SameAccountTransferException(String s) {
+        super(s);
+    }
+}
@@ -4,7 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(code = HttpStatus.FORBIDDEN, reason = "Savings account can only send to reference checking account")
-public class UnsupportedTransferException extends RuntimeException {
+public class UnsupportedTransferException extends BusinessRuleException {
     public UnsupportedTransferException(String s) {
         super(s);
     }
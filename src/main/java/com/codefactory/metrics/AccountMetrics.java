@@ -0,0 +1,35 @@
+package com.codefactory.metrics;
+
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.repository.AccountRepository;
+import com.codefactory.service.aggregate.AccountAggregates;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges for the number of accounts per {@link AccountType}, read from the repository whenever the registry is scraped,
+ * and the total number of ledger entries, read from the running count of {@link AccountAggregates}.
+ */
+@Component
+@RequiredArgsConstructor
+public class AccountMetrics implements MeterBinder {
+
+    private final AccountRepository accountRepository;
+    private final AccountAggregates accountAggregates;
+
+    @Override
+    public void bindTo(final MeterRegistry meterRegistry) {
+        for (AccountType accountType : AccountType.values()) {
+            Gauge.builder("bank.accounts", accountRepository, repository -> repository.countBankAccountsBy(accountType))
+                    .description("Accounts by type")
+                    .tag("type", accountType.name())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("bank.transactions", accountAggregates, AccountAggregates::getTransactionCount)
+                .description("Ledger entries of all accounts")
+                .register(meterRegistry);
+    }
+}
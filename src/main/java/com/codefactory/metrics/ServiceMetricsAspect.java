@@ -0,0 +1,199 @@
+package com.codefactory.metrics;
+
+import com.codefactory.exception.BankAccountNotFoundException;
+import com.codefactory.service.BatchTransferResult;
+import com.codefactory.service.TransferResult;
+import com.codefactory.service.TransferStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the business operations of {@code TransactionService} and {@code BankAccountService}: account creation,
+ * deposits, transfers and locking. Lookups and saves those operations make internally are not timed.
+ * <p>
+ * Each call is recorded in the {@value #OPERATION_TIMER} timer, tagged with the service, the operation and the outcome.
+ * Business rejections returned as a {@link TransferResult} are tagged with their {@link TransferStatus}, a
+ * {@link BankAccountNotFoundException} as {@code account_not_found} and any other exception with its class name in
+ * snake case, e.g. {@code account_already_locked}. The timers of every operation and of every status a deposit or
+ * transfer may return are registered up front, so recording a call builds no key; those of exceptions are registered
+ * on first use and looked up by class. The timers publish percentile histograms, so latency quantiles can be
+ * aggregated across instances.
+ * <p>
+ * Every transfer, whether requested on its own or as part of a batch, is also counted in {@value #TRANSFER_COUNTER}
+ * by its status.
+ */
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+
+    static final String OPERATION_TIMER = "bank.operation";
+    static final String TRANSFER_COUNTER = "bank.transfers";
+    static final String SUCCESS = "success";
+
+    private static final String BANK_ACCOUNT_SERVICE = "BankAccountService";
+    private static final String TRANSACTION_SERVICE = "TransactionService";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Operation, OperationTimers> timers = new EnumMap<>(Operation.class);
+    private final Map<TransferStatus, Counter> transferCounters = new EnumMap<>(TransferStatus.class);
+
+    public ServiceMetricsAspect(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Operation operation : Operation.values()) {
+            timers.put(operation, new OperationTimers(operation));
+        }
+        for (TransferStatus status : TransferStatus.values()) {
+            transferCounters.put(status, Counter.builder(TRANSFER_COUNTER)
+                    .description("Transfers by status")
+                    .tag("status", tagOf(status))
+                    .register(meterRegistry));
+        }
+    }
+
+    @Around("execution(public String com.codefactory.service.BankAccountService.createAccount(..))")
+    public Object recordCreateAccount(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(joinPoint, Operation.CREATE_ACCOUNT);
+    }
+
+    @Around("execution(public java.util.List com.codefactory.service.BankAccountService.createAccounts(..))")
+    public Object recordCreateAccounts(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(joinPoint, Operation.CREATE_ACCOUNTS);
+    }
+
+    @Around("execution(public void com.codefactory.service.BankAccountService.lockAccount(..))")
+    public Object recordLockAccount(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(joinPoint, Operation.LOCK_ACCOUNT);
+    }
+
+    @Around("execution(public void com.codefactory.service.BankAccountService.unlockAccount(..))")
+    public Object recordUnlockAccount(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(joinPoint, Operation.UNLOCK_ACCOUNT);
+    }
+
+    @Around("execution(public com.codefactory.service.TransferResult com.codefactory.service.TransactionService.creditAccount(..))")
+    public Object recordDeposit(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(joinPoint, Operation.DEPOSIT);
+    }
+
+    @Around("execution(public com.codefactory.service.TransferResult com.codefactory.service.TransactionService.transferMoney(..))")
+    public Object recordTransfer(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(joinPoint, Operation.TRANSFER);
+    }
+
+    @Around("execution(public com.codefactory.service.BatchTransferResult com.codefactory.service.TransactionService.transferMoney(..))")
+    public Object recordBatchTransfer(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(joinPoint, Operation.BATCH_TRANSFER);
+    }
+
+    private Object record(final ProceedingJoinPoint joinPoint, final Operation operation) throws Throwable {
+        final OperationTimers operationTimers = timers.get(operation);
+        final long start = System.nanoTime();
+        Timer timer = operationTimers.success;
+        try {
+            final Object result = joinPoint.proceed();
+            if (result instanceof TransferResult) {
+                final TransferStatus status = ((TransferResult) result).getStatus();
+                timer = operationTimers.statuses.get(status);
+                if (operation == Operation.TRANSFER) {
+                    transferCounters.get(status).increment();
+                }
+            } else if (result instanceof BatchTransferResult) {
+                ((BatchTransferResult) result).getStatuses().forEach(status -> transferCounters.get(status).increment());
+            }
+            return result;
+        } catch (RuntimeException e) {
+            timer = operationTimers.exceptionTimer(e.getClass());
+            throw e;
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String tagOf(final TransferStatus status) {
+        return status.name().toLowerCase();
+    }
+
+    private static String tagOf(final Class<?> exceptionClass) {
+        if (exceptionClass == BankAccountNotFoundException.class) {
+            return tagOf(TransferStatus.ACCOUNT_NOT_FOUND);
+        }
+        final String name = exceptionClass.getSimpleName().replaceFirst("Exception$", "");
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+
+    /**
+     * The timed operations with the service and operation they are tagged with. Both transfer operations are methods
+     * named {@code transferMoney}; a batch is tagged {@code batchTransferMoney} to keep its latency apart.
+     */
+    private enum Operation {
+
+        CREATE_ACCOUNT(BANK_ACCOUNT_SERVICE, "createAccount", false),
+        CREATE_ACCOUNTS(BANK_ACCOUNT_SERVICE, "createAccounts", false),
+        LOCK_ACCOUNT(BANK_ACCOUNT_SERVICE, "lockAccount", false),
+        UNLOCK_ACCOUNT(BANK_ACCOUNT_SERVICE, "unlockAccount", false),
+        DEPOSIT(TRANSACTION_SERVICE, "creditAccount", true),
+        TRANSFER(TRANSACTION_SERVICE, "transferMoney", true),
+        BATCH_TRANSFER(TRANSACTION_SERVICE, "batchTransferMoney", false);
+
+        private final String service;
+        private final String tag;
+        /**
+         * Returns a {@link TransferResult}, so a call may end in any {@link TransferStatus}.
+         */
+        private final boolean returnsStatus;
+
+        Operation(final String service, final String tag, final boolean returnsStatus) {
+            this.service = service;
+            this.tag = tag;
+            this.returnsStatus = returnsStatus;
+        }
+    }
+
+    /**
+     * The timers of one operation: the success timer, one per other {@link TransferStatus} when the operation returns
+     * one, and one per exception class thrown.
+     */
+    private final class OperationTimers {
+
+        private final Operation operation;
+        private final Map<TransferStatus, Timer> statuses = new EnumMap<>(TransferStatus.class);
+        private final Timer success;
+        private final ConcurrentMap<Class<?>, Timer> exceptions = new ConcurrentHashMap<>();
+
+        private OperationTimers(final Operation operation) {
+            this.operation = operation;
+            this.success = register(SUCCESS);
+            if (operation.returnsStatus) {
+                for (TransferStatus status : TransferStatus.values()) {
+                    statuses.put(status, status == TransferStatus.SUCCESS ? success : register(tagOf(status)));
+                }
+            }
+        }
+
+        private Timer exceptionTimer(final Class<?> exceptionClass) {
+            final Timer timer = exceptions.get(exceptionClass);
+            return timer != null ? timer : exceptions.computeIfAbsent(exceptionClass, key -> register(tagOf(key)));
+        }
+
+        private Timer register(final String outcome) {
+            return Timer.builder(OPERATION_TIMER)
+                    .description("Latency of service operations by outcome")
+                    .tag("service", operation.service)
+                    .tag("operation", operation.tag)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+}
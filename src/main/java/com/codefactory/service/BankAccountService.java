@@ -6,118 +6,220 @@ import com.codefactory.domain.repository.AccountRepository;
 import com.codefactory.exception.AccountAlreadyLockedException;
 import com.codefactory.exception.AccountNotLockedException;
 import com.codefactory.exception.BankAccountNotFoundException;
-import com.codefactory.service.utils.IBANUtility;
+import com.codefactory.service.aggregate.AccountAggregate;
+import com.codefactory.service.aggregate.AccountAggregates;
+import com.codefactory.service.audit.AuditLog;
+import com.codefactory.service.audit.AuditOperation;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.change.AccountChangeType;
+import com.codefactory.service.hot.HotAccounts;
+import com.codefactory.service.iban.IBANAllocator;
+import com.codefactory.service.lock.StripedAccountLock;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class BankAccountService {
 
+    private final static int BULK_SAVE_BATCH_SIZE = 4096;
+    private final static String ALREADY_LOCKED = "ALREADY_LOCKED";
+    private final static String NOT_LOCKED = "NOT_LOCKED";
+    private final static String ACCOUNT_NOT_FOUND = TransferStatus.ACCOUNT_NOT_FOUND.name();
+
     private final Clock clock;
     private final AccountRepository accountRepository;
+    private final StripedAccountLock accountLock;
+    private final IBANAllocator ibanAllocator;
+    private final AuditLog auditLog;
+    private final HotAccounts hotAccounts;
+    private final AccountAggregates accountAggregates;
+    private final AccountChangeStream accountChangeStream;
 
 
     public String createAccount(final AccountType accountType) {
         Account checkingAccount = null;
-        BigDecimal defaultAmount = BigDecimal.valueOf(0.00);
+        long defaultAmount = 0;
         if (accountType.equals(AccountType.SAVINGS_ACCOUNT)) {
             checkingAccount = buildAccount(AccountType.CHECKING_ACCOUNT, defaultAmount);
-            accountRepository.saveAccount(checkingAccount);
+            saveCreatedAccount(checkingAccount);
         }
 
         final Account account = buildAccount(accountType, defaultAmount);
         account.setReferenceAccount(checkingAccount);
 
-        final String IBAN = accountRepository.saveAccount(account);
-        log.info("Account with IBAN = {} and type ={} has been created", IBAN, accountType.toString());
+        final String IBAN = saveCreatedAccount(account);
+        auditLog.record(AuditOperation.CREATE_ACCOUNT, AuditLog.SUCCESS, IBAN, null, 0);
         return IBAN;
     }
 
+    /**
+     * Creates {@code count} accounts of {@code accountType}, each savings account together with its reference checking
+     * account. All IBANs come from one reserved block and the accounts are saved in batches of
+     * {@value #BULK_SAVE_BATCH_SIZE}, a reference checking account always in the same or an earlier batch than its
+     * savings account. A batch is saved under the stripe locks of its accounts and their creations are published once
+     * it is saved. Returns the created accounts of {@code accountType}.
+     */
+    public List<Account> createAccounts(final AccountType accountType, final int count) {
+        final boolean withReference = accountType.equals(AccountType.SAVINGS_ACCOUNT);
+        final IBANAllocator.Block IBANs = ibanAllocator.reserve(withReference ? 2L * count : count);
+        final Instant now = clock.instant();
+        final List<Account> accounts = new ArrayList<>(count);
+        List<Account> batch = new ArrayList<>(BULK_SAVE_BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            Account checkingAccount = null;
+            if (withReference) {
+                checkingAccount = buildAccount(AccountType.CHECKING_ACCOUNT, 0, IBANs.next(), now);
+                batch.add(checkingAccount);
+            }
+            final Account account = buildAccount(accountType, 0, IBANs.next(), now);
+            account.setReferenceAccount(checkingAccount);
+            batch.add(account);
+            accounts.add(account);
+
+            if (batch.size() >= BULK_SAVE_BATCH_SIZE) {
+                saveCreatedAccounts(batch);
+                batch = new ArrayList<>(BULK_SAVE_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            saveCreatedAccounts(batch);
+        }
+
+        log.info("{} accounts of type ={} have been created", count, accountType.toString());
+        return accounts;
+    }
+
+    /**
+     * Saves a newly built {@code account} under its stripe lock and, once saved, counts it in the aggregates and
+     * publishes its creation. Returns its IBAN.
+     */
+    public String saveCreatedAccount(final Account account) {
+        return accountLock.withLock(account.getIBAN(), () -> {
+            final String IBAN = accountRepository.saveAccount(account);
+            accountCreated(account);
+            return IBAN;
+        });
+    }
+
     public void saveAccount(final Account account) {
         accountRepository.saveAccount(account);
     }
 
-    public Set<Account> filterAccountsBy(Set<AccountType> accountTypes) {
-        return accountRepository.getBankAccountsBy(accountTypes);
+    public void saveAccounts(final Collection<Account> accounts) {
+        accountRepository.saveAccounts(accounts);
+    }
+
+    public List<Account> filterAccountsBy(Set<AccountType> accountTypes, String afterIBAN, int limit) {
+        return accountRepository.getBankAccountsBy(accountTypes, afterIBAN, limit);
+    }
+
+    public Stream<Account> streamAccountsBy(Set<AccountType> accountTypes) {
+        return accountRepository.streamBankAccountsBy(accountTypes);
+    }
+
+    /**
+     * Account count, locked account count and total balance per account type, read without visiting any account.
+     */
+    public List<AccountAggregate> getAccountAggregates() {
+        return accountAggregates.getAggregates();
     }
 
-    public BigDecimal getAccountBalance(String IBAN) {
-        return accountRepository.getBankAccount(IBAN)
-                .map(Account::getBalance)
-                .orElseThrow(() -> new BankAccountNotFoundException("BankAccount was not found, IBAN=" + IBAN));
+    public long getAccountBalance(String IBAN) {
+        return getBankAccount(IBAN)
+                .orElseThrow(() -> new BankAccountNotFoundException("BankAccount was not found, IBAN=" + IBAN))
+                .getBalance();
     }
 
     public void lockAccount(final String IBAN) {
-        Optional<Account> accountOptional = accountRepository.getBankAccount(IBAN);
-        if (accountOptional.isPresent()) {
-            Account bankAccount = accountOptional.get();
-            if (!bankAccount.isLocked()) {
-                bankAccount.setLocked(true);
-                accountRepository.saveAccount(bankAccount);
-                log.info("BankAccount with IBAN ={} has been locked", IBAN);
+        accountLock.withLock(IBAN, () -> {
+            Optional<Account> accountOptional = getBankAccount(IBAN);
+            if (accountOptional.isPresent()) {
+                Account bankAccount = accountOptional.get();
+                if (!bankAccount.isLocked()) {
+                    bankAccount.setLocked(true);
+                    accountRepository.saveAccount(bankAccount);
+                    hotAccounts.untrack(IBAN);
+                    accountAggregates.lockChanged(bankAccount.getAccountType(), true);
+                    accountChangeStream.publish(AccountChangeType.LOCKED, bankAccount);
+                    auditLog.record(AuditOperation.LOCK_ACCOUNT, AuditLog.SUCCESS, IBAN, null, 0);
+                } else {
+                    auditLog.record(AuditOperation.LOCK_ACCOUNT, ALREADY_LOCKED, IBAN, null, 0);
+                    throw new AccountAlreadyLockedException("Account is already locked, IBAN=" + IBAN);
+                }
             } else {
-                log.warn("BankAccount with IBAN = {} is already locked!", IBAN);
-                throw new AccountAlreadyLockedException("Account is already locked, IBAN=" + IBAN);
+                auditLog.record(AuditOperation.LOCK_ACCOUNT, ACCOUNT_NOT_FOUND, IBAN, null, 0);
+                throw new BankAccountNotFoundException("BankAccount was not found");
             }
-        } else {
-            log.warn("BankAccount with IBAN = {} does not exist", IBAN);
-            throw new BankAccountNotFoundException("BankAccount was not found");
-        }
+        });
     }
 
     public void unlockAccount(final String IBAN) {
-        accountRepository.getBankAccount(IBAN)
+        accountLock.withLock(IBAN, () -> getBankAccount(IBAN)
                 .map(account -> {
                     if (account.isLocked()) {
                         account.setLocked(false);
                         accountRepository.saveAccount(account);
-                        log.info("BankAccount with IBAN ={} has been unlocked", IBAN);
+                        accountAggregates.lockChanged(account.getAccountType(), false);
+                        accountChangeStream.publish(AccountChangeType.UNLOCKED, account);
+                        auditLog.record(AuditOperation.UNLOCK_ACCOUNT, AuditLog.SUCCESS, IBAN, null, 0);
                     } else {
-                        log.warn("BankAccount with IBAN = {} is not locked", IBAN);
+                        auditLog.record(AuditOperation.UNLOCK_ACCOUNT, NOT_LOCKED, IBAN, null, 0);
                         throw new AccountNotLockedException("Account is not locked and cannot be unlocked, IBAN=" + IBAN);
                     }
 
                     return account;
                 }).orElseThrow(() -> {
-            log.warn("BankAccount with IBAN = {} does not exist", IBAN);
-            return new BankAccountNotFoundException("BankAccount was not found");
-        });
+                    auditLog.record(AuditOperation.UNLOCK_ACCOUNT, ACCOUNT_NOT_FOUND, IBAN, null, 0);
+                    return new BankAccountNotFoundException("BankAccount was not found");
+                }));
     }
 
+    /**
+     * Looks up {@code IBAN}; an account that has been hot is looked up under its stripe lock with its pending credits
+     * merged, so callers always see every acknowledged credit.
+     */
     public Optional<Account> getBankAccount(final String IBAN) {
-        return accountRepository.getBankAccount(IBAN);
+        return hotAccounts.isTracked(IBAN) ? hotAccounts.getMergedBankAccount(IBAN) : accountRepository.getBankAccount(IBAN);
+    }
+
+    public Account buildAccount(final AccountType accountType, long amount) {
+        return buildAccount(accountType, amount, ibanAllocator.next(), clock.instant());
+    }
+
+    private void saveCreatedAccounts(final List<Account> accounts) {
+        final List<String> IBANs = new ArrayList<>(accounts.size());
+        accounts.forEach(account -> IBANs.add(account.getIBAN()));
+        accountLock.withLocks(IBANs, () -> {
+            accountRepository.saveAccounts(accounts);
+            accounts.forEach(this::accountCreated);
+            return null;
+        });
     }
 
-    public Account buildAccount(final AccountType accountType, BigDecimal amount) {
-        Instant now = clock.instant();
+    private void accountCreated(final Account account) {
+        accountAggregates.accountCreated(account);
+        accountChangeStream.publish(AccountChangeType.CREATED, account);
+    }
+
+    private Account buildAccount(final AccountType accountType, final long amount, final String IBAN, final Instant now) {
         return Account.builder()
                 .accountType(accountType)
                 .balance(amount)
-                .IBAN(generateIBAN())
+                .IBAN(IBAN)
                 .createdAt(now)
                 .updatedAt(now)
                 .build();
     }
-
-    private String generateIBAN() {
-        String IBAN;
-        do {
-            IBAN = IBANUtility.generateIBAN();
-        } while (IBANExists(IBAN));
-
-        return IBAN;
-    }
-
-    private boolean IBANExists(final String IBAN) {
-        return accountRepository.getAllBankAccounts().containsKey(IBAN);
-    }
 }
@@ -0,0 +1,20 @@
+package com.codefactory.service;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class BatchTransferResult {
+
+    /**
+     * Whether any transfer of the batch has been applied.
+     */
+    private final boolean committed;
+    /**
+     * One status per transfer, in request order.
+     */
+    private final List<TransferStatus> statuses;
+}
@@ -1,18 +1,32 @@
 package com.codefactory.service;
 
 import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.Money;
 import com.codefactory.domain.entity.Transaction;
+import com.codefactory.domain.entity.TransactionPage;
 import com.codefactory.domain.entity.TransactionType;
-import com.codefactory.exception.*;
+import com.codefactory.exception.BankAccountNotFoundException;
+import com.codefactory.service.aggregate.AccountAggregates;
+import com.codefactory.service.audit.AuditLog;
+import com.codefactory.service.audit.AuditOperation;
+import com.codefactory.service.change.AccountChange;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.coalescing.DepositCoalescer;
+import com.codefactory.service.hot.HotAccounts;
+import com.codefactory.service.lock.StripedAccountLock;
+import com.codefactory.service.shard.LedgerShards;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-@Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
@@ -21,97 +35,272 @@ public class TransactionService {
 
     private final Clock clock;
     private final BankAccountService bankAccountService;
+    private final StripedAccountLock accountLock;
+    private final AuditLog auditLog;
+    private final HotAccounts hotAccounts;
+    private final LedgerShards ledgerShards;
+    private final DepositCoalescer depositCoalescer;
+    private final AccountAggregates accountAggregates;
+    private final AccountChangeStream accountChangeStream;
 
-    public void creditAccount(BigDecimal amount, String IBAN) {
-        final Account account = getBankAccount(IBAN);
-        validateAccountNotLocked(account);
-        depositMoney(account, amount);
+    /**
+     * Credits {@code IBAN}, on the shard owning it when the ledger is sharded, see {@link LedgerShards}. Otherwise
+     * credits to a hot account are queued without taking its stripe lock, see {@link HotAccounts}, and other credits
+     * may be committed together with concurrent credits to the same account, see {@link DepositCoalescer}.
+     */
+    public TransferResult creditAccount(long amount, String IBAN) {
+        final TransferResult result = ledgerShards.isEnabled()
+                ? ledgerShards.call(IBAN, () -> creditLocked(amount, IBAN))
+                : creditUnsharded(amount, IBAN);
+        auditLog.record(AuditOperation.DEPOSIT, result.getStatus().name(), IBAN, null, amount);
+        return result;
     }
 
-    public void transferMoney(BigDecimal amount, String fromIBAN, String toIBAN) {
-        final Account fromAccount = getBankAccount(fromIBAN);
-        final Account toAccount = getBankAccount(toIBAN);
+    /**
+     * Transfers {@code amount} under the stripe locks of both accounts and saves both sides together. On a sharded
+     * ledger the transfer runs on the shard owning the source, which takes the stripe lock of the destination too when
+     * it belongs to another shard, so a transfer between shards is saved as one unit like any other.
+     */
+    public TransferResult transferMoney(long amount, String fromIBAN, String toIBAN) {
+        final TransferResult result = ledgerShards.isEnabled()
+                ? ledgerShards.call(fromIBAN, () -> transferLocked(amount, fromIBAN, toIBAN))
+                : transferLocked(amount, fromIBAN, toIBAN);
+        auditLog.record(AuditOperation.TRANSFER, result.getStatus().name(), fromIBAN, toIBAN, amount);
+        return result;
+    }
+
+    /**
+     * Applies a batch of transfers while holding the stripes of every account involved, on the calling thread even
+     * when the ledger is sharded. Each account is looked up once and saved once. Every transfer is checked against the
+     * balances left by the transfers before it, and one of a non-positive amount is rejected as
+     * {@link TransferStatus#INVALID_AMOUNT}. In atomic mode either every transfer is applied or none is: if any
+     * transfer is rejected, no balance changes and the valid transfers are reported as {@link TransferStatus#ABORTED}.
+     * Otherwise each valid transfer is applied.
+     */
+    public BatchTransferResult transferMoney(final List<TransferCommand> transfers, final boolean atomic) {
+        final Set<String> IBANs = new HashSet<>();
+        for (TransferCommand transfer : transfers) {
+            IBANs.add(transfer.getFromIBAN());
+            IBANs.add(transfer.getToIBAN());
+        }
+
+        return accountLock.withLocks(IBANs, () -> {
+            final Map<String, Account> accounts = new HashMap<>();
+            for (String IBAN : IBANs) {
+                bankAccountService.getBankAccount(IBAN).ifPresent(account -> accounts.put(IBAN, account));
+            }
+
+            final Map<Account, Long> balances = new HashMap<>();
+            final List<TransferStatus> statuses = new ArrayList<>(transfers.size());
+            boolean rejected = false;
+            for (TransferCommand transfer : transfers) {
+                final Account fromAccount = accounts.get(transfer.getFromIBAN());
+                final Account toAccount = accounts.get(transfer.getToIBAN());
+                TransferStatus status = TransferStatus.ACCOUNT_NOT_FOUND;
+                if (fromAccount != null && toAccount != null) {
+                    final long fromBalance = balances.getOrDefault(fromAccount, fromAccount.getBalance());
+                    status = checkTransfer(fromAccount, toAccount.getIBAN(), toAccount.isLocked(), transfer.getAmount(),
+                            fromBalance);
+                    if (status == TransferStatus.SUCCESS) {
+                        balances.put(fromAccount, Money.subtract(fromBalance, transfer.getAmount()));
+                        balances.put(toAccount, Money.add(balances.getOrDefault(toAccount, toAccount.getBalance()),
+                                transfer.getAmount()));
+                    }
+                }
+                rejected |= status != TransferStatus.SUCCESS;
+                statuses.add(status);
+            }
+
+            if (atomic && rejected) {
+                statuses.replaceAll(status -> status == TransferStatus.SUCCESS ? TransferStatus.ABORTED : status);
+                audit(transfers, statuses);
+                return BatchTransferResult.builder().committed(false).statuses(statuses).build();
+            }
 
-        validateTransfer(fromAccount, toAccount, amount);
-        withDrawMoney(fromAccount, amount);
-        depositMoney(toAccount, amount);
+            final Instant now = clock.instant();
+            final List<AccountChange> changes = new ArrayList<>();
+            final List<TransferCommand> applied = new ArrayList<>();
+            for (int i = 0; i < transfers.size(); i++) {
+                if (statuses.get(i) == TransferStatus.SUCCESS) {
+                    final TransferCommand transfer = transfers.get(i);
+                    applied.add(transfer);
+                    changes.add(applyTransaction(accounts.get(transfer.getFromIBAN()), transfer.getAmount(),
+                            TransactionType.DEBIT, now));
+                    changes.add(applyTransaction(accounts.get(transfer.getToIBAN()), transfer.getAmount(),
+                            TransactionType.CREDIT, now));
+                }
+            }
+            bankAccountService.saveAccounts(balances.keySet());
+            for (TransferCommand transfer : applied) {
+                transferred(accounts.get(transfer.getFromIBAN()), accounts.get(transfer.getToIBAN()),
+                        transfer.getAmount());
+            }
+            changes.forEach(accountChangeStream::publish);
+            audit(transfers, statuses);
+            return BatchTransferResult.builder().committed(!balances.isEmpty()).statuses(statuses).build();
+        });
     }
 
-    public Set<Transaction> getTransactionHistory(String IBAN) {
+    public TransactionPage getTransactionHistory(String IBAN, Instant from, Instant to, TransactionType transactionType,
+                                                 long startPosition, int limit) {
         return bankAccountService.getBankAccount(IBAN)
-                .map(Account::getTransactions)
+                .map(account -> account.getTransactions().page(from, to, transactionType, startPosition, limit))
                 .orElseThrow(() -> new BankAccountNotFoundException("Bank Account not found, IBAN " + IBAN));
     }
 
-    private Account getBankAccount(final String IBAN) {
-        return bankAccountService.getBankAccount(IBAN)
-                .orElseThrow(() -> {
-                    log.error("BankAccount not found, IBAN={}", IBAN);
-                    return new BankAccountNotFoundException("BankAccount not found, IBAN= " + IBAN);
-                });
+    private TransferResult transferLocked(long amount, String fromIBAN, String toIBAN) {
+        return accountLock.withLocks(fromIBAN, toIBAN, () -> {
+            final Account fromAccount = bankAccountService.getBankAccount(fromIBAN).orElse(null);
+            final Account toAccount = fromAccount == null ? null : bankAccountService.getBankAccount(toIBAN).orElse(null);
+            if (fromAccount == null || toAccount == null) {
+                return TransferResult.rejected(TransferStatus.ACCOUNT_NOT_FOUND, fromAccount == null ? fromIBAN : toIBAN);
+            }
+
+            final TransferResult validation = validateTransfer(fromAccount, toIBAN, toAccount.isLocked(), amount);
+            if (!validation.isSuccess()) {
+                return validation;
+            }
+            final Instant now = clock.instant();
+            final AccountChange debit = applyTransaction(fromAccount, amount, TransactionType.DEBIT, now);
+            final AccountChange credit = applyTransaction(toAccount, amount, TransactionType.CREDIT, now);
+            bankAccountService.saveAccounts(List.of(fromAccount, toAccount));
+            transferred(fromAccount, toAccount, amount);
+            accountChangeStream.publish(debit);
+            accountChangeStream.publish(credit);
+            return TransferResult.SUCCESS;
+        });
     }
 
-    private void validateTransfer(Account fromAccount, Account toAccount, BigDecimal amount) {
-        if (!fromAccount.getAccountType().isWithdrawAble()) {
-            log.warn("Withdrawal not supported for fromAccount, IBAN= {}", fromAccount.getIBAN());
-            throw new WithdrawalNotSupportedException("Withdrawal not supported for fromAccount, IBAN= " + fromAccount.getIBAN());
+    private TransferResult validateTransfer(Account fromAccount, String toIBAN, boolean toLocked, long amount) {
+        final TransferStatus status = checkTransfer(fromAccount, toIBAN, toLocked, amount, fromAccount.getBalance());
+        switch (status) {
+            case SUCCESS:
+                return TransferResult.SUCCESS;
+            case ACCOUNT_LOCKED:
+                return TransferResult.rejected(status, fromAccount.isLocked() ? fromAccount.getIBAN() : toIBAN);
+            default:
+                return TransferResult.rejected(status, fromAccount.getIBAN());
         }
+    }
 
-        validateAccountNotLocked(fromAccount);
-        validateAccountNotLocked(toAccount);
-
-        if (!hasSufficientBalance(fromAccount, amount)) {
-            log.warn("Account with IBAN ={} has insufficient balance {}", fromAccount.getIBAN(), fromAccount.getAccountType());
-            throw new InSufficientBalanceException("Account has insufficient balance, IBAN= " + fromAccount.getIBAN());
+    private void audit(final List<TransferCommand> transfers, final List<TransferStatus> statuses) {
+        for (int i = 0; i < transfers.size(); i++) {
+            final TransferCommand transfer = transfers.get(i);
+            auditLog.record(AuditOperation.TRANSFER, statuses.get(i).name(), transfer.getFromIBAN(), transfer.getToIBAN(),
+                    transfer.getAmount());
         }
+    }
 
+    private TransferStatus checkTransfer(Account fromAccount, String toIBAN, boolean toLocked, long amount,
+                                         long fromBalance) {
+        if (amount <= 0) {
+            return TransferStatus.INVALID_AMOUNT;
+        }
+        if (fromAccount.getIBAN().equals(toIBAN)) {
+            return TransferStatus.SAME_ACCOUNT;
+        }
+        if (!fromAccount.getAccountType().isWithdrawAble()) {
+            return TransferStatus.WITHDRAWAL_NOT_SUPPORTED;
+        }
+        if (fromAccount.isLocked() || toLocked) {
+            return TransferStatus.ACCOUNT_LOCKED;
+        }
+        if (fromBalance < amount) {
+            return TransferStatus.INSUFFICIENT_BALANCE;
+        }
         if (fromAccount.getReferenceAccount().isPresent() && fromAccount.getAccountType().getTransferTo().equals(REFERENCE)
-                && !fromAccount.getReferenceAccount().get().getIBAN().equals(toAccount.getIBAN())) {
-            log.warn("Savings account  with IBAN = {} can only send to reference checking account", fromAccount.getIBAN());
-            throw new UnsupportedTransferException("Savings account can only send to reference checking account");
+                && !fromAccount.getReferenceAccount().get().getIBAN().equals(toIBAN)) {
+            return TransferStatus.UNSUPPORTED_TRANSFER;
         }
+        return TransferStatus.SUCCESS;
     }
 
-    private void withDrawMoney(final Account account, BigDecimal amount) {
-        final BigDecimal newBalance = account.getBalance().subtract(amount);
-        final Transaction transaction = buildTransaction(amount, TransactionType.DEBIT);
-        updateAccount(account, newBalance, transaction);
-        log.info("Bank Account with IBAN = {} has been debited", account.getIBAN());
+    private TransferResult creditUnsharded(long amount, String IBAN) {
+        TransferResult result = hotAccounts.isHot(IBAN)
+                ? hotAccounts.credit(IBAN, buildTransaction(amount, TransactionType.CREDIT, clock.instant()))
+                : null;
+        if (result == null) {
+            hotAccounts.recordCredit(IBAN);
+            result = depositCoalescer.isEnabled()
+                    ? depositCoalescer.deposit(IBAN, amount, this::creditLocked)
+                    : creditLocked(amount, IBAN);
+        }
+        return result;
     }
 
-    private void depositMoney(final Account account, BigDecimal amount) {
-        final BigDecimal newBalance = account.getBalance().add(amount);
-        final Transaction transaction = buildTransaction(amount, TransactionType.CREDIT);
-        updateAccount(account, newBalance, transaction);
-        log.info("Bank Account with IBAN = {} has been credited", account.getIBAN());
+    private TransferResult creditLocked(long amount, String IBAN) {
+        return creditLocked(IBAN, new long[]{amount});
     }
 
-    private void updateAccount(Account account, BigDecimal balance, Transaction transaction) {
-        account.setBalance(balance);
-        account.setUpdatedAt(clock.instant());
+    /**
+     * Credits all {@code amounts} with one balance update and one save, keeping a ledger entry and publishing a change
+     * per amount once saved.
+     */
+    private TransferResult creditLocked(String IBAN, long[] amounts) {
+        return accountLock.withLock(IBAN, () -> {
+            final Account account = bankAccountService.getBankAccount(IBAN).orElse(null);
+            if (account == null) {
+                return TransferResult.rejected(TransferStatus.ACCOUNT_NOT_FOUND, IBAN);
+            }
+            if (account.isLocked()) {
+                return TransferResult.rejected(TransferStatus.ACCOUNT_LOCKED, IBAN);
+            }
 
-        Set<Transaction> transactions = account.getTransactions();
-        transactions.add(transaction);
-        account.setTransactions(transactions);
-        bankAccountService.saveAccount(account);
+            long balance = account.getBalance();
+            for (long amount : amounts) {
+                balance = Money.add(balance, amount);
+            }
+            final Instant now = clock.instant();
+            final AccountChange[] changes = new AccountChange[amounts.length];
+            long runningBalance = account.getBalance();
+            for (int i = 0; i < amounts.length; i++) {
+                final Transaction transaction = buildTransaction(amounts[i], TransactionType.CREDIT, now);
+                runningBalance += amounts[i];
+                account.getTransactions().append(transaction);
+                changes[i] = accountChangeStream.capture(account, transaction, runningBalance);
+            }
+            final long delta = balance - account.getBalance();
+            account.setBalance(balance);
+            account.setUpdatedAt(now);
+            bankAccountService.saveAccount(account);
+            accountAggregates.balanceChanged(account.getAccountType(), delta);
+            accountAggregates.transactionsAppended(amounts.length);
+            for (AccountChange change : changes) {
+                accountChangeStream.publish(change);
+            }
+            return TransferResult.SUCCESS;
+        });
     }
 
-    private boolean hasSufficientBalance(final Account account, final BigDecimal amount) {
-        return (account.getBalance().compareTo(amount) >= 0);
+    /**
+     * Applies one ledger entry to {@code account} and returns its change, to be published once the account is saved.
+     * The aggregates are adjusted by {@link #transferred} once it is saved.
+     */
+    private AccountChange applyTransaction(Account account, long amount, TransactionType type, Instant now) {
+        final long balance = type == TransactionType.CREDIT
+                ? Money.add(account.getBalance(), amount)
+                : Money.subtract(account.getBalance(), amount);
+        final Transaction transaction = buildTransaction(amount, type, now);
+        account.setBalance(balance);
+        account.setUpdatedAt(now);
+        account.getTransactions().append(transaction);
+        return accountChangeStream.capture(account, transaction, balance);
     }
 
-    private void validateAccountNotLocked(Account account) {
-        if (account.isLocked()) {
-            log.warn("Account with IBAN ={} is locked", account.getIBAN());
-            throw new BankAccountIsLockedException("BankAccount with is locked, IBAN = " + account.getIBAN());
-        }
+    /**
+     * Adjusts the aggregates for a saved transfer of {@code amount}: one debit and one credit.
+     */
+    private void transferred(final Account fromAccount, final Account toAccount, final long amount) {
+        accountAggregates.balanceChanged(fromAccount.getAccountType(), -amount);
+        accountAggregates.balanceChanged(toAccount.getAccountType(), amount);
+        accountAggregates.transactionsAppended(2);
     }
 
-    private Transaction buildTransaction(final BigDecimal amount, TransactionType type) {
+    private Transaction buildTransaction(final long amount, TransactionType type, Instant now) {
         return Transaction.builder()
                 .amount(amount)
                 .transactionType(type)
-                .createdAt(clock.instant())
+                .createdAt(now)
                 .build();
     }
 }
@@ -0,0 +1,13 @@
+package com.codefactory.service;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class TransferCommand {
+
+    private final long amount;
+    private final String fromIBAN;
+    private final String toIBAN;
+}
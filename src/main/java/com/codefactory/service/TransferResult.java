@@ -0,0 +1,30 @@
+package com.codefactory.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Outcome of a single deposit or transfer. Rejections are expected business outcomes, so they are returned rather
+ * than thrown and only turned into exceptions at the controller.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class TransferResult {
+
+    public static final TransferResult SUCCESS = new TransferResult(TransferStatus.SUCCESS, null);
+
+    private final TransferStatus status;
+    /**
+     * IBAN of the account the rejection is about, {@code null} on success.
+     */
+    private final String IBAN;
+
+    public static TransferResult rejected(final TransferStatus status, final String IBAN) {
+        return new TransferResult(status, IBAN);
+    }
+
+    public boolean isSuccess() {
+        return status == TransferStatus.SUCCESS;
+    }
+}
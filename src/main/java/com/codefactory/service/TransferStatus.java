@@ -0,0 +1,25 @@
+package com.codefactory.service;
+
+/**
+ * Outcome of a single transfer.
+ */
+public enum TransferStatus {
+    SUCCESS,
+    /**
+     * The amount is not positive.
+     */
+    INVALID_AMOUNT,
+    ACCOUNT_NOT_FOUND,
+    WITHDRAWAL_NOT_SUPPORTED,
+    ACCOUNT_LOCKED,
+    INSUFFICIENT_BALANCE,
+    UNSUPPORTED_TRANSFER,
+    /**
+     * Both sides of the transfer are the same account.
+     */
+    SAME_ACCOUNT,
+    /**
+     * Valid on its own, but not applied because another transfer of the same atomic batch failed.
+     */
+    ABORTED
+}
@@ -0,0 +1,18 @@
+package com.codefactory.service.aggregate;
+
+import com.codefactory.domain.entity.AccountType;
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class AccountAggregate {
+
+    private final AccountType accountType;
+    private final long accountCount;
+    private final long lockedAccountCount;
+    /**
+     * Sum of the balances in minor units.
+     */
+    private final long totalBalance;
+}
@@ -0,0 +1,116 @@
+package com.codefactory.service.aggregate;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Running totals per {@link AccountType}: account count, locked account count and total balance, plus the number of
+ * ledger entries of all accounts.
+ * <p>
+ * The totals are seeded from the repository once, when the application starts, and from then on adjusted by the
+ * services on every account creation, balance change, ledger append and lock/unlock, once the change is saved, so
+ * reading them never visits an account. They are reset whenever the repository deletes all accounts.
+ * Each total is a {@link LongAdder}; a read is not an atomic snapshot across totals, so a transfer between two account
+ * types may be seen with only one side applied. Pending hot-account credits are counted once they are merged.
+ */
+@Slf4j
+@Component
+public class AccountAggregates {
+
+    private final Map<AccountType, Totals> totals = new EnumMap<>(AccountType.class);
+    private final LongAdder transactions = new LongAdder();
+
+    public AccountAggregates(final AccountRepository accountRepository) {
+        for (AccountType accountType : AccountType.values()) {
+            totals.put(accountType, new Totals());
+        }
+        try (Stream<Account> accounts = accountRepository.streamBankAccountsBy(EnumSet.allOf(AccountType.class))) {
+            accounts.forEach(this::accountCreated);
+        }
+        accountRepository.onDeleteAll(this::reset);
+        log.info("Account aggregates seeded, accounts={}",
+                totals.values().stream().mapToLong(total -> total.accounts.sum()).sum());
+    }
+
+    public void accountCreated(final Account account) {
+        final Totals total = totals.get(account.getAccountType());
+        total.accounts.increment();
+        total.balance.add(account.getBalance());
+        if (account.isLocked()) {
+            total.lockedAccounts.increment();
+        }
+        transactions.add(account.getTransactions().size());
+    }
+
+    /**
+     * Adds {@code delta} minor units, negative for a debit, to the total balance of {@code accountType}.
+     */
+    public void balanceChanged(final AccountType accountType, final long delta) {
+        totals.get(accountType).balance.add(delta);
+    }
+
+    public void transactionsAppended(final int count) {
+        transactions.add(count);
+    }
+
+    public void lockChanged(final AccountType accountType, final boolean locked) {
+        if (locked) {
+            totals.get(accountType).lockedAccounts.increment();
+        } else {
+            totals.get(accountType).lockedAccounts.decrement();
+        }
+    }
+
+    /**
+     * Sets every total back to zero, for a repository that no longer holds any account.
+     */
+    public void reset() {
+        totals.values().forEach(Totals::reset);
+        transactions.reset();
+    }
+
+    /**
+     * Current totals, one per account type in declaration order.
+     */
+    public List<AccountAggregate> getAggregates() {
+        final List<AccountAggregate> aggregates = new ArrayList<>(totals.size());
+        totals.forEach((accountType, total) -> aggregates.add(AccountAggregate.builder()
+                .accountType(accountType)
+                .accountCount(total.accounts.sum())
+                .lockedAccountCount(total.lockedAccounts.sum())
+                .totalBalance(total.balance.sum())
+                .build()));
+        return aggregates;
+    }
+
+    /**
+     * Number of ledger entries of all accounts.
+     */
+    public long getTransactionCount() {
+        return transactions.sum();
+    }
+
+    private static final class Totals {
+
+        private final LongAdder accounts = new LongAdder();
+        private final LongAdder lockedAccounts = new LongAdder();
+        private final LongAdder balance = new LongAdder();
+
+        private void reset() {
+            accounts.reset();
+            lockedAccounts.reset();
+            balance.reset();
+        }
+    }
+}
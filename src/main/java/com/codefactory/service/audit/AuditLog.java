@@ -0,0 +1,183 @@
+package com.codefactory.service.audit;
+
+import com.codefactory.service.TransferStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Audit trail of business operations, one compact record per operation.
+ * <p>
+ * {@link #record} only copies its arguments into a preallocated slot of a ring buffer; a background writer drains the
+ * ring, formats each record as a single {@code key=value} line and hands it to the sink, by default the {@code audit}
+ * logger. The request thread never formats, allocates or touches an appender. When the ring is full, records are
+ * dropped and counted rather than blocking the caller.
+ * <p>
+ * Successful operations are sampled with {@code successSampleRate}, between {@code 0} and {@code 1}; rejections are
+ * always recorded.
+ */
+@Slf4j
+@Component
+public class AuditLog implements Closeable {
+
+    public static final String SUCCESS = TransferStatus.SUCCESS.name();
+
+    private static final Logger AUDIT = LoggerFactory.getLogger("audit");
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Clock clock;
+    private final double successSampleRate;
+    private final Consumer<String> sink;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile long head;
+    private volatile boolean running = true;
+
+    @Autowired
+    public AuditLog(final Clock clock,
+                    @Value("${bank.audit.capacity:65536}") final int capacity,
+                    @Value("${bank.audit.success-sample-rate:1.0}") final double successSampleRate) {
+        this(clock, capacity, successSampleRate, AUDIT::info);
+    }
+
+    public AuditLog(final Clock clock, final int capacity, final double successSampleRate, final Consumer<String> sink) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity should be a power of two, capacity=" + capacity);
+        }
+        if (successSampleRate < 0 || successSampleRate > 1) {
+            throw new IllegalArgumentException("successSampleRate should be between 0 and 1, successSampleRate=" + successSampleRate);
+        }
+        this.clock = clock;
+        this.successSampleRate = successSampleRate;
+        this.sink = sink;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+        this.writer = new Thread(this::drain, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Records an operation on {@code IBAN}; {@code counterpartyIBAN} is the other account of a transfer and
+     * {@code amount} is in minor units, {@code 0} when the operation moves no money.
+     */
+    public void record(final AuditOperation operation, final String outcome, final String IBAN,
+                       final String counterpartyIBAN, final long amount) {
+        if (successSampleRate < 1 && SUCCESS.equals(outcome)
+                && ThreadLocalRandom.current().nextDouble() >= successSampleRate) {
+            return;
+        }
+
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        final Slot slot = slots[(int) sequence & mask];
+        slot.operation = operation;
+        slot.outcome = outcome;
+        slot.IBAN = IBAN;
+        slot.counterpartyIBAN = counterpartyIBAN;
+        slot.amount = amount;
+        slot.timestamp = clock.millis();
+        slot.sequence = sequence;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the writer once every record taken so far has been written.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        final StringBuilder line = new StringBuilder(192);
+        long next = head;
+        long reportedDrops = 0;
+        while (running || next < tail.get()) {
+            final Slot slot = slots[(int) next & mask];
+            if (slot.sequence != next) {
+                final long drops = dropped.sum();
+                if (drops != reportedDrops) {
+                    log.warn("Audit records dropped because the ring was full, dropped={}", drops - reportedDrops);
+                    reportedDrops = drops;
+                }
+                if (next < tail.get()) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                continue;
+            }
+
+            line.setLength(0);
+            line.append("op=").append(slot.operation)
+                    .append(" outcome=").append(slot.outcome)
+                    .append(" iban=").append(slot.IBAN);
+            if (slot.counterpartyIBAN != null) {
+                line.append(" counterparty=").append(slot.counterpartyIBAN);
+            }
+            if (slot.amount != 0) {
+                line.append(" amount=").append(slot.amount);
+            }
+            line.append(" at=").append(Instant.ofEpochMilli(slot.timestamp));
+            slot.IBAN = null;
+            slot.counterpartyIBAN = null;
+            head = ++next;
+
+            try {
+                sink.accept(line.toString());
+            } catch (RuntimeException e) {
+                log.error("Audit record could not be written", e);
+            }
+        }
+    }
+
+    /**
+     * One record of the ring; {@code sequence} is written last and publishes the other fields to the writer.
+     */
+    private static final class Slot {
+
+        private AuditOperation operation;
+        private String outcome;
+        private String IBAN;
+        private String counterpartyIBAN;
+        private long amount;
+        private long timestamp;
+        private volatile long sequence = -1;
+    }
+}
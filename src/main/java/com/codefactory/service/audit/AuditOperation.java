@@ -0,0 +1,12 @@
+package com.codefactory.service.audit;
+
+/**
+ * Business operation an {@link AuditLog} record describes.
+ */
+public enum AuditOperation {
+    CREATE_ACCOUNT,
+    DEPOSIT,
+    TRANSFER,
+    LOCK_ACCOUNT,
+    UNLOCK_ACCOUNT
+}
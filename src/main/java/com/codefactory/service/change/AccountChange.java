@@ -0,0 +1,35 @@
+package com.codefactory.service.change;
+
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.MinorUnitsSerializer;
+import com.codefactory.domain.entity.TransactionType;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * One change of an account, carrying the state of the account right after the change. A
+ * {@link AccountChangeType#BALANCE_CHANGED} change also carries the ledger entry that caused it, its
+ * {@code transactionType} and {@code amount}, so a consumer can rebuild the ledger of the account from the changes;
+ * other changes have no transaction type and an amount of zero.
+ */
+@Builder(toBuilder = true)
+@Getter
+public class AccountChange {
+
+    private final long sequence;
+    private final AccountChangeType changeType;
+    @JsonProperty("iban")
+    private final String IBAN;
+    private final AccountType accountType;
+    @JsonSerialize(using = MinorUnitsSerializer.class)
+    private final long balance;
+    private final boolean locked;
+    private final TransactionType transactionType;
+    @JsonSerialize(using = MinorUnitsSerializer.class)
+    private final long amount;
+    private final Instant changedAt;
+}
@@ -0,0 +1,188 @@
+package com.codefactory.service.change;
+
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.TransactionType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Circular file holding the last {@code capacity} spilled changes of an {@link AccountChangeStream}.
+ * <p>
+ * Every change takes a fixed-size record at slot {@code sequence % capacity}, so a change is found without an index.
+ * A record is {@code [long sequence][long balance][long amount][long changedAt seconds][int changedAt nanos]
+ * [byte changeType][byte accountType][byte transactionType, -1 for none][byte locked][byte IBAN length]
+ * [IBAN, padded to 34 bytes]}, so a spilled change reads back exactly as it was published. The file is emptied when
+ * it is opened: sequences start over with the application.
+ * <p>
+ * Changes are appended by one thread; reads may run concurrently. Before a slot is overwritten {@link #getFirst()}
+ * moves past the change it held, and readers check it after reading, so a torn record is never returned.
+ * {@link #skipTo(long)} restarts the file after a gap in the spilled sequences.
+ */
+final class AccountChangeSpill implements Closeable {
+
+    static final int MAX_IBAN_LENGTH = 34;
+    static final int RECORD_BYTES = 4 * Long.BYTES + Integer.BYTES + 5 + MAX_IBAN_LENGTH;
+
+    private static final AccountChangeType[] CHANGE_TYPES = AccountChangeType.values();
+    private static final AccountType[] ACCOUNT_TYPES = AccountType.values();
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+
+    private final FileChannel channel;
+    private final long capacity;
+    private final ByteBuffer buffer;
+    private volatile long first;
+    private volatile long end;
+
+    AccountChangeSpill(final Path file, final long capacity, final int maxBatchSize) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocate(maxBatchSize * RECORD_BYTES);
+    }
+
+    /**
+     * Sequence of the oldest change that can still be read.
+     */
+    long getFirst() {
+        return first;
+    }
+
+    /**
+     * Sequence of the next change to be appended.
+     */
+    long getEnd() {
+        return end;
+    }
+
+    /**
+     * Appends changes with consecutive sequences, starting at {@link #getEnd()}; at most {@code maxBatchSize} at once.
+     */
+    void append(final List<AccountChange> changes) throws IOException {
+        final long next = end + changes.size();
+        if (next - capacity > first) {
+            first = next - capacity;
+        }
+
+        buffer.clear();
+        long slot = end % capacity;
+        for (AccountChange change : changes) {
+            if (buffer.position() > 0 && change.getSequence() % capacity == 0) {
+                write(slot);
+                slot = 0;
+            }
+            encode(change);
+        }
+        write(slot);
+        end = next;
+    }
+
+    /**
+     * Drops every spilled change and continues at {@code sequence}, which must not be below {@link #getEnd()}; the
+     * changes in between were never spilled.
+     */
+    void skipTo(final long sequence) {
+        first = sequence;
+        end = sequence;
+    }
+
+    /**
+     * Up to {@code maxChanges} changes from {@code fromSequence} on, fewer at the end of the file; empty when
+     * {@code fromSequence} was overwritten.
+     */
+    List<AccountChange> read(final long fromSequence, final int maxChanges) throws IOException {
+        final long slot = fromSequence % capacity;
+        final int count = (int) Math.min(Math.min(maxChanges, capacity - slot), end - fromSequence);
+        final List<AccountChange> changes = new ArrayList<>(Math.max(count, 0));
+        if (count <= 0) {
+            return changes;
+        }
+
+        final ByteBuffer records = ByteBuffer.allocate(count * RECORD_BYTES);
+        long position = slot * RECORD_BYTES;
+        while (records.hasRemaining()) {
+            final int read = channel.read(records, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        records.flip();
+
+        final long oldest = first;
+        while (records.remaining() >= RECORD_BYTES) {
+            final long sequence = records.getLong(records.position());
+            if (sequence != fromSequence + changes.size() || sequence < oldest) {
+                break;
+            }
+            changes.add(decode(records));
+        }
+        return changes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void write(final long slot) throws IOException {
+        buffer.flip();
+        long position = slot * RECORD_BYTES;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+    }
+
+    private void encode(final AccountChange change) {
+        final byte[] IBAN = change.getIBAN().getBytes(StandardCharsets.US_ASCII);
+        if (IBAN.length > MAX_IBAN_LENGTH) {
+            throw new IllegalArgumentException("IBAN is too long to spill, IBAN=" + change.getIBAN());
+        }
+        buffer.putLong(change.getSequence())
+                .putLong(change.getBalance())
+                .putLong(change.getAmount())
+                .putLong(change.getChangedAt().getEpochSecond())
+                .putInt(change.getChangedAt().getNano())
+                .put((byte) change.getChangeType().ordinal())
+                .put((byte) change.getAccountType().ordinal())
+                .put((byte) (change.getTransactionType() == null ? -1 : change.getTransactionType().ordinal()))
+                .put((byte) (change.isLocked() ? 1 : 0))
+                .put((byte) IBAN.length)
+                .put(IBAN)
+                .position(buffer.position() + MAX_IBAN_LENGTH - IBAN.length);
+    }
+
+    private static AccountChange decode(final ByteBuffer records) {
+        final int start = records.position();
+        final AccountChange.AccountChangeBuilder change = AccountChange.builder()
+                .sequence(records.getLong())
+                .balance(records.getLong())
+                .amount(records.getLong())
+                .changedAt(Instant.ofEpochSecond(records.getLong(), records.getInt()))
+                .changeType(CHANGE_TYPES[records.get()])
+                .accountType(ACCOUNT_TYPES[records.get()]);
+        final byte transactionType = records.get();
+        change.transactionType(transactionType < 0 ? null : TRANSACTION_TYPES[transactionType])
+                .locked(records.get() == 1);
+        final byte[] IBAN = new byte[records.get()];
+        records.get(IBAN);
+        records.position(start + RECORD_BYTES);
+        return change.IBAN(new String(IBAN, StandardCharsets.US_ASCII)).build();
+    }
+}
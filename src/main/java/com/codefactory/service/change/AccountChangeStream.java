@@ -0,0 +1,372 @@
+package com.codefactory.service.change;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.Transaction;
+import com.codefactory.exception.AccountChangeStreamDisabledException;
+import com.codefactory.exception.AccountChangesExpiredException;
+import com.codefactory.exception.InvalidPageRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional change data capture ({@code bank.cdc.enabled=true}): every account creation, balance change and lock/unlock
+ * is published as an {@link AccountChange} with the next sequence number, so consumers can follow the changes instead of
+ * polling the accounts.
+ * <p>
+ * The services capture a change with {@link #capture} while they apply it and publish it with {@link #publish} once
+ * the account was saved, so a change whose save or journal append failed is never seen by consumers. Both happen
+ * under the stripe lock of the account, so the changes of one account are numbered in the order they were applied.
+ * Sequences start at {@code 0} with the application.
+ * <p>
+ * The last {@code bank.cdc.capacity} changes are kept in a ring. With {@code bank.cdc.spill-file} set, a background
+ * thread also spills every change to a circular file of the last {@code bank.cdc.spill-capacity} changes. The ring
+ * is the bounded handoff to that thread: publishing never waits for the spill, so no file I/O happens under a stripe
+ * lock. When the spiller falls more than the ring capacity behind, the changes it missed are not spilled, the spill
+ * file starts over after the gap and reading those changes fails as expired. Without a spill file, older changes are
+ * overwritten and are gone.
+ * <p>
+ * Consumers pull: each one reads from its own sequence at its own pace with {@link #read(long, int)},
+ * {@link #poll(long, int, long)} or {@link #await(long, int)}, so a slow consumer falls behind, and eventually out of
+ * the retained changes, without holding up publishers or other consumers. A consumer waiting for the next change is
+ * registered with the stream and completed by the publisher of that change, so no thread waits for it.
+ */
+@Component
+public class AccountChangeStream implements Closeable {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger("x");
+
+    private static final int SPILL_BATCH_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Clock clock;
+    private final boolean enabled;
+    private final AtomicReferenceArray<AccountChange> ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AccountChangeSpill spill;
+    private final Thread spiller;
+    private volatile boolean running = true;
+
+    /**
+     * @param spillFile file to spill to, empty or {@code null} to keep the changes in the ring only
+     */
+    public AccountChangeStream(final Clock clock,
+                               @Value("${bank.cdc.enabled:false}") final boolean enabled,
+                               @Value("${bank.cdc.capacity:65536}") final int capacity,
+                               @Value("${bank.cdc.spill-file:}") final String spillFile,
+                               @Value("${bank.cdc.spill-capacity:4194304}") final long spillCapacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity should be a power of two, capacity=" + capacity);
+        }
+        final boolean spillToFile = spillFile != null && !spillFile.isEmpty();
+        if (spillToFile && spillCapacity < capacity) {
+            throw new IllegalArgumentException("spillCapacity should not be less than capacity, spillCapacity="
+                    + spillCapacity + ", capacity=" + capacity);
+        }
+        this.clock = clock;
+        this.enabled = enabled;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.spill = enabled && spillToFile ? openSpill(Paths.get(spillFile), spillCapacity) : null;
+        if (spill != null) {
+            this.spiller = new Thread(this::spill, "account-change-spiller");
+            this.spiller.setDaemon(true);
+            this.spiller.start();
+            log.info("Account changes spill to file, file={}, spillCapacity={}", spillFile, spillCapacity);
+        } else {
+            this.spiller = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The current state of {@code account} as a change of {@code changeType}, still to be published; {@code null} when
+     * the stream is disabled.
+     */
+    public AccountChange capture(final AccountChangeType changeType, final Account account) {
+        return enabled ? AccountChange.builder()
+                .changeType(changeType)
+                .IBAN(account.getIBAN())
+                .accountType(account.getAccountType())
+                .balance(account.getBalance())
+                .locked(account.isLocked())
+                .changedAt(clock.instant())
+                .build() : null;
+    }
+
+    /**
+     * The balance change of {@code account} made by {@code transaction}, which left it at {@code balance}, still to be
+     * published; {@code null} when the stream is disabled.
+     */
+    public AccountChange capture(final Account account, final Transaction transaction, final long balance) {
+        return enabled ? AccountChange.builder()
+                .changeType(AccountChangeType.BALANCE_CHANGED)
+                .IBAN(account.getIBAN())
+                .accountType(account.getAccountType())
+                .balance(balance)
+                .locked(account.isLocked())
+                .transactionType(transaction.getTransactionType())
+                .amount(transaction.getAmount())
+                .changedAt(transaction.getCreatedAt())
+                .build() : null;
+    }
+
+    /**
+     * Publishes a change {@link #capture captured} earlier with the next sequence and completes the consumers
+     * {@link #await waiting} for it; does nothing for {@code null}. The caller holds the stripe lock of the account
+     * and has saved it.
+     */
+    public void publish(final AccountChange change) {
+        if (change == null) {
+            return;
+        }
+        final long sequence = nextSequence.getAndIncrement();
+        ring.accumulateAndGet((int) sequence & mask, change.toBuilder().sequence(sequence).build(), AccountChangeStream::newer);
+        if (!waiters.isEmpty()) {
+            wakeWaiters();
+        }
+    }
+
+    /**
+     * Publishes the current state of {@code account} as a change of {@code changeType}. The caller holds the stripe lock
+     * of the account and has saved it.
+     */
+    public void publish(final AccountChangeType changeType, final Account account) {
+        publish(capture(changeType, account));
+    }
+
+    /**
+     * Sequence the next change will be published with.
+     */
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Up to {@code maxChanges} changes from {@code fromSequence} on, in sequence order, without waiting. Fewer are
+     * returned once the published changes are used up or a change is still being published.
+     */
+    public List<AccountChange> read(final long fromSequence, final int maxChanges) {
+        if (!enabled) {
+            throw new AccountChangeStreamDisabledException("Account change stream is not enabled");
+        }
+        final long end = nextSequence.get();
+        if (fromSequence < 0 || fromSequence > end) {
+            throw new InvalidPageRequestException("fromSequence should be between 0 and " + end
+                    + ", fromSequence=" + fromSequence);
+        }
+
+        final List<AccountChange> changes = new ArrayList<>((int) Math.min(maxChanges, end - fromSequence));
+        for (long sequence = fromSequence; sequence < end && changes.size() < maxChanges; sequence++) {
+            final AccountChange change = ring.get((int) sequence & mask);
+            if (change == null || change.getSequence() < sequence) {
+                break;
+            }
+            if (change.getSequence() > sequence) {
+                return changes.isEmpty() ? readSpilled(sequence, maxChanges) : changes;
+            }
+            changes.add(change);
+        }
+        return changes;
+    }
+
+    /**
+     * Like {@link #read(long, int)}, but waits up to {@code timeoutMillis} for a change when there is none yet.
+     */
+    public List<AccountChange> poll(final long fromSequence, final int maxChanges, final long timeoutMillis) {
+        final CompletableFuture<List<AccountChange>> changes = await(fromSequence, maxChanges);
+        try {
+            return changes.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return List.of();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        } finally {
+            changes.cancel(false);
+        }
+    }
+
+    /**
+     * The changes {@link #read(long, int)} returns from {@code fromSequence} on, as soon as there is one. The future is
+     * completed at once when there is a change already, and otherwise by the thread publishing it, under the stripe lock
+     * of its account, so its dependents should only hand the changes off. A change that is no longer retained completes
+     * it exceptionally. Cancel it to stop waiting.
+     */
+    public CompletableFuture<List<AccountChange>> await(final long fromSequence, final int maxChanges) {
+        final List<AccountChange> changes = read(fromSequence, maxChanges);
+        final Waiter waiter = new Waiter(fromSequence, maxChanges);
+        if (!changes.isEmpty()) {
+            waiter.complete(changes);
+            return waiter;
+        }
+        waiters.add(waiter);
+        // a change published between the read and the add did not see the waiter
+        wakeWaiters();
+        return waiter;
+    }
+
+    /**
+     * Sequence the spiller continues from; every change below it has been spilled or skipped.
+     */
+    long getSpilledSequence() {
+        return spill == null ? 0 : spill.getEnd();
+    }
+
+    /**
+     * Stops the spiller once every change published so far has been spilled.
+     */
+    @Override
+    public void close() {
+        if (spiller == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(spiller);
+        try {
+            spiller.join(TimeUnit.SECONDS.toMillis(10));
+            spill.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Account change spill file could not be closed", e);
+        }
+    }
+
+    private static AccountChangeSpill openSpill(final Path spillFile, final long spillCapacity) {
+        try {
+            return new AccountChangeSpill(spillFile, spillCapacity, SPILL_BATCH_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Account change spill file could not be opened, file=" + spillFile, e);
+        }
+    }
+
+    private List<AccountChange> readSpilled(final long fromSequence, final int maxChanges) {
+        List<AccountChange> changes = List.of();
+        if (spill != null && fromSequence < spill.getEnd()) {
+            try {
+                changes = spill.read(fromSequence, maxChanges);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Account changes could not be read from the spill file", e);
+            }
+        }
+        if (changes.isEmpty()) {
+            throw new AccountChangesExpiredException("Account changes are no longer retained, fromSequence="
+                    + fromSequence);
+        }
+        return changes;
+    }
+
+    private void spill() {
+        final List<AccountChange> batch = new ArrayList<>(SPILL_BATCH_SIZE);
+        long next = 0;
+        while (true) {
+            batch.clear();
+            AccountChange change = null;
+            while (batch.size() < SPILL_BATCH_SIZE
+                    && (change = ring.get((int) (next + batch.size()) & mask)) != null
+                    && change.getSequence() == next + batch.size()) {
+                batch.add(change);
+            }
+            if (batch.isEmpty() && change != null && change.getSequence() > next) {
+                final long resumeAt = Math.max(next + 1, nextSequence.get() - ring.length());
+                log.warn("Account changes were overwritten before they were spilled, fromSequence={}, lost={}",
+                        next, resumeAt - next);
+                spill.skipTo(resumeAt);
+                next = resumeAt;
+                continue;
+            }
+            if (batch.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            try {
+                spill.append(batch);
+            } catch (IOException | RuntimeException e) {
+                log.error("Account changes could not be spilled, spilling stops, fromSequence={}", next, e);
+                return;
+            }
+            next += batch.size();
+        }
+    }
+
+    private void wakeWaiters() {
+        for (Iterator<Waiter> iterator = waiters.iterator(); iterator.hasNext(); ) {
+            final Waiter waiter = iterator.next();
+            if (waiter.isDone() || waiter.wake()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static AccountChange newer(final AccountChange current, final AccountChange change) {
+        return current == null || current.getSequence() < change.getSequence() ? change : current;
+    }
+
+    /**
+     * A consumer waiting for the changes from {@code fromSequence} on.
+     */
+    private final class Waiter extends CompletableFuture<List<AccountChange>> {
+
+        private final long fromSequence;
+        private final int maxChanges;
+
+        private Waiter(final long fromSequence, final int maxChanges) {
+            this.fromSequence = fromSequence;
+            this.maxChanges = maxChanges;
+        }
+
+        /**
+         * Completes the waiter once there is a change from {@code fromSequence} on; a change published with a later
+         * sequence may become visible before it, so the waiter keeps waiting until it does.
+         */
+        private boolean wake() {
+            try {
+                final List<AccountChange> changes = read(fromSequence, maxChanges);
+                if (changes.isEmpty()) {
+                    return false;
+                }
+                complete(changes);
+            } catch (RuntimeException e) {
+                completeExceptionally(e);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            waiters.remove(this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
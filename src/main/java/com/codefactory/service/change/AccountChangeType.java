@@ -0,0 +1,11 @@
+package com.codefactory.service.change;
+
+/**
+ * Kind of change an {@link AccountChange} describes.
+ */
+public enum AccountChangeType {
+    CREATED,
+    BALANCE_CHANGED,
+    LOCKED,
+    UNLOCKED
+}
@@ -0,0 +1,193 @@
+package com.codefactory.service.coalescing;
+
+import com.codefactory.service.TransferResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional coalescing of deposits ({@code bank.coalescing.enabled=true}): deposits to the same IBAN that arrive while
+ * an earlier batch of that IBAN is being committed are committed together, up to {@code bank.coalescing.max-deposits}
+ * at a time.
+ * <p>
+ * The first deposit to an IBAN opens a batch and leads it. When no earlier batch of the IBAN is being committed, the
+ * leader closes its batch and commits right away, so a lone deposit never waits. Otherwise it waits until the earlier
+ * batch is committed, the batch fills or {@code bank.coalescing.window-micros} pass, whichever comes first. It then
+ * closes the batch and commits every amount in it through one {@link Committer} call, i.e. one stripe lock acquisition,
+ * one balance update and one save. The other deposits of the batch only wait for their result. Deposits arriving after
+ * a batch was closed open the next one.
+ * <p>
+ * A rejection such as a locked account applies to every deposit of a batch. When the batch commit throws, e.g. because
+ * one amount would overflow the balance, each deposit is committed on its own, so only the deposits that fail by
+ * themselves fail.
+ */
+@Component
+public class DepositCoalescer {
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxDeposits;
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+    public DepositCoalescer(@Value("${bank.coalescing.enabled:false}") final boolean enabled,
+                            @Value("${bank.coalescing.window-micros:500}") final long windowMicros,
+                            @Value("${bank.coalescing.max-deposits:64}") final int maxDeposits) {
+        if (windowMicros < 0) {
+            throw new IllegalArgumentException("windowMicros should not be negative, windowMicros=" + windowMicros);
+        }
+        if (maxDeposits <= 0) {
+            throw new IllegalArgumentException("maxDeposits should be positive, maxDeposits=" + maxDeposits);
+        }
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxDeposits = maxDeposits;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds {@code amount} to the open batch of {@code IBAN} and returns the result of committing that batch.
+     */
+    public TransferResult deposit(final String IBAN, final long amount, final Committer committer) {
+        final Deposit deposit = new Deposit(amount);
+        final Batch batch = batches.compute(IBAN, (key, latest) -> {
+            Batch joined = latest;
+            if (latest == null || latest.closed || latest.size == maxDeposits) {
+                joined = new Batch(maxDeposits, latest);
+                if (latest != null) {
+                    latest.next = joined;
+                }
+            }
+            deposit.leader = joined.size == 0;
+            joined.deposits[joined.size] = deposit;
+            joined.size = joined.size + 1;
+            if (joined.size == maxDeposits) {
+                LockSupport.unpark(joined.leader);
+            }
+            return joined;
+        });
+
+        if (deposit.leader) {
+            final Batch previous = batch.previous;
+            batch.previous = null;
+            if (previous != null) {
+                final long deadline = System.nanoTime() + windowNanos;
+                long remaining;
+                while (batch.size < maxDeposits && !previous.committed
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+            batches.computeIfPresent(IBAN, (key, latest) -> {
+                batch.closed = true;
+                return latest;
+            });
+            commit(IBAN, batch, committer);
+            batch.committed = true;
+            batches.remove(IBAN, batch);
+            final Batch next = batch.next;
+            if (next != null) {
+                LockSupport.unpark(next.leader);
+            }
+        }
+
+        try {
+            return deposit.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Commits a closed batch. No deposit joins it any more: it is either full or closed. When the batch commit throws,
+     * each deposit is committed on its own.
+     */
+    private static void commit(final String IBAN, final Batch batch, final Committer committer) {
+        final int size = batch.size;
+        final long[] amounts = new long[size];
+        for (int i = 0; i < size; i++) {
+            amounts[i] = batch.deposits[i].amount;
+        }
+        try {
+            final TransferResult result = committer.commit(IBAN, amounts);
+            for (int i = 0; i < size; i++) {
+                batch.deposits[i].result.complete(result);
+            }
+        } catch (RuntimeException e) {
+            for (int i = 0; i < size; i++) {
+                if (size == 1) {
+                    batch.deposits[i].result.completeExceptionally(e);
+                } else {
+                    commit(IBAN, batch.deposits[i], committer);
+                }
+            }
+        } catch (Error e) {
+            for (int i = 0; i < size; i++) {
+                batch.deposits[i].result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static void commit(final String IBAN, final Deposit deposit, final Committer committer) {
+        try {
+            deposit.result.complete(committer.commit(IBAN, new long[]{deposit.amount}));
+        } catch (RuntimeException | Error e) {
+            deposit.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Credits all {@code amounts} to {@code IBAN} at once. A commit that throws must have credited nothing, so that the
+     * amounts can be committed again one by one.
+     */
+    @FunctionalInterface
+    public interface Committer {
+
+        TransferResult commit(String IBAN, long[] amounts);
+    }
+
+    /**
+     * Deposits waiting for one commit; only changed inside {@link ConcurrentMap#compute}, {@code size} is written last.
+     * {@link #batches} holds the latest batch of an IBAN until it is committed.
+     */
+    private static final class Batch {
+
+        private final Thread leader = Thread.currentThread();
+        private final Deposit[] deposits;
+        private volatile int size;
+        private boolean closed;
+        /**
+         * The batch of the same IBAN opened before this one, which the leader waits for; cleared once read.
+         */
+        private Batch previous;
+        private volatile Batch next;
+        private volatile boolean committed;
+
+        private Batch(final int maxDeposits, final Batch previous) {
+            this.deposits = new Deposit[maxDeposits];
+            this.previous = previous;
+        }
+    }
+
+    private static final class Deposit {
+
+        private final long amount;
+        private final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+        private boolean leader;
+
+        private Deposit(final long amount) {
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.codefactory.service.hot;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Ends a hot-account window every {@code bank.hot-accounts.window-ms}, merging pending credits, and merges them once
+ * more on shutdown.
+ */
+@Component
+@EnableScheduling
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "bank.hot-accounts.enabled", havingValue = "true")
+public class HotAccountFlushTask {
+
+    private final HotAccounts hotAccounts;
+
+    @Scheduled(fixedDelayString = "${bank.hot-accounts.window-ms:1000}")
+    public void flush() {
+        hotAccounts.flush();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
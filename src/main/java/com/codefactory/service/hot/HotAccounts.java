@@ -0,0 +1,277 @@
+package com.codefactory.service.hot;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.Money;
+import com.codefactory.domain.entity.Transaction;
+import com.codefactory.domain.repository.AccountRepository;
+import com.codefactory.service.TransferResult;
+import com.codefactory.service.TransferStatus;
+import com.codefactory.service.aggregate.AccountAggregates;
+import com.codefactory.service.change.AccountChange;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.lock.StripedAccountLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional hot-account mode ({@code bank.hot-accounts.enabled=true}) for accounts that take a large share of credits.
+ * <p>
+ * Credits to a hot account skip its stripe lock: each one is queued as a ledger entry in one of
+ * {@code bank.hot-accounts.stripes} sub-ledgers, picked by the crediting thread, so concurrent credits contend on
+ * different queues rather than on one lock. The pending credits are merged into the balance and the ledger, in time
+ * order, under the stripe lock whenever the account is looked up through {@code BankAccountService}, i.e. before every
+ * balance read, debit, credit the regular way and history read, and every window by {@link #flush()}. A look-up that
+ * finds nothing pending or being merged reads the repository without the stripe lock and saves nothing. Account lists
+ * show balances as of the last merge.
+ * <p>
+ * An IBAN becomes hot when it takes {@code bank.hot-accounts.threshold} credits within one window of
+ * {@code bank.hot-accounts.window-ms}. Credits are counted in a small hashed table that is cleared every window, so
+ * counting costs no allocation; an IBAN sharing a slot with a hot one may be promoted too, which is harmless. A hot
+ * account that takes fewer than half the threshold in a window cools down and is credited the regular way again. At most
+ * {@value #MAX_TRACKED_ACCOUNTS} accounts are tracked.
+ * <p>
+ * A hot credit is acknowledged before it is saved or journaled, and a crash before the next merge loses it. That is why
+ * {@code JournalConfig} and {@code MappedRepositoryConfig} refuse to start with this mode and a durable repository.
+ * <p>
+ * A hot credit is checked against the lock flag of the account before it is queued. Locking an account saves the flag
+ * and then {@link #untrack(String) untracks} it under its stripe lock, which merges what is pending. A credit that read
+ * the flag before it was saved is therefore either merged ahead of the lock or, once it sees the account untracked,
+ * taken back and credited the regular way, where the saved flag rejects it.
+ */
+@Slf4j
+@Component
+public class HotAccounts {
+
+    static final int MAX_TRACKED_ACCOUNTS = 1024;
+    private static final int COUNTER_SLOTS = 4096;
+    private static final Comparator<Transaction> BY_CREATED_AT = Comparator.comparing(Transaction::getCreatedAt);
+
+    private final AccountRepository accountRepository;
+    private final StripedAccountLock accountLock;
+    private final AccountAggregates accountAggregates;
+    private final AccountChangeStream accountChangeStream;
+    private final boolean enabled;
+    private final int threshold;
+    private final int stripes;
+    private final AtomicIntegerArray credits = new AtomicIntegerArray(COUNTER_SLOTS);
+    private final ConcurrentMap<String, HotAccount> accounts = new ConcurrentHashMap<>();
+
+    public HotAccounts(final AccountRepository accountRepository,
+                       final StripedAccountLock accountLock,
+                       final AccountAggregates accountAggregates,
+                       final AccountChangeStream accountChangeStream,
+                       @Value("${bank.hot-accounts.enabled:false}") final boolean enabled,
+                       @Value("${bank.hot-accounts.threshold:1000}") final int threshold,
+                       @Value("${bank.hot-accounts.stripes:0}") final int stripes) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold should be positive, threshold=" + threshold);
+        }
+        this.accountRepository = accountRepository;
+        this.accountLock = accountLock;
+        this.accountAggregates = accountAggregates;
+        this.accountChangeStream = accountChangeStream;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.stripes = stripes > 0 ? stripes : 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    public boolean isHot(final String IBAN) {
+        final HotAccount account = enabled ? accounts.get(IBAN) : null;
+        return account != null && account.hot;
+    }
+
+    /**
+     * Whether {@code IBAN} may have pending credits, i.e. has been hot since it was last merged.
+     */
+    public boolean isTracked(final String IBAN) {
+        return enabled && accounts.containsKey(IBAN);
+    }
+
+    /**
+     * Counts a credit credited the regular way and promotes {@code IBAN} once it reaches the threshold.
+     */
+    public void recordCredit(final String IBAN) {
+        if (!enabled) {
+            return;
+        }
+        final int slot = (IBAN.hashCode() & Integer.MAX_VALUE) % COUNTER_SLOTS;
+        if (credits.incrementAndGet(slot) >= threshold && accounts.size() < MAX_TRACKED_ACCOUNTS) {
+            final HotAccount account = accounts.computeIfAbsent(IBAN, key -> new HotAccount(stripes));
+            if (!account.hot) {
+                account.promoted = true;
+                account.hot = true;
+                log.info("Account became hot, IBAN={}", IBAN);
+            }
+        }
+    }
+
+    /**
+     * Queues {@code credit} for {@code IBAN} without taking its stripe lock. Returns {@code null} when the account is
+     * no longer hot, in which case the caller credits it the regular way.
+     */
+    public TransferResult credit(final String IBAN, final Transaction credit) {
+        final HotAccount hotAccount = accounts.get(IBAN);
+        if (hotAccount == null || !hotAccount.hot) {
+            return null;
+        }
+        final Account account = accountRepository.getBankAccount(IBAN).orElse(null);
+        if (account == null) {
+            return TransferResult.rejected(TransferStatus.ACCOUNT_NOT_FOUND, IBAN);
+        }
+        if (account.isLocked()) {
+            return TransferResult.rejected(TransferStatus.ACCOUNT_LOCKED, IBAN);
+        }
+        final Queue<Transaction> pending = hotAccount.pending[(int) (Thread.currentThread().getId() % hotAccount.pending.length)];
+        pending.add(credit);
+        if (accounts.get(IBAN) != hotAccount && pending.remove(credit)) {
+            return null;
+        }
+        hotAccount.credits.increment();
+        return TransferResult.SUCCESS;
+    }
+
+    /**
+     * Looks up {@code IBAN} with its pending credits merged and saved. Only an account with credits pending or being
+     * merged is looked up under its stripe lock.
+     */
+    public Optional<Account> getMergedBankAccount(final String IBAN) {
+        final HotAccount hotAccount = accounts.get(IBAN);
+        return hotAccount != null && (hotAccount.hasPending() || hotAccount.merging)
+                ? getMergedBankAccount(IBAN, hotAccount)
+                : accountRepository.getBankAccount(IBAN);
+    }
+
+    /**
+     * Stops tracking {@code IBAN} and merges its pending credits. Called under the stripe lock of {@code IBAN} once
+     * the account is saved locked, so that every later credit is checked the regular way.
+     */
+    public void untrack(final String IBAN) {
+        final HotAccount hotAccount = enabled ? accounts.remove(IBAN) : null;
+        if (hotAccount != null) {
+            getMergedBankAccount(IBAN, hotAccount);
+        }
+    }
+
+    /**
+     * Merges the pending credits of every tracked account, demotes accounts that cooled down and starts a new
+     * counting window.
+     */
+    public void flush() {
+        for (int slot = 0; slot < COUNTER_SLOTS; slot++) {
+            credits.set(slot, 0);
+        }
+        accounts.forEach((IBAN, account) -> {
+            if (account.promoted) {
+                account.promoted = false;
+                account.credits.reset();
+            } else if (account.hot && account.credits.sumThenReset() < threshold / 2) {
+                account.hot = false;
+                log.info("Account cooled down, IBAN={}", IBAN);
+            }
+            if (getMergedBankAccount(IBAN, account).isEmpty() || (!account.hot && !account.hasPending())) {
+                accounts.remove(IBAN, account);
+                if (account.hasPending()) {
+                    getMergedBankAccount(IBAN, account);
+                }
+            }
+        });
+    }
+
+    private Optional<Account> getMergedBankAccount(final String IBAN, final HotAccount hotAccount) {
+        return accountLock.withLock(IBAN, () -> accountRepository.getBankAccount(IBAN).map(account -> {
+            hotAccount.merging = true;
+            try {
+                final long balance = account.getBalance();
+                final List<AccountChange> changes = merge(account, hotAccount);
+                if (changes != null) {
+                    accountRepository.saveAccount(account);
+                    accountAggregates.balanceChanged(account.getAccountType(), account.getBalance() - balance);
+                    accountAggregates.transactionsAppended(changes.size());
+                    changes.forEach(accountChangeStream::publish);
+                }
+            } finally {
+                hotAccount.merging = false;
+            }
+            return account;
+        }));
+    }
+
+    /**
+     * Merges the pending credits into {@code account} and returns a change per credit, to be published once the
+     * account is saved, or {@code null} when nothing was pending.
+     */
+    private List<AccountChange> merge(final Account account, final HotAccount hotAccount) {
+        final List<Transaction> merged = new ArrayList<>();
+        for (Queue<Transaction> pending : hotAccount.pending) {
+            Transaction credit;
+            while ((credit = pending.poll()) != null) {
+                merged.add(credit);
+            }
+        }
+        if (merged.isEmpty()) {
+            return null;
+        }
+
+        merged.sort(BY_CREATED_AT);
+        final List<AccountChange> changes = new ArrayList<>(merged.size());
+        long balance = account.getBalance();
+        for (Transaction credit : merged) {
+            balance = Money.add(balance, credit.getAmount());
+            account.getTransactions().append(credit);
+            changes.add(accountChangeStream.capture(account, credit, balance));
+        }
+        account.setBalance(balance);
+        account.setUpdatedAt(merged.get(merged.size() - 1).getCreatedAt());
+        return changes;
+    }
+
+    /**
+     * Pending credits of one account. {@link #flush()} removes an account once it is cold and has nothing pending; a
+     * credit queued concurrently is then either merged by the flush or taken back by {@link #credit} and credited the
+     * regular way.
+     */
+    private static final class HotAccount {
+
+        private final Queue<Transaction>[] pending;
+        private final LongAdder credits = new LongAdder();
+        private volatile boolean hot;
+        /**
+         * Promoted during the current window, which is too short to judge whether it cooled down.
+         */
+        private volatile boolean promoted;
+        /**
+         * Set under the stripe lock while credits taken from {@link #pending} are merged and saved. A look-up checks
+         * {@link #pending} first and then this flag, so it sees an acknowledged credit either queued or being merged.
+         */
+        private volatile boolean merging;
+
+        @SuppressWarnings("unchecked")
+        private HotAccount(final int stripes) {
+            this.pending = new Queue[stripes];
+            for (int i = 0; i < stripes; i++) {
+                pending[i] = new ConcurrentLinkedQueue<>();
+            }
+        }
+
+        private boolean hasPending() {
+            for (Queue<Transaction> queue : pending) {
+                if (!queue.isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
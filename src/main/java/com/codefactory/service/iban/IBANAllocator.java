@@ -0,0 +1,112 @@
+package com.codefactory.service.iban;
+
+import com.codefactory.domain.repository.AccountRepository;
+import com.codefactory.domain.repository.IBANKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique German IBANs of this bank from a sequence of account numbers.
+ * <p>
+ * Since every account number is used once, an allocated IBAN never collides and needs no lookup. Threads reserve
+ * blocks of {@code blockSize} account numbers from a shared counter and allocate from their own block without
+ * synchronization, so numbers are unique but not handed out in strict order. The check digits are computed by
+ * {@link IBANKey#toIBAN(long)}, which leaves one {@code long} remainder per IBAN.
+ * <p>
+ * On startup the sequence continues after the highest account number already stored under the bank code.
+ */
+@Slf4j
+@Component
+public class IBANAllocator {
+
+    private final AtomicLong nextAccountNumber;
+    private final int blockSize;
+    private final ThreadLocal<Block> blocks = new ThreadLocal<>();
+
+    @Autowired
+    public IBANAllocator(final AccountRepository accountRepository,
+                         @Value("${bank.iban.block-size:1024}") final int blockSize) {
+        this(highestAccountNumber(accountRepository.getAllBankAccounts().keySet()) + 1, blockSize);
+    }
+
+    public IBANAllocator(final long firstAccountNumber, final int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize should be positive, blockSize=" + blockSize);
+        }
+        this.nextAccountNumber = new AtomicLong(firstAccountNumber);
+        this.blockSize = blockSize;
+        log.info("IBAN allocation starts at account number {}, blockSize={}", firstAccountNumber, blockSize);
+    }
+
+    /**
+     * Allocates one IBAN from the block of the calling thread.
+     */
+    public String next() {
+        Block block = blocks.get();
+        if (block == null || !block.hasNext()) {
+            block = reserve(blockSize);
+            blocks.set(block);
+        }
+        return block.next();
+    }
+
+    /**
+     * Reserves {@code count} consecutive account numbers for the caller alone. The counter only moves once the whole
+     * range is known to fit below {@link IBANKey#MAX_ACCOUNT_NUMBER}, so a refused reservation takes nothing.
+     */
+    public Block reserve(final long count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count should be positive, count=" + count);
+        }
+        long first;
+        do {
+            first = nextAccountNumber.get();
+            if (count > IBANKey.MAX_ACCOUNT_NUMBER - first + 1) {
+                throw new IllegalStateException("Account numbers of the bank code are exhausted, bankCode="
+                        + IBANKey.BANK_CODE + ", count=" + count);
+            }
+        } while (!nextAccountNumber.compareAndSet(first, first + count));
+        return new Block(first, first + count);
+    }
+
+    private static long highestAccountNumber(final Iterable<String> IBANs) {
+        long highest = 0;
+        for (String IBAN : IBANs) {
+            highest = Math.max(highest, IBANKey.of(IBAN));
+        }
+        return highest;
+    }
+
+    /**
+     * A range of account numbers owned by one caller.
+     */
+    public static final class Block implements Iterator<String> {
+
+        private long next;
+        private final long end;
+
+        private Block(final long first, final long end) {
+            this.next = first;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return IBANKey.toIBAN(next++);
+        }
+    }
+}
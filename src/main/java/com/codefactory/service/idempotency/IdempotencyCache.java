@@ -0,0 +1,158 @@
+package com.codefactory.service.idempotency;
+
+import com.codefactory.exception.IdempotencyKeyReusedException;
+import com.codefactory.exception.InvalidIdempotencyKeyException;
+import com.codefactory.service.TransferResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Results of recent deposits and transfers by their {@code Idempotency-Key}.
+ * <p>
+ * The first request with a key runs the operation and stores its result, including rejections; a retry with the same
+ * key and the same request gets that result back without running the operation again, and a retry arriving while the
+ * first request is still running waits for it. Reusing a key for a different request is refused. An operation that
+ * throws leaves no result behind, so it can be retried.
+ * <p>
+ * Keys expire {@code ttl} after their first use and about {@code maxKeys} are kept. Since every key lives equally
+ * long, keys expire in insertion order: they are queued as they arrive and evicted from the head of the queue, once
+ * expired or to make room for a new key. Size {@code maxKeys} for the peak request rate times {@code ttl}. A key whose
+ * first request is still running is never evicted or replaced, however old it is, since a retry would otherwise run
+ * the operation a second time: eviction moves it to the tail of the queue instead, so the cache may briefly hold more
+ * than {@code maxKeys} keys while that many requests are in flight.
+ */
+@Component
+public class IdempotencyCache {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final long ttlNanos;
+    private final int maxKeys;
+    private final LongSupplier nanoTime;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    @Autowired
+    public IdempotencyCache(@Value("${bank.idempotency.ttl-seconds:600}") final long ttlSeconds,
+                            @Value("${bank.idempotency.max-keys:1000000}") final int maxKeys) {
+        this(Duration.ofSeconds(ttlSeconds), maxKeys, System::nanoTime);
+    }
+
+    public IdempotencyCache(final Duration ttl, final int maxKeys, final LongSupplier nanoTime) {
+        if (ttl.isNegative() || ttl.isZero() || maxKeys <= 0) {
+            throw new IllegalArgumentException("ttl and maxKeys should be positive, ttl=" + ttl + ", maxKeys=" + maxKeys);
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.maxKeys = maxKeys;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Runs {@code operation} unless {@code key} has been used before, in which case the result of its first use is
+     * returned. {@code request} describes the request the key belongs to and has to match on every use.
+     */
+    public TransferResult execute(final String key, final String request, final Supplier<TransferResult> operation) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key should have 1 to " + MAX_KEY_LENGTH + " characters, length=" + key.length());
+        }
+
+        while (true) {
+            final long now = nanoTime.getAsLong();
+            final Entry existing = entries.get(key);
+            if (existing != null && (!existing.isExpired(now) || !existing.result.isDone())) {
+                if (!existing.request.equals(request)) {
+                    throw new IdempotencyKeyReusedException("Idempotency-Key was used for a different request, key=" + key);
+                }
+                final TransferResult result = existing.result.exceptionally(e -> null).join();
+                if (result != null) {
+                    return result;
+                }
+                continue;
+            }
+
+            evict(now);
+            final Entry entry = new Entry(key, request, now);
+            final boolean claimed = existing == null
+                    ? entries.putIfAbsent(key, entry) == null
+                    : entries.replace(key, existing, entry);
+            if (!claimed) {
+                continue;
+            }
+            insertionOrder.add(entry);
+            queued.incrementAndGet();
+
+            try {
+                final TransferResult result = operation.get();
+                entry.result.complete(result);
+                return result;
+            } catch (RuntimeException e) {
+                entries.remove(key, entry);
+                entry.result.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Number of keys currently remembered.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void evict(final long now) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int inFlight = 0;
+            final int maxInFlight = queued.get();
+            Entry oldest;
+            while (inFlight < maxInFlight && (oldest = insertionOrder.peek()) != null
+                    && (oldest.isExpired(now) || queued.get() >= maxKeys)) {
+                insertionOrder.poll();
+                if (!oldest.result.isDone()) {
+                    insertionOrder.add(oldest);
+                    inFlight++;
+                    continue;
+                }
+                queued.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private final class Entry {
+
+        private final String key;
+        private final String request;
+        private final long createdAt;
+        private final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+
+        private Entry(final String key, final String request, final long createdAt) {
+            this.key = key;
+            this.request = request;
+            this.createdAt = createdAt;
+        }
+
+        private boolean isExpired(final long now) {
+            return now - createdAt >= ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.codefactory.service.lock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Lock striping keyed by IBAN.
+ * <p>
+ * Every read-modify-write on an {@link com.codefactory.domain.entity.Account} has to run while holding the stripe
+ * of its IBAN. Operations touching two accounts always acquire the stripes in ascending stripe order, so two
+ * concurrent transfers in opposite directions can never deadlock. Accounts hashing to different stripes never
+ * contend with each other.
+ */
+@Component
+public class StripedAccountLock {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public StripedAccountLock(@Value("${bank.account.lock-stripes:1024}") final int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("stripeCount should be positive, stripeCount=" + stripeCount);
+        }
+        final int size = tableSizeFor(stripeCount);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public void withLock(final String IBAN, final Runnable action) {
+        withLock(IBAN, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T withLock(final String IBAN, final Supplier<T> action) {
+        final ReentrantLock lock = stripes[stripeOf(IBAN)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withLocks(final String firstIBAN, final String secondIBAN, final Runnable action) {
+        withLocks(firstIBAN, secondIBAN, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T withLocks(final String firstIBAN, final String secondIBAN, final Supplier<T> action) {
+        final int first = stripeOf(firstIBAN);
+        final int second = stripeOf(secondIBAN);
+        if (first == second) {
+            return withLock(firstIBAN, action);
+        }
+
+        final ReentrantLock lower = stripes[Math.min(first, second)];
+        final ReentrantLock higher = stripes[Math.max(first, second)];
+        lower.lock();
+        try {
+            higher.lock();
+            try {
+                return action.get();
+            } finally {
+                higher.unlock();
+            }
+        } finally {
+            lower.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code action} holding the stripes of all given IBANs, acquired once each in ascending stripe order.
+     */
+    public <T> T withLocks(final Collection<String> IBANs, final Supplier<T> action) {
+        final int[] indexes = IBANs.stream().mapToInt(this::stripeOf).distinct().sorted().toArray();
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                stripes[index].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Index of the stripe guarding {@code IBAN}, between {@code 0} and the stripe count.
+     */
+    public int stripeOf(final String IBAN) {
+        final int h = IBAN.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int tableSizeFor(final int stripeCount) {
+        final int highest = Integer.highestOneBit(stripeCount);
+        return highest == stripeCount ? stripeCount : highest << 1;
+    }
+}
@@ -0,0 +1,189 @@
+package com.codefactory.service.shard;
+
+import com.codefactory.service.lock.StripedAccountLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Optional sharded engine ({@code bank.ledger.sharded=true}): IBANs are partitioned across {@code bank.ledger.shards}
+ * worker threads, and deposits and single transfers run on the worker owning the account, or the source account of a
+ * transfer, instead of the request thread. At most one thread per shard then competes for the stripes of its accounts.
+ * <p>
+ * It is not a single-writer engine. A shard owns whole lock stripes, so two accounts sharing a stripe always share a
+ * shard, but every task still takes its stripe locks: lock/unlock, batch transfers and snapshots run on the request
+ * thread and take the same stripes. A transfer between two shards runs on the shard of the source and takes the stripe
+ * lock of the destination too, so both sides are saved together; the source worker waits while another thread holds
+ * that stripe. Stripes are always taken in ascending order, so workers waiting on each other's stripes cannot
+ * deadlock.
+ * <p>
+ * Requests enter a shard through a queue bounded by {@code bank.ledger.queue-capacity}; a full queue blocks the
+ * submitting request thread.
+ */
+@Slf4j
+@Component
+public class LedgerShards implements Closeable {
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final StripedAccountLock accountLock;
+    private final Shard[] shards;
+    private volatile boolean running = true;
+
+    public LedgerShards(final StripedAccountLock accountLock,
+                        @Value("${bank.ledger.sharded:false}") final boolean enabled,
+                        @Value("${bank.ledger.shards:0}") final int shardCount,
+                        @Value("${bank.ledger.queue-capacity:1024}") final int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity should be positive, queueCapacity=" + queueCapacity);
+        }
+        this.accountLock = accountLock;
+        this.shards = new Shard[enabled ? (shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors()) : 0];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+        if (enabled) {
+            log.info("Ledger sharded, shards={}, queueCapacity={}", shards.length, queueCapacity);
+        }
+    }
+
+    public boolean isEnabled() {
+        return shards.length > 0;
+    }
+
+    /**
+     * Runs {@code task} on the shard owning {@code IBAN} and waits for its result. Runs it right away when called from
+     * that shard.
+     */
+    public <T> T call(final String IBAN, final Supplier<T> task) {
+        final Shard shard = shardOf(IBAN);
+        if (Thread.currentThread() == shard.worker) {
+            return task.get();
+        }
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        submit(IBAN, () -> {
+            try {
+                result.complete(task.get());
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return await(result);
+    }
+
+    /**
+     * Queues {@code task} on the shard owning {@code IBAN}, blocking while its request queue is full.
+     */
+    public void submit(final String IBAN, final Runnable task) {
+        if (!running) {
+            throw new IllegalStateException("Ledger shards are closed");
+        }
+        final Shard shard = shardOf(IBAN);
+        try {
+            shard.requests.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shard " + shard.index, e);
+        }
+        LockSupport.unpark(shard.worker);
+        if (!running && shard.requests.remove(task)) {
+            throw new IllegalStateException("Ledger shards are closed");
+        }
+    }
+
+    /**
+     * Waits for {@code result}, rethrowing what the task threw.
+     */
+    public static <T> T await(final CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Rejects new requests, lets the workers finish what was queued and runs whatever is still left on the calling
+     * thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.worker);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.worker.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        for (Shard shard : shards) {
+            Runnable task;
+            while ((task = shard.requests.poll()) != null) {
+                shard.run(task);
+            }
+        }
+    }
+
+    private Shard shardOf(final String IBAN) {
+        if (shards.length == 0) {
+            throw new IllegalStateException("Ledger is not sharded");
+        }
+        return shards[accountLock.stripeOf(IBAN) % shards.length];
+    }
+
+    private final class Shard {
+
+        private final int index;
+        private final BlockingQueue<Runnable> requests;
+        private final Thread worker;
+
+        private Shard(final int index, final int queueCapacity) {
+            this.index = index;
+            this.requests = new ArrayBlockingQueue<>(queueCapacity);
+            this.worker = new Thread(this::work, "ledger-shard-" + index);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        private void work() {
+            while (true) {
+                final Runnable task = requests.poll();
+                if (task != null) {
+                    run(task);
+                } else if (!running) {
+                    return;
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        }
+
+        private void run(final Runnable task) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Ledger shard task failed, shard={}", index, e);
+            }
+        }
+    }
+}
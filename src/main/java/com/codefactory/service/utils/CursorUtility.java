@@ -0,0 +1,30 @@
+package com.codefactory.service.utils;
+
+import com.codefactory.exception.InvalidPageRequestException;
+import lombok.experimental.UtilityClass;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the position a page stopped at into an opaque continuation token, so clients cannot depend on what the
+ * position is made of.
+ */
+@UtilityClass
+public class CursorUtility {
+
+    public String encode(final String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String decode(final String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Cursor is not valid, cursor=" + cursor);
+        }
+    }
+}
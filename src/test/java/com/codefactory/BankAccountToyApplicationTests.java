@@ -3,6 +3,7 @@ package com.codefactory;
 import com.codefactory.controller.dto.*;
 import com.codefactory.domain.entity.Account;
 import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.Money;
 import com.codefactory.domain.entity.Transaction;
 import com.codefactory.domain.entity.TransactionType;
 import com.codefactory.domain.repository.AccountRepository;
@@ -19,24 +20,39 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "bank.cdc.enabled=true")
 class BankAccountToyApplicationTests {
 
 
     private final static String BASE_PATH = "/api/v1";
     private final static String ACCOUNT_ENDPOINT = "/account";
+    private final static String ACCOUNT_BULK_ENDPOINT = "/account/bulk";
+    private final static String ACCOUNT_STREAM_ENDPOINT = "/account/stream";
     private final static String LOCK_ACCOUNT_ENDPOINT = "/account/lock";
     private final static String ACCOUNT_BALANCE_ENDPOINT = "/account/balance";
+    private final static String ACCOUNT_AGGREGATES_ENDPOINT = "/account/aggregates";
+    private final static String ACCOUNT_CHANGES_ENDPOINT = "/account/changes";
+    private final static String ACCOUNT_CHANGES_STREAM_ENDPOINT = "/account/changes/stream";
     private final static String TRANSACTION_ENDPOINT = "/transaction";
     private final static String TRANSFER_ENDPOINT = "/transaction/transfer";
+    private final static String BATCH_TRANSFER_ENDPOINT = "/transaction/transfer/batch";
     private final static String DEPOSIT_ENDPOINT = "/transaction/deposit";
+    private final static String ACTUATOR_PATH = "/actuator";
+    private final static String PROMETHEUS_ENDPOINT = "/prometheus";
+    private final static String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
     private final static BigDecimal amount = BigDecimal.valueOf(78000);
 
 
@@ -63,6 +79,42 @@ class BankAccountToyApplicationTests {
                 .statusCode(HttpStatus.CREATED.value());
     }
 
+    @Test
+    public void shouldCreateAccountsInBulk() {
+        final BulkCreateAccountRequestDto requestDto = BulkCreateAccountRequestDto.builder()
+                .accounts(List.of(
+                        AccountCountDto.builder().accountType(AccountTypeDto.SAVINGS).count(3).build(),
+                        AccountCountDto.builder().accountType(AccountTypeDto.PRIVATE_LOAN).count(2).build()))
+                .build();
+
+        final BulkCreateAccountResponseDto responseDto = given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .when()
+                .body(requestDto)
+                .post(ACCOUNT_BULK_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract().as(BulkCreateAccountResponseDto.class);
+
+        assertThat(responseDto.getAccounts()).hasSize(5);
+        assertThat(responseDto.getAccounts().subList(0, 3)).allSatisfy(account -> assertThat(
+                accountRepository.getBankAccount(account.getIBAN()).orElseThrow().getReferenceAccount())
+                .map(Account::getIBAN).contains(account.getReferenceIBAN()));
+        assertThat(responseDto.getAccounts().subList(3, 5)).extracting(CreatedAccountDto::getReferenceIBAN).containsOnlyNulls();
+        assertThat(accountRepository.getAllBankAccounts()).hasSize(8);
+    }
+
+    @Test
+    public void shouldRejectBulkCreationWithoutCount() {
+        given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .when()
+                .body(BulkCreateAccountRequestDto.builder()
+                        .accounts(List.of(AccountCountDto.builder().accountType(AccountTypeDto.CHECKING).count(0).build()))
+                        .build())
+                .post(ACCOUNT_BULK_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
     @Test
     public void shouldFilterAccounts() {
         Set<AccountTypeDto> accountTypes = Arrays.stream(AccountTypeDto.values()).collect(Collectors.toSet());
@@ -81,6 +133,52 @@ class BankAccountToyApplicationTests {
                 .containsExactlyInAnyOrder(AccountType.PRIVATE_LOAN_ACCOUNT, AccountType.SAVINGS_ACCOUNT);
     }
 
+    @Test
+    public void shouldPaginateFilteredAccounts() {
+        createAccount(AccountTypeDto.CHECKING);
+        createAccount(AccountTypeDto.CHECKING);
+        createAccount(AccountTypeDto.CHECKING);
+
+        final String cursor = given().accept(ContentType.JSON).contentType(ContentType.JSON).when()
+                .get(ACCOUNT_ENDPOINT + "?accountTypes=" + AccountTypeDto.CHECKING + "&pageSize=2")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("accounts.size()", equalTo(2))
+                .extract()
+                .path("nextCursor");
+
+        given().accept(ContentType.JSON).contentType(ContentType.JSON).when()
+                .get(ACCOUNT_ENDPOINT + "?accountTypes=" + AccountTypeDto.CHECKING + "&pageSize=2&cursor=" + cursor)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("accounts.size()", equalTo(1))
+                .body("nextCursor", nullValue());
+    }
+
+    @Test
+    public void shouldRejectInvalidPageSize() {
+        given().accept(ContentType.JSON).contentType(ContentType.JSON).when()
+                .get(ACCOUNT_ENDPOINT + "?accountTypes=" + AccountTypeDto.CHECKING + "&pageSize=0")
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    public void shouldStreamFilteredAccountsAsNdjson() {
+        createAccount(AccountTypeDto.PRIVATE_LOAN);
+        createAccount(AccountTypeDto.SAVINGS);
+
+        final String body = given().accept("application/x-ndjson").when()
+                .urlEncodingEnabled(false)
+                .get(ACCOUNT_STREAM_ENDPOINT + "?accountTypes=" + AccountTypeDto.PRIVATE_LOAN + "," + AccountTypeDto.SAVINGS)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract()
+                .asString();
+
+        assertThat(body.split("\n")).hasSize(2);
+    }
+
     @Test
     public void shouldGetAccountBalance() {
         final String IBAN = createAccount(AccountTypeDto.CHECKING);
@@ -95,6 +193,78 @@ class BankAccountToyApplicationTests {
         assertThat(responseDto.getBalance().equals(BigDecimal.valueOf(0.00)));
     }
 
+    @Test
+    public void shouldGetAccountAggregates() {
+        final String IBAN = createAccount(AccountTypeDto.CHECKING);
+        depositMoney(IBAN);
+        lockAccount(IBAN);
+
+        final AccountAggregateDto aggregate = getAccountAggregate(AccountType.CHECKING_ACCOUNT);
+
+        assertThat(aggregate.getAccountCount()).isEqualTo(1);
+        assertThat(aggregate.getLockedAccountCount()).isEqualTo(1);
+        assertThat(aggregate.getTotalBalance()).isEqualByComparingTo(amount);
+    }
+
+    @Test
+    public void shouldGetAccountChangesInOrder() {
+        final long fromSequence = getNextChangeSequence();
+        final String IBAN = createAccount(AccountTypeDto.CHECKING);
+        depositMoney(IBAN);
+        lockAccount(IBAN);
+
+        given().accept(ContentType.JSON).when()
+                .get(ACCOUNT_CHANGES_ENDPOINT + "?fromSequence=" + fromSequence + "&maxChanges=10")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("changes.sequence", equalTo(List.of((int) fromSequence, (int) fromSequence + 1, (int) fromSequence + 2)))
+                .body("changes.changeType", equalTo(List.of("CREATED", "BALANCE_CHANGED", "LOCKED")))
+                .body("changes.iban", equalTo(List.of(IBAN, IBAN, IBAN)))
+                .body("changes[1].balance", equalTo(amount.floatValue()))
+                .body("changes[1].amount", equalTo(amount.floatValue()))
+                .body("changes[1].transactionType", equalTo("CREDIT"))
+                .body("changes[2].locked", equalTo(true))
+                .body("nextSequence", equalTo((int) fromSequence + 3));
+    }
+
+    @Test
+    public void shouldReturnNoAccountChangesOnceTheWaitIsOver() {
+        final long fromSequence = getNextChangeSequence();
+
+        given().accept(ContentType.JSON).when()
+                .get(ACCOUNT_CHANGES_ENDPOINT + "?fromSequence=" + fromSequence + "&waitMillis=100")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("changes", equalTo(List.of()))
+                .body("nextSequence", equalTo((int) fromSequence));
+    }
+
+    @Test
+    public void shouldStreamAccountChangesAsServerSentEvents() {
+        final long fromSequence = getNextChangeSequence();
+        final String IBAN = createAccount(AccountTypeDto.SAVINGS);
+
+        final String body = given().accept("text/event-stream").when()
+                .header("Last-Event-ID", fromSequence)
+                .get(ACCOUNT_CHANGES_STREAM_ENDPOINT + "?waitMillis=200")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract()
+                .asString();
+
+        assertThat(body).doesNotContain("id: " + fromSequence + "\n")
+                .contains("id: " + (fromSequence + 1) + "\nevent: CREATED\ndata: ")
+                .contains("\"iban\":\"" + IBAN + "\"");
+    }
+
+    @Test
+    public void shouldRejectAccountChangesFromAFutureSequence() {
+        given().accept(ContentType.JSON).when()
+                .get(ACCOUNT_CHANGES_ENDPOINT + "?fromSequence=" + (getNextChangeSequence() + 1))
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
     @Test
     public void shouldLockAccount() {
         final String IBAN = createAccount(AccountTypeDto.SAVINGS);
@@ -131,6 +301,29 @@ class BankAccountToyApplicationTests {
                 .statusCode(HttpStatus.OK.value());
     }
 
+    @Test
+    public void shouldDepositMoneyOncePerIdempotencyKey() {
+        final String IBAN = createAccount(AccountTypeDto.CHECKING);
+        final String idempotencyKey = UUID.randomUUID().toString();
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            given().accept(ContentType.JSON).contentType(ContentType.JSON).header(IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                    .when()
+                    .body(DepositRequestDto.builder().IBAN(IBAN).amount(amount).build())
+                    .post(DEPOSIT_ENDPOINT)
+                    .then()
+                    .statusCode(HttpStatus.OK.value());
+        }
+        given().accept(ContentType.JSON).contentType(ContentType.JSON).header(IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                .when()
+                .body(DepositRequestDto.builder().IBAN(IBAN).amount(BigDecimal.ONE).build())
+                .post(DEPOSIT_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.UNPROCESSABLE_ENTITY.value());
+
+        assertThat(accountRepository.getBankAccount(IBAN).get().getBalance()).isEqualTo(Money.toMinorUnits(amount));
+    }
+
     @Test
     public void shouldTransferMoney() {
         final String fromIban = createAccount(AccountTypeDto.CHECKING);
@@ -146,6 +339,77 @@ class BankAccountToyApplicationTests {
 
     }
 
+    @Test
+    public void shouldExposeOperationMetricsByOutcome() {
+        final String fromIban = createAccount(AccountTypeDto.CHECKING);
+        final String toIban = createAccount(AccountTypeDto.PRIVATE_LOAN);
+
+        given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .when()
+                .body(TransferRequestDto.builder().fromIBAN(fromIban).toIBAN(toIban).amount(amount).build())
+                .post(TRANSFER_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+
+        given().basePath(ACTUATOR_PATH)
+                .when()
+                .get(PROMETHEUS_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body(containsString("bank_operation_seconds_count{operation=\"transferMoney\",outcome=\"insufficient_balance\",service=\"TransactionService\",}"))
+                .body(containsString("bank_operation_seconds_bucket{operation=\"createAccount\",outcome=\"success\""))
+                .body(not(containsString("bank_transfers_total{status=\"insufficient_balance\",} 0.0")))
+                .body(containsString("bank_accounts{type=\"CHECKING_ACCOUNT\",} 1.0"))
+                .body(containsString("bank_transactions "));
+    }
+
+    @Test
+    public void shouldRollBackAtomicBatchTransfer() {
+        final String fromIban = createAccount(AccountTypeDto.CHECKING);
+        final String toIban = createAccount(AccountTypeDto.PRIVATE_LOAN);
+        depositMoney(fromIban);
+
+        final BatchTransferRequestDto requestDto = BatchTransferRequestDto.builder()
+                .atomic(true)
+                .transfers(List.of(
+                        TransferRequestDto.builder().fromIBAN(fromIban).toIBAN(toIban).amount(amount).build(),
+                        TransferRequestDto.builder().fromIBAN(fromIban).toIBAN(toIban).amount(amount).build()))
+                .build();
+
+        given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .when()
+                .body(requestDto)
+                .post(BATCH_TRANSFER_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("committed", equalTo(false))
+                .body("results.status", equalTo(List.of("ABORTED", "INSUFFICIENT_BALANCE")));
+
+        assertThat(accountRepository.getBankAccount(fromIban).orElseThrow().getBalance())
+                .isEqualTo(Money.toMinorUnits(amount));
+    }
+
+    @Test
+    public void shouldRejectBatchTransferWithNegativeAmount() {
+        final String fromIban = createAccount(AccountTypeDto.CHECKING);
+        final String toIban = createAccount(AccountTypeDto.CHECKING);
+        depositMoney(toIban);
+
+        final BatchTransferRequestDto requestDto = BatchTransferRequestDto.builder()
+                .transfers(List.of(TransferRequestDto.builder().fromIBAN(fromIban).toIBAN(toIban)
+                        .amount(amount.negate()).build()))
+                .build();
+
+        given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .when()
+                .body(requestDto)
+                .post(BATCH_TRANSFER_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+
+        assertThat(accountRepository.getBankAccount(fromIban).orElseThrow().getBalance()).isZero();
+    }
+
     @Test
     public void shouldGetTransactionHistory() {
         final String iban = createAccount(AccountTypeDto.CHECKING);
@@ -160,13 +424,58 @@ class BankAccountToyApplicationTests {
                 .as(TransactionHistoryResponseDto.class);
 
         Transaction expectedTransaction = Transaction.builder()
-                .amount(amount)
+                .amount(Money.toMinorUnits(amount))
                 .transactionType(TransactionType.CREDIT)
                 .build();
         assertThat(responseDto.getTransactionHistory().size()).isEqualTo(1);
         assertThat(responseDto.getTransactionHistory()).first().isEqualToIgnoringGivenFields(expectedTransaction, "createdAt");
     }
 
+    @Test
+    public void shouldPaginateTransactionHistory() {
+        final String iban = createAccount(AccountTypeDto.CHECKING);
+        depositMoney(iban);
+        depositMoney(iban);
+        depositMoney(iban);
+
+        final String cursor = given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .when()
+                .get(TRANSACTION_ENDPOINT + "?iban=" + iban + "&limit=2")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("transactionHistory.size()", equalTo(2))
+                .extract()
+                .path("nextCursor");
+
+        given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .when()
+                .get(TRANSACTION_ENDPOINT + "?iban=" + iban + "&limit=2&cursor=" + cursor)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("transactionHistory.size()", equalTo(1))
+                .body("nextCursor", nullValue());
+    }
+
+    @Test
+    public void shouldFilterTransactionHistoryByTypeAndTimeRange() {
+        final String iban = createAccount(AccountTypeDto.CHECKING);
+        depositMoney(iban);
+
+        given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .when()
+                .get(TRANSACTION_ENDPOINT + "?iban=" + iban + "&transactionType=" + TransactionType.DEBIT)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("transactionHistory.size()", equalTo(0));
+
+        given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .when()
+                .get(TRANSACTION_ENDPOINT + "?iban=" + iban + "&to=2000-01-01T00:00:00Z")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("transactionHistory.size()", equalTo(0));
+    }
+
     private String createAccount(final AccountTypeDto accountType) {
         return given().accept(ContentType.JSON).contentType(ContentType.JSON)
                 .when()
@@ -186,6 +495,29 @@ class BankAccountToyApplicationTests {
                 .statusCode(HttpStatus.OK.value());
     }
 
+    private AccountAggregateDto getAccountAggregate(final AccountType accountType) {
+        return given().accept(ContentType.JSON).when()
+                .get(ACCOUNT_AGGREGATES_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract()
+                .as(AccountAggregatesResponseDto.class)
+                .getAggregates().stream()
+                .filter(aggregate -> aggregate.getAccountType() == accountType)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private long getNextChangeSequence() {
+        return given().accept(ContentType.JSON).when()
+                .get(ACCOUNT_CHANGES_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract()
+                .jsonPath()
+                .getLong("nextSequence");
+    }
+
     private void lockAccount(final String IBAN) {
         given().accept(ContentType.JSON).contentType(ContentType.JSON)
                 .when()
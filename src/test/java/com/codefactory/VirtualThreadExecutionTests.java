@@ -0,0 +1,102 @@
+package com.codefactory;
+
+import com.codefactory.config.VirtualThreadConfig;
+import com.codefactory.controller.dto.AccountTypeDto;
+import com.codefactory.controller.dto.AccountTypeRequestDto;
+import com.codefactory.domain.repository.InMemoryAccountRepository;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Load test of {@code bank.execution.mode=virtual-threads}: with two Tomcat threads, all requests blocked in the
+ * repository at once are still being served concurrently.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "bank.execution.mode=virtual-threads",
+        "server.tomcat.threads.max=" + VirtualThreadExecutionTests.TOMCAT_THREADS,
+        "server.tomcat.threads.min-spare=" + VirtualThreadExecutionTests.TOMCAT_THREADS})
+class VirtualThreadExecutionTests {
+
+    final static int TOMCAT_THREADS = 2;
+
+    private final static String BASE_PATH = "/api/v1";
+    private final static String ACCOUNT_ENDPOINT = "/account";
+    private final static String ACCOUNT_BALANCE_ENDPOINT = "/account/balance";
+    private final static int CONCURRENT_REQUESTS = 64;
+
+    @LocalServerPort
+    private int port;
+
+    @SpyBean
+    private InMemoryAccountRepository accountRepository;
+
+    @BeforeEach
+    public void setup() {
+        RestAssured.port = port;
+        RestAssured.basePath = BASE_PATH;
+    }
+
+    @Test
+    public void shouldServeMoreBlockedRequestsThanTomcatThreads() throws Exception {
+        assumeTrue(VirtualThreadConfig.newVirtualThreadPerTaskExecutor().isPresent(), "virtual threads need Java 21");
+        final String IBAN = given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                .body(AccountTypeRequestDto.builder().accountType(AccountTypeDto.CHECKING).build())
+                .post(ACCOUNT_ENDPOINT)
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .path("iban");
+
+        final CountDownLatch allBlocked = new CountDownLatch(CONCURRENT_REQUESTS);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            allBlocked.countDown();
+            try {
+                allBlocked.await(10, TimeUnit.SECONDS);
+                return invocation.callRealMethod();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }).when(accountRepository).getBankAccount(IBAN);
+
+        final ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        final List<Future<Integer>> statusCodes = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            statusCodes.add(clients.submit(() -> given().accept(ContentType.JSON).contentType(ContentType.JSON)
+                    .get(ACCOUNT_BALANCE_ENDPOINT + "?iban=" + IBAN)
+                    .statusCode()));
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        for (Future<Integer> statusCode : statusCodes) {
+            assertThat(statusCode.get()).isEqualTo(HttpStatus.OK.value());
+        }
+        assertThat(maxInFlight.get()).isEqualTo(CONCURRENT_REQUESTS).isGreaterThan(TOMCAT_THREADS);
+    }
+}
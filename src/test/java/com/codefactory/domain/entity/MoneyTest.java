@@ -0,0 +1,40 @@
+package com.codefactory.domain.entity;
+
+import com.codefactory.exception.InvalidAmountException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class MoneyTest {
+
+    @Test
+    public void shouldConvertBetweenDecimalAndMinorUnits() {
+        assertThat(Money.toMinorUnits(new BigDecimal("780.5"))).isEqualTo(78_050);
+        assertThat(Money.toMinorUnits(BigDecimal.valueOf(78000))).isEqualTo(7_800_000);
+        assertThat(Money.toBigDecimal(78_050)).isEqualTo(new BigDecimal("780.50"));
+    }
+
+    @Test
+    public void shouldRejectAmountWithMoreThanTwoDecimalPlaces() {
+        Throwable throwable = catchThrowable(() -> Money.toMinorUnits(new BigDecimal("0.001")));
+
+        assertThat(throwable).isInstanceOf(InvalidAmountException.class);
+    }
+
+    @Test
+    public void shouldRejectAmountOutsideBalanceRange() {
+        Throwable throwable = catchThrowable(() -> Money.toMinorUnits(BigDecimal.valueOf(Long.MAX_VALUE)));
+
+        assertThat(throwable).isInstanceOf(InvalidAmountException.class);
+    }
+
+    @Test
+    public void shouldRejectArithmeticOverflow() {
+        assertThat(catchThrowable(() -> Money.add(Long.MAX_VALUE, 1))).isInstanceOf(InvalidAmountException.class);
+        assertThat(catchThrowable(() -> Money.subtract(Long.MIN_VALUE, 1))).isInstanceOf(InvalidAmountException.class);
+        assertThat(Money.subtract(100, 250)).isEqualTo(-150);
+    }
+}
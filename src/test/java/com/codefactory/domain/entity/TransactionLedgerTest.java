@@ -0,0 +1,140 @@
+package com.codefactory.domain.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class TransactionLedgerTest {
+
+    private final static Instant START = Instant.parse("2020-11-01T00:00:00Z");
+    private final static int SEGMENT_SIZE = 4;
+
+    private final TransactionLedger ledger = new TransactionLedger(SEGMENT_SIZE);
+
+    @Test
+    public void shouldKeepEntriesInAppendOrderAcrossCompactedSegments() {
+        appendDaily(10);
+
+        assertThat(ledger.size()).isEqualTo(10);
+        assertThat(ledger.toList()).extracting(Transaction::getAmount)
+                .containsExactlyElementsOf(amounts(0, 10));
+        assertThat(StreamSupport.stream(ledger.spliterator(), false).collect(Collectors.toList()))
+                .extracting(Transaction::getCreatedAt)
+                .isSorted();
+    }
+
+    @Test
+    public void shouldReturnSameEntryFromHotAndCompactedSegments() {
+        appendDaily(SEGMENT_SIZE + 1);
+
+        final Transaction compacted = ledger.get(1);
+        assertThat(compacted.getAmount()).isEqualTo(1L);
+        assertThat(compacted.getTransactionType()).isEqualTo(TransactionType.DEBIT);
+        assertThat(compacted.getCreatedAt()).isEqualTo(START.plusSeconds(86_400));
+
+        final Transaction hot = ledger.get(SEGMENT_SIZE);
+        assertThat(hot.getAmount()).isEqualTo((long) SEGMENT_SIZE);
+        assertThat(hot.getCreatedAt()).isEqualTo(START.plusSeconds(86_400L * SEGMENT_SIZE));
+    }
+
+    @Test
+    public void shouldReturnEntriesWithinHalfOpenTimeRange() {
+        appendDaily(10);
+
+        final List<Transaction> range = ledger.between(START.plusSeconds(86_400 * 3), START.plusSeconds(86_400 * 7));
+
+        assertThat(range).extracting(Transaction::getAmount)
+                .containsExactlyElementsOf(amounts(3, 7));
+    }
+
+    @Test
+    public void shouldFindFirstPositionAtOrAfterInstant() {
+        appendDaily(10);
+
+        assertThat(ledger.firstPositionAtOrAfter(START.minusSeconds(1))).isEqualTo(0);
+        assertThat(ledger.firstPositionAtOrAfter(START.plusSeconds(86_400 * 5))).isEqualTo(5);
+        assertThat(ledger.firstPositionAtOrAfter(START.plusSeconds(86_400 * 5 + 1))).isEqualTo(6);
+        assertThat(ledger.firstPositionAtOrAfter(START.plusSeconds(86_400 * 100))).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldNotLetTimestampsGoBackwards() {
+        ledger.append(buildTransaction(1, START.plusSeconds(60)));
+        ledger.append(buildTransaction(10, START));
+
+        assertThat(ledger.get(1).getAmount()).isEqualTo(10);
+        assertThat(ledger.get(1).getCreatedAt()).isEqualTo(START.plusSeconds(60));
+    }
+
+    @Test
+    public void shouldPageThroughRangeFilteredByType() {
+        appendDaily(10);
+
+        final TransactionPage first = ledger.page(START.plusSeconds(86_400), null, TransactionType.CREDIT, 0, 2);
+        assertThat(first.getTransactions()).extracting(Transaction::getAmount)
+                .containsExactly(2L, 4L);
+        assertThat(first.getNextPosition()).isEqualTo(5);
+
+        final TransactionPage second = ledger.page(START.plusSeconds(86_400), null, TransactionType.CREDIT,
+                first.getNextPosition(), 10);
+        assertThat(second.getTransactions()).extracting(Transaction::getAmount)
+                .containsExactly(6L, 8L);
+        assertThat(second.getNextPosition()).isNull();
+    }
+
+    @Test
+    public void shouldThrowExceptionWhenPositionIsOutOfBounds() {
+        appendDaily(2);
+
+        Throwable throwable = catchThrowable(() -> ledger.get(2));
+
+        assertThat(throwable).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void shouldNotSeeEntriesAppendedAfterIteratorWasCreated() {
+        appendDaily(3);
+        final Iterator<Transaction> iterator = ledger.iterator();
+
+        appendDaily(3);
+
+        int seen = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            seen++;
+        }
+        assertThat(seen).isEqualTo(3);
+    }
+
+    private void appendDaily(final int count) {
+        final long offset = ledger.size();
+        for (int i = 0; i < count; i++) {
+            final long day = offset + i;
+            ledger.append(Transaction.builder()
+                    .amount(day)
+                    .transactionType(day % 2 == 0 ? TransactionType.CREDIT : TransactionType.DEBIT)
+                    .createdAt(START.plusSeconds(86_400 * day))
+                    .build());
+        }
+    }
+
+    private List<Long> amounts(final int from, final int to) {
+        return LongStream.range(from, to).boxed().collect(Collectors.toList());
+    }
+
+    private Transaction buildTransaction(final long amount, final Instant createdAt) {
+        return Transaction.builder()
+                .amount(amount)
+                .transactionType(TransactionType.CREDIT)
+                .createdAt(createdAt)
+                .build();
+    }
+}
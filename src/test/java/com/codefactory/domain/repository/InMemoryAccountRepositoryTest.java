@@ -0,0 +1,174 @@
+package com.codefactory.domain.repository;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InMemoryAccountRepositoryTest {
+
+    private final static String MOCK_IBAN = "DE80801817944420161050";
+    private final static String ANOTHER_IBAN = "DE80811817954420161158";
+
+    private final InMemoryAccountRepository accountRepository = new InMemoryAccountRepository();
+
+    @Test
+    public void shouldReturnOnlyAccountsOfRequestedTypes() {
+        final Account checkingAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN);
+        final Account loanAccount = buildAccount(AccountType.PRIVATE_LOAN_ACCOUNT, ANOTHER_IBAN);
+        accountRepository.saveAccount(checkingAccount);
+        accountRepository.saveAccount(loanAccount);
+
+        assertThat(accountRepository.getBankAccountsBy(EnumSet.of(AccountType.CHECKING_ACCOUNT)))
+                .containsExactly(checkingAccount);
+        assertThat(accountRepository.getBankAccountsBy(EnumSet.of(AccountType.SAVINGS_ACCOUNT))).isEmpty();
+        assertThat(accountRepository.getBankAccountsBy(EnumSet.allOf(AccountType.class)))
+                .containsExactlyInAnyOrder(checkingAccount, loanAccount);
+    }
+
+    @Test
+    public void shouldReturnNothingWhenNoAccountTypeIsRequested() {
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN));
+
+        assertThat(accountRepository.getBankAccountsBy(EnumSet.noneOf(AccountType.class))).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepSingleIndexEntryWhenAccountIsSavedAgain() {
+        final Account account = buildAccount(AccountType.SAVINGS_ACCOUNT, MOCK_IBAN);
+        accountRepository.saveAccount(account);
+        account.setBalance(1_000);
+        accountRepository.saveAccount(account);
+
+        assertThat(accountRepository.getBankAccountsBy(EnumSet.of(AccountType.SAVINGS_ACCOUNT)))
+                .containsExactly(account);
+    }
+
+    @Test
+    public void shouldMoveIndexEntryWhenIBANIsReplacedByAnotherAccountType() {
+        accountRepository.saveAccount(buildAccount(AccountType.SAVINGS_ACCOUNT, MOCK_IBAN));
+        final Account replacement = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN);
+        accountRepository.saveAccount(replacement);
+
+        assertThat(accountRepository.getBankAccountsBy(EnumSet.of(AccountType.SAVINGS_ACCOUNT))).isEmpty();
+        assertThat(accountRepository.getBankAccountsBy(EnumSet.of(AccountType.CHECKING_ACCOUNT)))
+                .containsExactly(replacement);
+    }
+
+    @Test
+    public void shouldCountAccountsByType() {
+        accountRepository.saveAccount(buildAccount(AccountType.SAVINGS_ACCOUNT, MOCK_IBAN));
+        accountRepository.saveAccount(buildAccount(AccountType.SAVINGS_ACCOUNT, ANOTHER_IBAN));
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, ANOTHER_IBAN));
+
+        assertThat(accountRepository.countBankAccountsBy(AccountType.SAVINGS_ACCOUNT)).isEqualTo(1);
+        assertThat(accountRepository.countBankAccountsBy(AccountType.CHECKING_ACCOUNT)).isEqualTo(1);
+
+        accountRepository.deleteAllAccounts();
+
+        assertThat(accountRepository.countBankAccountsBy(AccountType.SAVINGS_ACCOUNT)).isZero();
+    }
+
+    @Test
+    public void shouldClearIndexesWhenAllAccountsAreDeleted() {
+        accountRepository.saveAccount(buildAccount(AccountType.SAVINGS_ACCOUNT, MOCK_IBAN));
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, ANOTHER_IBAN));
+
+        accountRepository.deleteAllAccounts();
+
+        assertThat(accountRepository.getAllBankAccounts()).isEmpty();
+        assertThat(accountRepository.getBankAccountsBy(EnumSet.allOf(AccountType.class))).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepIndexesConsistentWithAccountsUnderConcurrentSaves() throws Exception {
+        final int threads = 8;
+        final int accountsPerThread = 2_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < accountsPerThread; i++) {
+                    final AccountType accountType = AccountType.values()[i % AccountType.values().length];
+                    accountRepository.saveAccount(buildAccount(accountType, String.format("DE00%02d%016d", thread, i)));
+                }
+            }));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        final Set<Account> indexed = new HashSet<>();
+        for (AccountType accountType : AccountType.values()) {
+            final Set<Account> accounts = accountRepository.getBankAccountsBy(EnumSet.of(accountType));
+            assertThat(accounts).allMatch(account -> account.getAccountType() == accountType);
+            assertThat(indexed).doesNotContainAnyElementsOf(accounts);
+            indexed.addAll(accounts);
+        }
+        assertThat(indexed).hasSize(threads * accountsPerThread)
+                .containsExactlyInAnyOrderElementsOf(accountRepository.getAllBankAccounts().values());
+    }
+
+    @Test
+    public void shouldStoreIBANsOfTheBankAndOtherIBANsSideBySide() {
+        final Account bankAccount = buildAccount(AccountType.CHECKING_ACCOUNT, IBANKey.toIBAN(7));
+        final Account otherAccount = buildAccount(AccountType.SAVINGS_ACCOUNT, MOCK_IBAN);
+        accountRepository.saveAccount(bankAccount);
+        accountRepository.saveAccount(otherAccount);
+        final Account replacement = buildAccount(AccountType.PRIVATE_LOAN_ACCOUNT, IBANKey.toIBAN(7));
+        accountRepository.saveAccount(replacement);
+
+        assertThat(accountRepository.getBankAccount(IBANKey.toIBAN(7))).containsSame(replacement);
+        assertThat(accountRepository.getBankAccount(MOCK_IBAN)).containsSame(otherAccount);
+        assertThat(accountRepository.getAllBankAccounts()).hasSize(2)
+                .containsEntry(IBANKey.toIBAN(7), replacement)
+                .containsEntry(MOCK_IBAN, otherAccount);
+        assertThat(accountRepository.getBankAccountsBy(EnumSet.of(AccountType.CHECKING_ACCOUNT))).isEmpty();
+    }
+
+    @Test
+    public void shouldNotAllowBypassingIndexesThroughAllBankAccounts() {
+        final Account account = buildAccount(AccountType.SAVINGS_ACCOUNT, MOCK_IBAN);
+
+        assertThatThrownBy(() -> accountRepository.getAllBankAccounts().put(MOCK_IBAN, account))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void shouldRunDeleteAllListenersOnceTheAccountsAreGone() {
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN));
+        final List<Integer> sizes = new ArrayList<>();
+        accountRepository.onDeleteAll(() -> sizes.add(accountRepository.getAllBankAccounts().size()));
+
+        accountRepository.deleteAllAccounts();
+
+        assertThat(sizes).containsExactly(0);
+    }
+
+    private Account buildAccount(final AccountType accountType, final String IBAN) {
+        final Instant now = Instant.now();
+        return Account.builder()
+                .accountType(accountType)
+                .balance(0)
+                .IBAN(IBAN)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+}
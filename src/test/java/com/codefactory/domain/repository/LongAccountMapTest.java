@@ -0,0 +1,108 @@
+package com.codefactory.domain.repository;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongAccountMapTest {
+
+    private final LongAccountMap accounts = new LongAccountMap();
+
+    @Test
+    public void shouldReplaceAndReturnPreviousAccount() {
+        final Account first = buildAccount(0);
+        final Account second = buildAccount(0);
+
+        assertThat(accounts.put(0, first)).isNull();
+        assertThat(accounts.put(0, second)).isSameAs(first);
+        assertThat(accounts.get(0)).isSameAs(second);
+        assertThat(accounts.get(1)).isNull();
+        assertThat(accounts.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepEveryEntryWhileGrowing() {
+        for (long key = 0; key < 100_000; key++) {
+            accounts.put(key * 7, buildAccount(key));
+        }
+
+        assertThat(accounts.size()).isEqualTo(100_000);
+        for (long key = 0; key < 100_000; key++) {
+            assertThat(accounts.get(key * 7).getBalance()).isEqualTo(key);
+        }
+        final Set<Account> iterated = new HashSet<>();
+        for (Iterator<Account> values = accounts.values(); values.hasNext(); ) {
+            iterated.add(values.next());
+        }
+        assertThat(iterated).hasSize(100_000);
+    }
+
+    @Test
+    public void shouldNotLoseReplacementsWhileResizing() throws Exception {
+        final int threads = 8;
+        final int keysPerThread = 20_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads * 2);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long firstKey = (long) t * keysPerThread;
+            futures.add(executor.submit(() -> {
+                for (long key = firstKey; key < firstKey + keysPerThread; key++) {
+                    accounts.put(key, buildAccount(0));
+                    accounts.put(key, buildAccount(key));
+                }
+            }));
+            futures.add(executor.submit(() -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 100_000; i++) {
+                    final Account account = accounts.get(random.nextInt(threads * keysPerThread));
+                    assertThat(account == null || account.getIBAN() != null).isTrue();
+                }
+            }));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertThat(accounts.size()).isEqualTo(threads * keysPerThread);
+        for (long key = 0; key < threads * keysPerThread; key++) {
+            assertThat(accounts.get(key).getBalance()).isEqualTo(key);
+        }
+    }
+
+    @Test
+    public void shouldForgetEntriesOnClear() {
+        accounts.put(42, buildAccount(42));
+
+        accounts.clear();
+
+        assertThat(accounts.get(42)).isNull();
+        assertThat(accounts.size()).isZero();
+        assertThat(accounts.values().hasNext()).isFalse();
+    }
+
+    private Account buildAccount(final long balance) {
+        return Account.builder()
+                .accountType(AccountType.CHECKING_ACCOUNT)
+                .balance(balance)
+                .IBAN(IBANKey.toIBAN(balance))
+                .createdAt(Instant.EPOCH)
+                .updatedAt(Instant.EPOCH)
+                .build();
+    }
+}
@@ -0,0 +1,333 @@
+package com.codefactory.domain.repository.journal;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.Transaction;
+import com.codefactory.domain.entity.TransactionType;
+import com.codefactory.domain.repository.InMemoryAccountRepository;
+import com.codefactory.service.lock.StripedAccountLock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JournalingAccountRepositoryTest {
+
+    private final static String MOCK_IBAN = "DE80801817944420161050";
+    private final static String ANOTHER_IBAN = "DE80811817954420161158";
+    private final static Instant NOW = Instant.parse("2020-11-01T10:15:30Z");
+    private final static long SEGMENT_BYTES = 4 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private final StripedAccountLock accountLock = new StripedAccountLock(16);
+    private JournalingAccountRepository accountRepository;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        accountRepository.close();
+    }
+
+    @Test
+    public void shouldRecoverAccountsBalancesAndLedgersAfterRestart() throws IOException {
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        final Account checkingAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null);
+        final Account savingsAccount = buildAccount(AccountType.SAVINGS_ACCOUNT, ANOTHER_IBAN, checkingAccount);
+        accountRepository.saveAccount(checkingAccount);
+        accountRepository.saveAccount(savingsAccount);
+
+        apply(savingsAccount, 5_000, TransactionType.CREDIT);
+        accountRepository.saveAccount(savingsAccount);
+        apply(savingsAccount, 2_000, TransactionType.DEBIT);
+        apply(checkingAccount, 2_000, TransactionType.CREDIT);
+        accountRepository.saveAccounts(List.of(savingsAccount, checkingAccount));
+        checkingAccount.setLocked(true);
+        accountRepository.saveAccount(checkingAccount);
+        accountRepository.close();
+
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+
+        final Account recoveredChecking = accountRepository.getBankAccount(MOCK_IBAN).orElseThrow();
+        final Account recoveredSavings = accountRepository.getBankAccount(ANOTHER_IBAN).orElseThrow();
+        assertThat(recoveredChecking.getBalance()).isEqualTo(2_000);
+        assertThat(recoveredChecking.isLocked()).isTrue();
+        assertThat(recoveredSavings.getBalance()).isEqualTo(3_000);
+        assertThat(recoveredSavings.getAccountType()).isEqualTo(AccountType.SAVINGS_ACCOUNT);
+        assertThat(recoveredSavings.getReferenceAccount()).containsSame(recoveredChecking);
+        assertThat(recoveredSavings.getTransactions()).extracting(Transaction::getTransactionType)
+                .containsExactly(TransactionType.CREDIT, TransactionType.DEBIT);
+        assertThat(recoveredChecking.getTransactions()).hasSize(1);
+    }
+
+    @Test
+    public void shouldJournalOnlyNewLedgerEntriesAcrossRestarts() throws IOException {
+        accountRepository = open(JournalDurability.ASYNC);
+        final Account account = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null);
+        apply(account, 1_000, TransactionType.CREDIT);
+        accountRepository.saveAccount(account);
+        accountRepository.close();
+
+        accountRepository = open(JournalDurability.ASYNC);
+        final Account recovered = accountRepository.getBankAccount(MOCK_IBAN).orElseThrow();
+        apply(recovered, 500, TransactionType.CREDIT);
+        accountRepository.saveAccount(recovered);
+        accountRepository.close();
+
+        accountRepository = open(JournalDurability.ASYNC);
+        final Account recoveredTwice = accountRepository.getBankAccount(MOCK_IBAN).orElseThrow();
+        assertThat(recoveredTwice.getBalance()).isEqualTo(1_500);
+        assertThat(recoveredTwice.getTransactions()).extracting(Transaction::getAmount)
+                .containsExactly(1_000L, 500L);
+    }
+
+    @Test
+    public void shouldReplayDeleteAllAccounts() throws IOException {
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null));
+        accountRepository.deleteAllAccounts();
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, ANOTHER_IBAN, null));
+        accountRepository.close();
+
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+
+        assertThat(accountRepository.getAllBankAccounts()).containsOnlyKeys(ANOTHER_IBAN);
+    }
+
+    @Test
+    public void shouldDropTornTailAndKeepAppending() throws IOException {
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null));
+        accountRepository.close();
+        final Path segment = files("journal-").get(0);
+        final long intactSize = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 42, 1, 2, 3}));
+        }
+
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        assertThat(Files.size(segment)).isEqualTo(intactSize);
+        accountRepository.saveAccount(buildAccount(AccountType.SAVINGS_ACCOUNT, ANOTHER_IBAN, null));
+        accountRepository.close();
+
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        assertThat(accountRepository.getAllBankAccounts()).containsOnlyKeys(MOCK_IBAN, ANOTHER_IBAN);
+    }
+
+    @Test
+    public void shouldRestoreFromSnapshotPlusJournalTailAndDropCoveredSegments() throws IOException {
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        final Account checkingAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null);
+        final Account savingsAccount = buildAccount(AccountType.SAVINGS_ACCOUNT, ANOTHER_IBAN, checkingAccount);
+        accountRepository.saveAccount(checkingAccount);
+        accountRepository.saveAccount(savingsAccount);
+        for (int i = 0; i < 200; i++) {
+            apply(savingsAccount, 10, TransactionType.CREDIT);
+            accountRepository.saveAccount(savingsAccount);
+        }
+        assertThat(files("journal-")).hasSizeGreaterThan(1);
+
+        accountRepository.snapshot();
+        assertThat(files("snapshot-")).hasSize(1);
+        assertThat(files("journal-")).hasSize(1);
+
+        apply(savingsAccount, 1_000, TransactionType.DEBIT);
+        apply(checkingAccount, 1_000, TransactionType.CREDIT);
+        accountRepository.saveAccounts(List.of(savingsAccount, checkingAccount));
+        accountRepository.close();
+
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        final Account recoveredChecking = accountRepository.getBankAccount(MOCK_IBAN).orElseThrow();
+        final Account recoveredSavings = accountRepository.getBankAccount(ANOTHER_IBAN).orElseThrow();
+        assertThat(recoveredSavings.getBalance()).isEqualTo(1_000);
+        assertThat(recoveredSavings.getTransactions()).hasSize(201);
+        assertThat(recoveredSavings.getReferenceAccount()).containsSame(recoveredChecking);
+        assertThat(recoveredChecking.getBalance()).isEqualTo(1_000);
+        assertThat(recoveredChecking.getTransactions()).hasSize(1);
+    }
+
+    @Test
+    public void shouldConserveTotalBalanceWhenSnapshottingDuringTransfers() throws Exception {
+        accountRepository = open(JournalDurability.ASYNC);
+        final List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            final Account account = buildAccount(AccountType.CHECKING_ACCOUNT, String.format("DE00%018d", i), null);
+            account.setBalance(10_000);
+            accountRepository.saveAccount(account);
+            accounts.add(account);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2_000; i++) {
+                    final Account from = accounts.get(random.nextInt(accounts.size()));
+                    final Account to = accounts.get(random.nextInt(accounts.size()));
+                    accountLock.withLocks(from.getIBAN(), to.getIBAN(), () -> {
+                        apply(from, 1, TransactionType.DEBIT);
+                        apply(to, 1, TransactionType.CREDIT);
+                        accountRepository.saveAccounts(List.of(from, to));
+                    });
+                }
+                return null;
+            }));
+        }
+        for (int i = 0; i < 5; i++) {
+            accountRepository.snapshot();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        accountRepository.close();
+
+        accountRepository = open(JournalDurability.ASYNC);
+        assertThat(accountRepository.getAllBankAccounts().values().stream().mapToLong(Account::getBalance).sum())
+                .isEqualTo(16 * 10_000);
+        assertThat(accountRepository.getAllBankAccounts().values().stream().mapToLong(account -> account.getTransactions().size()).sum())
+                .isEqualTo(2 * 4 * 2_000);
+    }
+
+    @Test
+    public void shouldNotSaveAnAccountWhoseRecordCouldNotBeJournaled() throws IOException {
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null));
+        accountRepository.close();
+
+        assertThatThrownBy(() -> accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, ANOTHER_IBAN, null)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(accountRepository.getAllBankAccounts()).containsOnlyKeys(MOCK_IBAN);
+    }
+
+    @Test
+    public void shouldFailStopOnceAnAppendFailed() throws IOException {
+        final FailingJournal journal = new FailingJournal(directory);
+        accountRepository = new JournalingAccountRepository(new InMemoryAccountRepository(), journal,
+                new AccountSnapshotStore(directory), accountLock);
+        accountRepository.open();
+        final Account account = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null);
+        accountRepository.saveAccount(account);
+
+        journal.failing = true;
+        apply(account, 5_000, TransactionType.CREDIT);
+        assertThatThrownBy(() -> accountRepository.saveAccount(account)).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> accountRepository.getBankAccount(MOCK_IBAN)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> accountRepository.getAllBankAccounts()).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> accountRepository.snapshot()).isInstanceOf(IllegalStateException.class);
+        accountRepository.close();
+
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        assertThat(accountRepository.getBankAccount(MOCK_IBAN).orElseThrow().getBalance()).isZero();
+        assertThat(accountRepository.getBankAccount(MOCK_IBAN).orElseThrow().getTransactions().isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldKeepAccountsCreatedWhileSnapshotting() throws Exception {
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    final String IBAN = String.format("DE%02d%018d", thread, i);
+                    accountLock.withLock(IBAN, () -> accountRepository.saveAccount(
+                            buildAccount(AccountType.CHECKING_ACCOUNT, IBAN, null)));
+                }
+                return null;
+            }));
+        }
+        for (int i = 0; i < 5; i++) {
+            accountRepository.snapshot();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        accountRepository.snapshot();
+        accountRepository.close();
+
+        accountRepository = open(JournalDurability.GROUP_COMMIT);
+        assertThat(accountRepository.getAllBankAccounts()).hasSize(4 * 500);
+    }
+
+    /**
+     * Journal whose appends fail as if the disk was full once {@link #failing} is set.
+     */
+    private static final class FailingJournal extends AccountJournal {
+
+        private volatile boolean failing;
+
+        private FailingJournal(final Path directory) {
+            super(directory, JournalDurability.GROUP_COMMIT, 5, 64, SEGMENT_BYTES);
+        }
+
+        @Override
+        public CompletableFuture<Void> append(final byte[] payload) {
+            return failing ? CompletableFuture.failedFuture(new IOException("No space left on device")) : super.append(payload);
+        }
+    }
+
+    private JournalingAccountRepository open(final JournalDurability durability) throws IOException {
+        final AccountJournal journal = new AccountJournal(directory, durability, 5, 64, SEGMENT_BYTES);
+        final JournalingAccountRepository repository = new JournalingAccountRepository(new InMemoryAccountRepository(),
+                journal, new AccountSnapshotStore(directory), accountLock);
+        repository.open();
+        return repository;
+    }
+
+    private List<Path> files(final String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void apply(final Account account, final long amount, final TransactionType transactionType) {
+        account.setBalance(transactionType == TransactionType.CREDIT
+                ? account.getBalance() + amount
+                : account.getBalance() - amount);
+        account.getTransactions().append(Transaction.builder()
+                .amount(amount)
+                .transactionType(transactionType)
+                .createdAt(NOW)
+                .build());
+    }
+
+    private Account buildAccount(final AccountType accountType, final String IBAN, final Account referenceAccount) {
+        return Account.builder()
+                .accountType(accountType)
+                .balance(0)
+                .IBAN(IBAN)
+                .referenceAccount(referenceAccount)
+                .createdAt(NOW)
+                .updatedAt(NOW)
+                .build();
+    }
+}
@@ -0,0 +1,198 @@
+package com.codefactory.domain.repository.mapped;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.Transaction;
+import com.codefactory.domain.entity.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedAccountRepositoryTest {
+
+    private final static String MOCK_IBAN = "DE80801817944420161050";
+    private final static String ANOTHER_IBAN = "DE80811817954420161158";
+    private final static Instant NOW = Instant.parse("2020-11-01T10:15:30.123456789Z");
+    private final static int CAPACITY = 64;
+
+    @TempDir
+    Path directory;
+
+    private MappedAccountRepository accountRepository;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        accountRepository.close();
+    }
+
+    @Test
+    public void shouldRoundTripAccountAndReferenceAccount() throws IOException {
+        accountRepository = open(CAPACITY);
+        final Account checkingAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null);
+        final Account savingsAccount = buildAccount(AccountType.SAVINGS_ACCOUNT, ANOTHER_IBAN, checkingAccount);
+        savingsAccount.setBalance(12_345);
+        savingsAccount.setLocked(true);
+        accountRepository.saveAccount(savingsAccount);
+
+        final Account found = accountRepository.getBankAccount(ANOTHER_IBAN).orElseThrow();
+        assertThat(found.getBalance()).isEqualTo(12_345);
+        assertThat(found.getAccountType()).isEqualTo(AccountType.SAVINGS_ACCOUNT);
+        assertThat(found.isLocked()).isTrue();
+        assertThat(found.getCreatedAt()).isEqualTo(NOW);
+        assertThat(found.getReferenceAccount()).map(Account::getIBAN).contains(MOCK_IBAN);
+        assertThat(accountRepository.getBankAccount(MOCK_IBAN)).isPresent();
+        assertThat(accountRepository.getBankAccount("DE00000000000000000000")).isEmpty();
+        assertThat(accountRepository.getAllBankAccounts()).hasSize(2).containsKeys(MOCK_IBAN, ANOTHER_IBAN);
+    }
+
+    @Test
+    public void shouldKeepAccountsAfterReopen() throws IOException {
+        accountRepository = open(CAPACITY);
+        final Account checkingAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null);
+        checkingAccount.setBalance(500);
+        accountRepository.saveAccount(checkingAccount);
+        accountRepository.saveAccount(buildAccount(AccountType.SAVINGS_ACCOUNT, ANOTHER_IBAN, checkingAccount));
+        accountRepository.close();
+
+        accountRepository = open(CAPACITY * 2);
+        assertThat(accountRepository.getBankAccount(MOCK_IBAN).map(Account::getBalance)).contains(500L);
+        assertThat(accountRepository.getBankAccount(ANOTHER_IBAN).flatMap(Account::getReferenceAccount).map(Account::getIBAN))
+                .contains(MOCK_IBAN);
+    }
+
+    @Test
+    public void shouldReopenAStoreThatWasNotClosedWithEveryForcedAccount() throws IOException {
+        final MappedAccountRepository crashed = open(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            crashed.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, String.format("DE8080181794%010d", i), null));
+        }
+        crashed.force();
+
+        accountRepository = open(CAPACITY);
+        assertThat(accountRepository.getAllBankAccounts()).hasSize(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            assertThat(accountRepository.getBankAccount(String.format("DE8080181794%010d", i))).isPresent();
+        }
+        crashed.close();
+    }
+
+    @Test
+    public void shouldPageMatchingAccountsInIBANOrder() throws IOException {
+        accountRepository = open(CAPACITY);
+        for (int i = 19; i >= 0; i--) {
+            final AccountType accountType = i % 2 == 0 ? AccountType.CHECKING_ACCOUNT : AccountType.PRIVATE_LOAN_ACCOUNT;
+            accountRepository.saveAccount(buildAccount(accountType, String.format("DE%020d", i), null));
+        }
+        final Set<AccountType> checkingAccounts = EnumSet.of(AccountType.CHECKING_ACCOUNT);
+
+        final List<Account> firstPage = accountRepository.getBankAccountsBy(checkingAccounts, null, 4);
+        final List<Account> secondPage = accountRepository.getBankAccountsBy(checkingAccounts, firstPage.get(3).getIBAN(), 4);
+
+        assertThat(firstPage).extracting(Account::getIBAN)
+                .containsExactly(String.format("DE%020d", 0), String.format("DE%020d", 2), String.format("DE%020d", 4), String.format("DE%020d", 6));
+        assertThat(secondPage).extracting(Account::getIBAN).first().isEqualTo(String.format("DE%020d", 8));
+        assertThat(accountRepository.getBankAccountsBy(checkingAccounts)).hasSize(10);
+        assertThat(accountRepository.streamBankAccountsBy(checkingAccounts).count()).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldKeepLedgerAcrossReads() throws IOException {
+        accountRepository = open(CAPACITY);
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null));
+
+        final Account account = accountRepository.getBankAccount(MOCK_IBAN).orElseThrow();
+        account.setBalance(700);
+        account.getTransactions().append(Transaction.builder()
+                .amount(700)
+                .transactionType(TransactionType.CREDIT)
+                .createdAt(NOW)
+                .build());
+        accountRepository.saveAccount(account);
+
+        final Account found = accountRepository.getBankAccount(MOCK_IBAN).orElseThrow();
+        assertThat(found.getBalance()).isEqualTo(700);
+        assertThat(found.getTransactions().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRejectNewAccountWhenStoreIsFull() throws IOException {
+        accountRepository = open(1);
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null));
+
+        assertThrows(IllegalStateException.class,
+                () -> accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, ANOTHER_IBAN, null)));
+    }
+
+    @Test
+    public void shouldForgetAccountsOnDeleteAll() throws IOException {
+        accountRepository = open(CAPACITY);
+        accountRepository.saveAccount(buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null));
+
+        accountRepository.deleteAllAccounts();
+
+        assertThat(accountRepository.getBankAccount(MOCK_IBAN)).isEmpty();
+        assertThat(accountRepository.getAllBankAccounts()).isEmpty();
+    }
+
+    @Test
+    public void shouldNeverReadTornRecord() throws Exception {
+        accountRepository = open(CAPACITY);
+        final Account account = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_IBAN, null);
+        accountRepository.saveAccount(account);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final Future<?> writer = executor.submit(() -> {
+            for (long i = 1; i <= 200_000; i++) {
+                account.setBalance(i);
+                account.setUpdatedAt(Instant.ofEpochSecond(i));
+                accountRepository.saveAccount(account);
+            }
+            running.set(false);
+        });
+        final Future<Long> reader = executor.submit(() -> {
+            long tornReads = 0;
+            while (running.get()) {
+                final Account found = accountRepository.getBankAccount(MOCK_IBAN).orElseThrow();
+                if (found.getBalance() > 0 && found.getUpdatedAt().getEpochSecond() != found.getBalance()) {
+                    tornReads++;
+                }
+            }
+            return tornReads;
+        });
+
+        writer.get(30, TimeUnit.SECONDS);
+        assertThat(reader.get(30, TimeUnit.SECONDS)).isZero();
+        executor.shutdown();
+    }
+
+    private MappedAccountRepository open(final int capacity) throws IOException {
+        return new MappedAccountRepository(new MappedAccountStore(directory.resolve("accounts.dat"), capacity));
+    }
+
+    private Account buildAccount(final AccountType accountType, final String IBAN, final Account referenceAccount) {
+        return Account.builder()
+                .accountType(accountType)
+                .balance(0)
+                .IBAN(IBAN)
+                .referenceAccount(referenceAccount)
+                .createdAt(NOW)
+                .updatedAt(NOW)
+                .build();
+    }
+}
@@ -6,6 +6,14 @@ import com.codefactory.domain.repository.AccountRepository;
 import com.codefactory.exception.AccountAlreadyLockedException;
 import com.codefactory.exception.AccountNotLockedException;
 import com.codefactory.exception.BankAccountNotFoundException;
+import com.codefactory.service.aggregate.AccountAggregates;
+import com.codefactory.service.audit.AuditLog;
+import com.codefactory.service.audit.AuditOperation;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.change.AccountChangeType;
+import com.codefactory.service.hot.HotAccounts;
+import com.codefactory.service.iban.IBANAllocator;
+import com.codefactory.service.lock.StripedAccountLock;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -13,10 +21,11 @@ import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.math.BigDecimal;
 import java.time.Clock;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -33,6 +42,18 @@ public class BankAccountServiceTest {
     private Clock clock;
     @Mock
     private AccountRepository accountRepository;
+    @Spy
+    private StripedAccountLock accountLock = new StripedAccountLock(16);
+    @Spy
+    private IBANAllocator ibanAllocator = new IBANAllocator(1, 16);
+    @Mock
+    private AuditLog auditLog;
+    @Mock
+    private HotAccounts hotAccounts;
+    @Mock
+    private AccountAggregates accountAggregates;
+    @Mock
+    private AccountChangeStream accountChangeStream;
     @InjectMocks
     private BankAccountService bankAccountService;
 
@@ -47,12 +68,33 @@ public class BankAccountServiceTest {
             InOrder inOrder = inOrder(accountRepository);
             inOrder.verify(accountRepository).saveAccount(argThat(a -> a.getAccountType().equals(AccountType.CHECKING_ACCOUNT)));
             inOrder.verify(accountRepository).saveAccount(argThat(a -> a.getAccountType().equals(accountType)));
-            verify(accountRepository, times(2)).getAllBankAccounts();
+            verify(ibanAllocator, times(2)).next();
         } else {
             verify(accountRepository).saveAccount(argThat(a -> a.getAccountType().equals(accountType)));
-            verify(accountRepository).getAllBankAccounts();
-
+            verify(ibanAllocator).next();
         }
+        InOrder saveThenPublish = inOrder(accountRepository, accountChangeStream);
+        saveThenPublish.verify(accountRepository).saveAccount(argThat(a -> a.getAccountType().equals(accountType)));
+        saveThenPublish.verify(accountChangeStream).publish(eq(AccountChangeType.CREATED),
+                argThat(a -> a.getAccountType().equals(accountType)));
+        verifyNoMoreInteractions(accountRepository);
+        verify(accountAggregates).accountCreated(argThat(a -> a.getAccountType().equals(accountType)));
+    }
+
+    @Test
+    public void shouldCreateSavingsAccountsWithReferenceAccountsInOneBatch() {
+        final List<Account> accounts = bankAccountService.createAccounts(AccountType.SAVINGS_ACCOUNT, 3);
+
+        assertThat(accounts).hasSize(3)
+                .allSatisfy(account -> assertThat(account.getReferenceAccount())
+                        .map(Account::getAccountType).contains(AccountType.CHECKING_ACCOUNT));
+        verify(ibanAllocator).reserve(6);
+        verify(ibanAllocator, never()).next();
+        InOrder saveThenPublish = inOrder(accountRepository, accountChangeStream);
+        saveThenPublish.verify(accountRepository).saveAccounts(argThat(batch -> batch.size() == 6
+                && batch.containsAll(accounts)
+                && List.copyOf(batch).indexOf(accounts.get(0).getReferenceAccount().orElseThrow()) < List.copyOf(batch).indexOf(accounts.get(0))));
+        saveThenPublish.verify(accountChangeStream, times(6)).publish(eq(AccountChangeType.CREATED), any());
         verifyNoMoreInteractions(accountRepository);
     }
 
@@ -78,7 +120,7 @@ public class BankAccountServiceTest {
 
     @Test
     public void shouldThrowExceptionWhenAccountIsAlreadyLockedWhileLockingAccount() {
-        Account account = buildAccount(AccountType.SAVINGS_ACCOUNT, BigDecimal.valueOf(1000));
+        Account account = buildAccount(AccountType.SAVINGS_ACCOUNT, 100_000);
         account.setLocked(true);
         given(accountRepository.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(account));
 
@@ -88,13 +130,17 @@ public class BankAccountServiceTest {
 
     @Test
     public void shouldLockAccountWhenAccountIsNotLocked() {
-        Account account = buildAccount(AccountType.SAVINGS_ACCOUNT, BigDecimal.valueOf(1000));
+        Account account = buildAccount(AccountType.SAVINGS_ACCOUNT, 100_000);
         given(accountRepository.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(account));
 
         bankAccountService.lockAccount(MOCK_IBAN);
 
         verify(accountRepository).saveAccount(argThat(Account::isLocked));
         verifyNoMoreInteractions(accountRepository);
+        verify(hotAccounts).untrack(MOCK_IBAN);
+        verify(accountAggregates).lockChanged(AccountType.SAVINGS_ACCOUNT, true);
+        verify(accountChangeStream).publish(AccountChangeType.LOCKED, account);
+        verify(auditLog).record(AuditOperation.LOCK_ACCOUNT, AuditLog.SUCCESS, MOCK_IBAN, null, 0);
     }
 
     @Test
@@ -109,7 +155,7 @@ public class BankAccountServiceTest {
 
     @Test
     public void shouldThrowExceptionWhenAccountIsNotLockedWhileUnlockingAccount() {
-        Account account = buildAccount(AccountType.SAVINGS_ACCOUNT, BigDecimal.valueOf(1000));
+        Account account = buildAccount(AccountType.SAVINGS_ACCOUNT, 100_000);
         given(accountRepository.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(account));
 
         Throwable throwable = catchThrowable(() -> bankAccountService.unlockAccount(MOCK_IBAN));
@@ -118,7 +164,7 @@ public class BankAccountServiceTest {
 
     @Test
     public void shouldUnlockAccountWhenAccountIsLocked() {
-        Account account = buildAccount(AccountType.CHECKING_ACCOUNT, BigDecimal.valueOf(1000));
+        Account account = buildAccount(AccountType.CHECKING_ACCOUNT, 100_000);
         account.setLocked(true);
         given(accountRepository.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(account));
 
@@ -126,9 +172,11 @@ public class BankAccountServiceTest {
 
         verify(accountRepository).saveAccount(argThat(x -> !x.isLocked()));
         verifyNoMoreInteractions(accountRepository);
+        verify(accountAggregates).lockChanged(AccountType.CHECKING_ACCOUNT, false);
+        verify(accountChangeStream).publish(AccountChangeType.UNLOCKED, account);
     }
 
-    private Account buildAccount(final AccountType accountType, BigDecimal amount) {
+    private Account buildAccount(final AccountType accountType, long amount) {
         return Account.builder()
                 .accountType(accountType)
                 .balance(amount)
@@ -0,0 +1,178 @@
+package com.codefactory.service;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.repository.InMemoryAccountRepository;
+import com.codefactory.service.aggregate.AccountAggregates;
+import com.codefactory.service.audit.AuditLog;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.coalescing.DepositCoalescer;
+import com.codefactory.service.hot.HotAccounts;
+import com.codefactory.service.iban.IBANAllocator;
+import com.codefactory.service.lock.StripedAccountLock;
+import com.codefactory.service.shard.LedgerShards;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransactionServiceConcurrencyTest {
+
+    private final static int ACCOUNTS = 16;
+    private final static int THREADS = 8;
+    private final static int TRANSFERS_PER_THREAD = 2_000;
+    private final static long INITIAL_BALANCE = 100_000;
+
+    private final List<String> ibans = new ArrayList<>();
+    private InMemoryAccountRepository accountRepository;
+    private BankAccountService bankAccountService;
+    private TransactionService transactionService;
+    private TransactionService shardedTransactionService;
+    private TransactionService coalescingTransactionService;
+    private LedgerShards ledgerShards;
+    private AuditLog auditLog;
+
+    @BeforeEach
+    public void setup() {
+        final Clock clock = Clock.systemUTC();
+        final StripedAccountLock accountLock = new StripedAccountLock(64);
+        accountRepository = new InMemoryAccountRepository();
+        auditLog = new AuditLog(clock, 1024, 1.0, line -> {
+        });
+        final AccountAggregates accountAggregates = new AccountAggregates(accountRepository);
+        final AccountChangeStream accountChangeStream = new AccountChangeStream(clock, false, 1, null, 0);
+        final HotAccounts hotAccounts = new HotAccounts(accountRepository, accountLock, accountAggregates,
+                accountChangeStream, false, 1000, 0);
+        bankAccountService = new BankAccountService(clock, accountRepository, accountLock, new IBANAllocator(1, 64),
+                auditLog, hotAccounts, accountAggregates, accountChangeStream);
+        transactionService = new TransactionService(clock, bankAccountService, accountLock, auditLog, hotAccounts,
+                new LedgerShards(accountLock, false, 0, 1), new DepositCoalescer(false, 0, 1), accountAggregates,
+                accountChangeStream);
+        ledgerShards = new LedgerShards(accountLock, true, 4, 16);
+        shardedTransactionService = new TransactionService(clock, bankAccountService, accountLock, auditLog, hotAccounts,
+                ledgerShards, new DepositCoalescer(false, 0, 1), accountAggregates, accountChangeStream);
+        coalescingTransactionService = new TransactionService(clock, bankAccountService, accountLock, auditLog, hotAccounts,
+                new LedgerShards(accountLock, false, 0, 1), new DepositCoalescer(true, 1_000, 8), accountAggregates,
+                accountChangeStream);
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final Account account = bankAccountService.buildAccount(AccountType.CHECKING_ACCOUNT, INITIAL_BALANCE);
+            ibans.add(accountRepository.saveAccount(account));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ledgerShards.close();
+        auditLog.close();
+    }
+
+    @Test
+    public void shouldConserveTotalBalanceUnderConcurrentTransfers() throws Exception {
+        transferConcurrently(transactionService);
+    }
+
+    @Test
+    public void shouldConserveTotalBalanceUnderConcurrentShardedTransfers() throws Exception {
+        transferConcurrently(shardedTransactionService);
+    }
+
+    @Test
+    public void shouldKeepEveryCoalescedDeposit() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    assertThat(coalescingTransactionService.creditAccount(1, ibans.get(i % 2)).isSuccess()).isTrue();
+                }
+                return null;
+            }));
+        }
+
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).as("deposits deadlocked").isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        for (String iban : ibans.subList(0, 2)) {
+            final Account account = accountRepository.getBankAccount(iban).orElseThrow();
+            assertThat(account.getBalance()).isEqualTo(INITIAL_BALANCE + THREADS * TRANSFERS_PER_THREAD / 2);
+            assertThat(account.getTransactions().size()).isEqualTo(THREADS * TRANSFERS_PER_THREAD / 2);
+        }
+    }
+
+    @Test
+    public void shouldRejectTransfersAcrossShardsLikeLockedTransfers() {
+        final String fromIBAN = ibans.get(0);
+        final String toIBAN = ibans.stream()
+                .filter(iban -> !shardThreadOf(fromIBAN).equals(shardThreadOf(iban)))
+                .findFirst()
+                .orElseThrow();
+        bankAccountService.lockAccount(toIBAN);
+
+        for (TransactionService service : List.of(transactionService, shardedTransactionService)) {
+            final TransferResult locked = service.transferMoney(1, fromIBAN, toIBAN);
+            assertThat(locked.getStatus()).isEqualTo(TransferStatus.ACCOUNT_LOCKED);
+            assertThat(locked.getIBAN()).isEqualTo(toIBAN);
+
+            final TransferResult overdrawn = service.transferMoney(INITIAL_BALANCE + 1, toIBAN, fromIBAN);
+            assertThat(overdrawn.getStatus()).isEqualTo(TransferStatus.ACCOUNT_LOCKED);
+            assertThat(overdrawn.getIBAN()).isEqualTo(toIBAN);
+
+            final TransferResult notFound = service.transferMoney(INITIAL_BALANCE + 1, fromIBAN, "unknown");
+            assertThat(notFound.getStatus()).isEqualTo(TransferStatus.ACCOUNT_NOT_FOUND);
+            assertThat(notFound.getIBAN()).isEqualTo("unknown");
+        }
+        assertThat(accountRepository.getBankAccount(fromIBAN).orElseThrow().getBalance()).isEqualTo(INITIAL_BALANCE);
+    }
+
+    private String shardThreadOf(final String IBAN) {
+        return ledgerShards.call(IBAN, () -> Thread.currentThread().getName());
+    }
+
+    private void transferConcurrently(final TransactionService transactionService) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    final String from = ibans.get(random.nextInt(ACCOUNTS));
+                    final String to = ibans.get(random.nextInt(ACCOUNTS));
+                    transactionService.transferMoney(random.nextInt(1, 10_000), from, to);
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).as("transfers deadlocked").isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        final long total = ibans.stream()
+                .mapToLong(iban -> accountRepository.getBankAccount(iban).orElseThrow().getBalance())
+                .sum();
+        assertThat(total).isEqualTo(INITIAL_BALANCE * ACCOUNTS);
+        assertThat(ibans).allSatisfy(iban ->
+                assertThat(accountRepository.getBankAccount(iban).orElseThrow().getBalance()).isNotNegative());
+    }
+}
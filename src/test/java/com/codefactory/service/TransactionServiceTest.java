@@ -4,21 +4,33 @@ import com.codefactory.domain.entity.Account;
 import com.codefactory.domain.entity.AccountType;
 import com.codefactory.domain.entity.Transaction;
 import com.codefactory.domain.entity.TransactionType;
-import com.codefactory.exception.*;
+import com.codefactory.service.aggregate.AccountAggregates;
+import com.codefactory.service.audit.AuditLog;
+import com.codefactory.service.audit.AuditOperation;
+import com.codefactory.service.change.AccountChange;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.coalescing.DepositCoalescer;
+import com.codefactory.service.hot.HotAccounts;
+import com.codefactory.service.lock.StripedAccountLock;
+import com.codefactory.service.shard.LedgerShards;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.math.BigDecimal;
 import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 
@@ -28,89 +40,153 @@ public class TransactionServiceTest {
     private final static String MOCK_IBAN = "DE80801817944420161050";
     private final static String ANOTHER_IBAN = "DE80811817954420161158";
     private final static String IBAN = "DE80811817954420162390";
-    private final static BigDecimal MOCK_AMOUNT = BigDecimal.valueOf(2000);
-    private final static BigDecimal LESSER_AMOUNT = BigDecimal.valueOf(1000);
-    private final static BigDecimal DEFAULT_AMOUNT = BigDecimal.valueOf(0);
+    private final static long MOCK_AMOUNT = 200_000;
+    private final static long LESSER_AMOUNT = 100_000;
+    private final static long DEFAULT_AMOUNT = 0;
     private final static String CREATED_AT = "createdAt";
+    private final static Instant NOW = Instant.parse("2020-11-01T10:15:30Z");
 
     @Mock
     private Clock clock;
     @Mock
     private BankAccountService bankAccountService;
+    @Spy
+    private StripedAccountLock accountLock = new StripedAccountLock(16);
+    @Mock
+    private AuditLog auditLog;
+    @Mock
+    private HotAccounts hotAccounts;
+    @Mock
+    private LedgerShards ledgerShards;
+    @Mock
+    private DepositCoalescer depositCoalescer;
+    @Mock
+    private AccountAggregates accountAggregates;
+    @Mock
+    private AccountChangeStream accountChangeStream;
     @InjectMocks
     private TransactionService transactionService;
 
+    @BeforeEach
+    public void setup() {
+        lenient().when(clock.instant()).thenReturn(NOW);
+    }
+
     @Test
-    public void shouldThrowExceptionWhenAccountIsLockedWhileCreditingAccount() {
+    public void shouldRejectCreditWhenAccountIsLocked() {
         final Account account = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT, MOCK_IBAN);
         account.setLocked(true);
         given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(account));
 
-        Throwable throwable = catchThrowable(() -> transactionService.creditAccount(MOCK_AMOUNT, MOCK_IBAN));
+        final TransferResult result = transactionService.creditAccount(MOCK_AMOUNT, MOCK_IBAN);
 
-        assertThat(throwable).isInstanceOf(BankAccountIsLockedException.class);
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.ACCOUNT_LOCKED);
+        assertThat(result.getIBAN()).isEqualTo(MOCK_IBAN);
+        verify(bankAccountService, never()).saveAccount(any());
     }
 
     @Test
-    public void shouldThrowExceptionWhenAccountDoesNotExistWhileGettingBankAccount() {
+    public void shouldRejectCreditWhenAccountDoesNotExist() {
         given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.empty());
 
-        Throwable throwable = catchThrowable(() -> transactionService.creditAccount(MOCK_AMOUNT, MOCK_IBAN));
+        final TransferResult result = transactionService.creditAccount(MOCK_AMOUNT, MOCK_IBAN);
 
-        assertThat(throwable).isInstanceOf(BankAccountNotFoundException.class)
-                .hasMessage("BankAccount not found, IBAN= " + MOCK_IBAN);
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.ACCOUNT_NOT_FOUND);
+        assertThat(result.getIBAN()).isEqualTo(MOCK_IBAN);
     }
 
     @Test
     public void shouldCreditAccountWhenAllValidationPasses() {
         final Account account = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT, MOCK_IBAN);
+        final AccountChange change = AccountChange.builder().IBAN(MOCK_IBAN).build();
         given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(account));
+        given(accountChangeStream.capture(eq(account), argThat(transaction -> transaction.getAmount() == MOCK_AMOUNT
+                && transaction.getTransactionType() == TransactionType.CREDIT), eq(MOCK_AMOUNT + MOCK_AMOUNT)))
+                .willReturn(change);
 
-        transactionService.creditAccount(MOCK_AMOUNT, MOCK_IBAN);
+        final TransferResult result = transactionService.creditAccount(MOCK_AMOUNT, MOCK_IBAN);
 
+        assertThat(result.isSuccess()).isTrue();
         verify(bankAccountService).getBankAccount(MOCK_IBAN);
-        BigDecimal expectedBalance = MOCK_AMOUNT.add(MOCK_AMOUNT);
-        verify(bankAccountService).saveAccount(argThat(acct -> acct.getBalance().equals(expectedBalance)));
+        long expectedBalance = MOCK_AMOUNT + MOCK_AMOUNT;
+        InOrder saveThenPublish = inOrder(bankAccountService, accountChangeStream);
+        saveThenPublish.verify(bankAccountService).saveAccount(argThat(acct -> acct.getBalance() == expectedBalance));
+        saveThenPublish.verify(accountChangeStream).publish(change);
         verifyNoMoreInteractions(bankAccountService);
+        verify(accountAggregates).balanceChanged(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT);
     }
 
     @Test
-    public void shouldThrowExceptionWhenAnyAccountDoesNotExistWhileTransferringMoney() {
+    public void shouldCreditCoalescedDepositsWithOneSaveAndOneLedgerEntryEach() {
+        final Account account = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT, MOCK_IBAN);
+        given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(account));
+        given(depositCoalescer.isEnabled()).willReturn(true);
+        given(depositCoalescer.deposit(eq(MOCK_IBAN), eq(LESSER_AMOUNT), any())).willAnswer(invocation ->
+                invocation.<DepositCoalescer.Committer>getArgument(2).commit(MOCK_IBAN, new long[]{LESSER_AMOUNT, MOCK_AMOUNT}));
+
+        final TransferResult result = transactionService.creditAccount(LESSER_AMOUNT, MOCK_IBAN);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(account.getBalance()).isEqualTo(MOCK_AMOUNT + LESSER_AMOUNT + MOCK_AMOUNT);
+        assertThat(account.getTransactions().size()).isEqualTo(2);
+        verify(bankAccountService).saveAccount(account);
+        verify(clock).instant();
+    }
+
+    @Test
+    public void shouldRejectTransferWhenAnyAccountDoesNotExist() {
         given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.empty());
 
-        Throwable throwable = catchThrowable(() -> transactionService.transferMoney(MOCK_AMOUNT, MOCK_IBAN, ANOTHER_IBAN));
+        final TransferResult result = transactionService.transferMoney(MOCK_AMOUNT, MOCK_IBAN, ANOTHER_IBAN);
 
-        assertThat(throwable).isInstanceOf(BankAccountNotFoundException.class)
-                .hasMessage("BankAccount not found, IBAN= " + MOCK_IBAN);
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.ACCOUNT_NOT_FOUND);
+        assertThat(result.getIBAN()).isEqualTo(MOCK_IBAN);
     }
 
     @Test
-    public void shouldThrowExceptionWhenAnyAccountIsLockedWhileTransferringMoney() {
+    public void shouldRejectTransferWhenAnyAccountIsLocked() {
         final Account checkAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT, MOCK_IBAN);
         final Account savingsAccount = buildAccount(AccountType.SAVINGS_ACCOUNT, MOCK_AMOUNT, ANOTHER_IBAN);
         checkAccount.setLocked(true);
         given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(checkAccount));
         given(bankAccountService.getBankAccount(ANOTHER_IBAN)).willReturn(Optional.of(savingsAccount));
 
-        Throwable throwable = catchThrowable(() -> transactionService.transferMoney(MOCK_AMOUNT, MOCK_IBAN, ANOTHER_IBAN));
+        final TransferResult result = transactionService.transferMoney(MOCK_AMOUNT, MOCK_IBAN, ANOTHER_IBAN);
 
-        assertThat(throwable).isInstanceOf(BankAccountIsLockedException.class);
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.ACCOUNT_LOCKED);
+        assertThat(result.getIBAN()).isEqualTo(MOCK_IBAN);
     }
 
     @Test
-    public void shouldThrowExceptionWhenFromAccountHasInsufficientBalance() {
+    public void shouldRejectTransferWhenFromAccountHasInsufficientBalance() {
         final Account checkAccount = buildAccount(AccountType.CHECKING_ACCOUNT, LESSER_AMOUNT, MOCK_IBAN);
         final Account savingsAccount = buildAccount(AccountType.SAVINGS_ACCOUNT, MOCK_AMOUNT, ANOTHER_IBAN);
         given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(checkAccount));
         given(bankAccountService.getBankAccount(ANOTHER_IBAN)).willReturn(Optional.of(savingsAccount));
 
-        Throwable thrown = catchThrowable(()
-                -> transactionService.transferMoney(MOCK_AMOUNT, checkAccount.getIBAN(), savingsAccount.getIBAN()));
+        final TransferResult result = transactionService.transferMoney(MOCK_AMOUNT, checkAccount.getIBAN(), savingsAccount.getIBAN());
 
         verify(bankAccountService).getBankAccount(MOCK_IBAN);
         verify(bankAccountService).getBankAccount(ANOTHER_IBAN);
         verifyNoMoreInteractions(bankAccountService);
-        assertThat(thrown).isInstanceOf(InSufficientBalanceException.class);
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.INSUFFICIENT_BALANCE);
+        assertThat(result.getIBAN()).isEqualTo(MOCK_IBAN);
+        verify(auditLog).record(AuditOperation.TRANSFER, TransferStatus.INSUFFICIENT_BALANCE.name(), MOCK_IBAN, ANOTHER_IBAN,
+                MOCK_AMOUNT);
+    }
+
+    @Test
+    public void shouldRejectTransferToTheSameAccount() {
+        final Account checkAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT, MOCK_IBAN);
+        given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(checkAccount));
+
+        final TransferResult result = transactionService.transferMoney(LESSER_AMOUNT, MOCK_IBAN, MOCK_IBAN);
+
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.SAME_ACCOUNT);
+        assertThat(result.getIBAN()).isEqualTo(MOCK_IBAN);
+        assertThat(checkAccount.getBalance()).isEqualTo(MOCK_AMOUNT);
+        assertThat(checkAccount.getTransactions().isEmpty()).isTrue();
+        verify(bankAccountService, never()).saveAccounts(any());
     }
 
     @Test
@@ -122,17 +198,18 @@ public class TransactionServiceTest {
         Transaction debitTransaction = buildTransaction(MOCK_AMOUNT, TransactionType.DEBIT);
         Transaction creditTransaction = buildTransaction(MOCK_AMOUNT, TransactionType.CREDIT);
 
-        transactionService.transferMoney(MOCK_AMOUNT, checkAccount.getIBAN(), savingsAccount.getIBAN());
+        final TransferResult result = transactionService.transferMoney(MOCK_AMOUNT, checkAccount.getIBAN(), savingsAccount.getIBAN());
 
+        assertThat(result.isSuccess()).isTrue();
         verify(bankAccountService).getBankAccount(MOCK_IBAN);
         verify(bankAccountService).getBankAccount(ANOTHER_IBAN);
-        verify(bankAccountService, times(2)).saveAccount(any());
+        verify(bankAccountService).saveAccounts(List.of(checkAccount, savingsAccount));
         verifyNoMoreInteractions(bankAccountService);
 
-        assertThat(checkAccount.getBalance()).isEqualTo(MOCK_AMOUNT.subtract(MOCK_AMOUNT));
+        assertThat(checkAccount.getBalance()).isEqualTo(MOCK_AMOUNT - MOCK_AMOUNT);
         assertThat(checkAccount.getTransactions()).first().isEqualToIgnoringGivenFields(debitTransaction, CREATED_AT);
 
-        assertThat(savingsAccount.getBalance()).isEqualTo(MOCK_AMOUNT.add(MOCK_AMOUNT));
+        assertThat(savingsAccount.getBalance()).isEqualTo(MOCK_AMOUNT + MOCK_AMOUNT);
         assertThat(savingsAccount.getTransactions()).first().isEqualToIgnoringGivenFields(creditTransaction, CREATED_AT);
     }
 
@@ -145,17 +222,18 @@ public class TransactionServiceTest {
         Transaction debitTransaction = buildTransaction(MOCK_AMOUNT, TransactionType.DEBIT);
         Transaction creditTransaction = buildTransaction(MOCK_AMOUNT, TransactionType.CREDIT);
 
-        transactionService.transferMoney(MOCK_AMOUNT, savingsAccount.getIBAN(), checkAccount.getIBAN());
+        final TransferResult result = transactionService.transferMoney(MOCK_AMOUNT, savingsAccount.getIBAN(), checkAccount.getIBAN());
 
+        assertThat(result.isSuccess()).isTrue();
         verify(bankAccountService).getBankAccount(ANOTHER_IBAN);
         verify(bankAccountService).getBankAccount(checkAccount.getIBAN());
-        verify(bankAccountService, times(2)).saveAccount(any());
+        verify(bankAccountService).saveAccounts(List.of(savingsAccount, checkAccount));
         verifyNoMoreInteractions(bankAccountService);
 
-        assertThat(savingsAccount.getBalance()).isEqualTo(MOCK_AMOUNT.subtract(MOCK_AMOUNT));
+        assertThat(savingsAccount.getBalance()).isEqualTo(MOCK_AMOUNT - MOCK_AMOUNT);
         assertThat(savingsAccount.getTransactions()).first().isEqualToIgnoringGivenFields(debitTransaction, CREATED_AT);
 
-        assertThat(checkAccount.getBalance()).isEqualTo(DEFAULT_AMOUNT.add(MOCK_AMOUNT));
+        assertThat(checkAccount.getBalance()).isEqualTo(DEFAULT_AMOUNT + MOCK_AMOUNT);
         assertThat(checkAccount.getTransactions()).first().isEqualToIgnoringGivenFields(creditTransaction, CREATED_AT);
     }
 
@@ -166,12 +244,11 @@ public class TransactionServiceTest {
         given(bankAccountService.getBankAccount(ANOTHER_IBAN)).willReturn(Optional.of(savingsAccount));
         given(bankAccountService.getBankAccount(IBAN)).willReturn(Optional.of(checkAccount));
 
-        Throwable throwable = catchThrowable(()
-                -> transactionService.transferMoney(MOCK_AMOUNT, savingsAccount.getIBAN(), checkAccount.getIBAN()));
-
-        assertThat(throwable).isInstanceOf(UnsupportedTransferException.class)
-                .hasMessage("Savings account can only send to reference checking account");
+        final TransferResult result = transactionService.transferMoney(MOCK_AMOUNT, savingsAccount.getIBAN(), checkAccount.getIBAN());
 
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.UNSUPPORTED_TRANSFER);
+        assertThat(savingsAccount.getBalance()).isEqualTo(MOCK_AMOUNT);
+        verify(bankAccountService, never()).saveAccounts(any());
     }
 
     @Test
@@ -181,10 +258,10 @@ public class TransactionServiceTest {
         given(bankAccountService.getBankAccount(ANOTHER_IBAN)).willReturn(Optional.of(loanAccount));
         given(bankAccountService.getBankAccount(IBAN)).willReturn(Optional.of(checkAccount));
 
-        Throwable throwable = catchThrowable(() -> transactionService.transferMoney(MOCK_AMOUNT, ANOTHER_IBAN, IBAN));
+        final TransferResult result = transactionService.transferMoney(MOCK_AMOUNT, ANOTHER_IBAN, IBAN);
 
-        assertThat(throwable).isInstanceOf(WithdrawalNotSupportedException.class)
-                .hasMessage("Withdrawal not supported for fromAccount, IBAN= " + ANOTHER_IBAN);
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.WITHDRAWAL_NOT_SUPPORTED);
+        assertThat(result.getIBAN()).isEqualTo(ANOTHER_IBAN);
     }
 
     @Test
@@ -196,21 +273,91 @@ public class TransactionServiceTest {
         Transaction debitTransaction = buildTransaction(MOCK_AMOUNT, TransactionType.DEBIT);
         Transaction creditTransaction = buildTransaction(MOCK_AMOUNT, TransactionType.CREDIT);
 
-        transactionService.transferMoney(MOCK_AMOUNT, checkAccount.getIBAN(), loanAccount.getIBAN());
+        final TransferResult result = transactionService.transferMoney(MOCK_AMOUNT, checkAccount.getIBAN(), loanAccount.getIBAN());
 
+        assertThat(result.isSuccess()).isTrue();
         verify(bankAccountService).getBankAccount(ANOTHER_IBAN);
         verify(bankAccountService).getBankAccount(MOCK_IBAN);
-        verify(bankAccountService, times(2)).saveAccount(any());
+        verify(bankAccountService).saveAccounts(List.of(checkAccount, loanAccount));
         verifyNoMoreInteractions(bankAccountService);
 
-        assertThat(checkAccount.getBalance()).isEqualTo(MOCK_AMOUNT.subtract(MOCK_AMOUNT));
+        assertThat(checkAccount.getBalance()).isEqualTo(MOCK_AMOUNT - MOCK_AMOUNT);
         assertThat(checkAccount.getTransactions()).first().isEqualToIgnoringGivenFields(debitTransaction, CREATED_AT);
 
-        assertThat(loanAccount.getBalance()).isEqualTo(DEFAULT_AMOUNT.add(MOCK_AMOUNT));
+        assertThat(loanAccount.getBalance()).isEqualTo(DEFAULT_AMOUNT + MOCK_AMOUNT);
         assertThat(loanAccount.getTransactions()).first().isEqualToIgnoringGivenFields(creditTransaction, CREATED_AT);
     }
 
-    private Transaction buildTransaction(BigDecimal amount, TransactionType type) {
+    @Test
+    public void shouldApplyNothingWhenAtomicBatchHasRejectedTransfer() {
+        final Account checkAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT, ANOTHER_IBAN);
+        final Account loanAccount = buildAccount(AccountType.PRIVATE_LOAN_ACCOUNT, DEFAULT_AMOUNT, MOCK_IBAN);
+        given(bankAccountService.getBankAccount(ANOTHER_IBAN)).willReturn(Optional.of(checkAccount));
+        given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(loanAccount));
+
+        final BatchTransferResult result = transactionService.transferMoney(List.of(
+                buildTransferCommand(LESSER_AMOUNT, ANOTHER_IBAN, MOCK_IBAN),
+                buildTransferCommand(LESSER_AMOUNT, MOCK_IBAN, ANOTHER_IBAN)), true);
+
+        assertThat(result.isCommitted()).isFalse();
+        assertThat(result.getStatuses())
+                .containsExactly(TransferStatus.ABORTED, TransferStatus.WITHDRAWAL_NOT_SUPPORTED);
+        verify(bankAccountService, never()).saveAccounts(any());
+        assertThat(checkAccount.getBalance()).isEqualTo(MOCK_AMOUNT);
+        assertThat(checkAccount.getTransactions()).isEmpty();
+        assertThat(loanAccount.getBalance()).isEqualTo(DEFAULT_AMOUNT);
+    }
+
+    @Test
+    public void shouldApplyValidTransfersWhenBatchIsNotAtomic() {
+        final Account checkAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT, ANOTHER_IBAN);
+        final Account loanAccount = buildAccount(AccountType.PRIVATE_LOAN_ACCOUNT, DEFAULT_AMOUNT, MOCK_IBAN);
+        given(bankAccountService.getBankAccount(ANOTHER_IBAN)).willReturn(Optional.of(checkAccount));
+        given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(loanAccount));
+        given(bankAccountService.getBankAccount(IBAN)).willReturn(Optional.empty());
+
+        final BatchTransferResult result = transactionService.transferMoney(List.of(
+                buildTransferCommand(LESSER_AMOUNT, ANOTHER_IBAN, MOCK_IBAN),
+                buildTransferCommand(LESSER_AMOUNT, ANOTHER_IBAN, IBAN),
+                buildTransferCommand(LESSER_AMOUNT, ANOTHER_IBAN, MOCK_IBAN),
+                buildTransferCommand(LESSER_AMOUNT, ANOTHER_IBAN, MOCK_IBAN)), false);
+
+        assertThat(result.isCommitted()).isTrue();
+        assertThat(result.getStatuses()).containsExactly(TransferStatus.SUCCESS, TransferStatus.ACCOUNT_NOT_FOUND,
+                TransferStatus.SUCCESS, TransferStatus.INSUFFICIENT_BALANCE);
+        verify(bankAccountService).saveAccounts(argThat(accounts -> accounts.size() == 2
+                && accounts.contains(checkAccount) && accounts.contains(loanAccount)));
+        assertThat(checkAccount.getBalance()).isEqualTo(MOCK_AMOUNT - 2 * LESSER_AMOUNT);
+        assertThat(checkAccount.getTransactions()).hasSize(2);
+        assertThat(loanAccount.getBalance()).isEqualTo(DEFAULT_AMOUNT + 2 * LESSER_AMOUNT);
+    }
+
+    @Test
+    public void shouldRejectBatchTransferWithNonPositiveAmount() {
+        final Account checkAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT, ANOTHER_IBAN);
+        final Account loanAccount = buildAccount(AccountType.CHECKING_ACCOUNT, MOCK_AMOUNT, MOCK_IBAN);
+        given(bankAccountService.getBankAccount(ANOTHER_IBAN)).willReturn(Optional.of(checkAccount));
+        given(bankAccountService.getBankAccount(MOCK_IBAN)).willReturn(Optional.of(loanAccount));
+
+        final BatchTransferResult result = transactionService.transferMoney(List.of(
+                buildTransferCommand(-LESSER_AMOUNT, ANOTHER_IBAN, MOCK_IBAN),
+                buildTransferCommand(0, ANOTHER_IBAN, MOCK_IBAN)), false);
+
+        assertThat(result.isCommitted()).isFalse();
+        assertThat(result.getStatuses()).containsExactly(TransferStatus.INVALID_AMOUNT, TransferStatus.INVALID_AMOUNT);
+        assertThat(checkAccount.getBalance()).isEqualTo(MOCK_AMOUNT);
+        assertThat(loanAccount.getBalance()).isEqualTo(MOCK_AMOUNT);
+    }
+
+    private TransferCommand buildTransferCommand(long amount, String fromIBAN, String toIBAN) {
+        return TransferCommand.builder()
+                .amount(amount)
+                .fromIBAN(fromIBAN)
+                .toIBAN(toIBAN)
+                .build();
+    }
+
+    private Transaction buildTransaction(long amount, TransactionType type) {
         return Transaction.builder()
                 .amount(amount)
                 .transactionType(type)
@@ -218,7 +365,7 @@ public class TransactionServiceTest {
                 .build();
     }
 
-    private Account buildAccount(final AccountType accountType, BigDecimal amount, final String IBAN) {
+    private Account buildAccount(final AccountType accountType, long amount, final String IBAN) {
         Account referenceAccount = null;
         if (accountType.equals(AccountType.SAVINGS_ACCOUNT)) {
             referenceAccount = Account.builder()
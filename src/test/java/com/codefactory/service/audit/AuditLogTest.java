@@ -0,0 +1,99 @@
+package com.codefactory.service.audit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditLogTest {
+
+    private final static String IBAN = "DE80801817944420161050";
+    private final static String ANOTHER_IBAN = "DE80811817954420161158";
+    private final static Clock CLOCK = Clock.fixed(Instant.parse("2020-11-01T10:15:30Z"), ZoneOffset.UTC);
+
+    @Test
+    public void shouldWriteOneLinePerRecordInOrder() {
+        final List<String> lines = new CopyOnWriteArrayList<>();
+        final AuditLog auditLog = new AuditLog(CLOCK, 16, 1.0, lines::add);
+
+        auditLog.record(AuditOperation.TRANSFER, AuditLog.SUCCESS, IBAN, ANOTHER_IBAN, 12_345);
+        auditLog.record(AuditOperation.LOCK_ACCOUNT, "ALREADY_LOCKED", IBAN, null, 0);
+        auditLog.close();
+
+        assertThat(lines).containsExactly(
+                "op=TRANSFER outcome=SUCCESS iban=" + IBAN + " counterparty=" + ANOTHER_IBAN + " amount=12345 at=2020-11-01T10:15:30Z",
+                "op=LOCK_ACCOUNT outcome=ALREADY_LOCKED iban=" + IBAN + " at=2020-11-01T10:15:30Z");
+    }
+
+    @Test
+    public void shouldSampleSuccessesButKeepEveryRejection() {
+        final List<String> lines = new CopyOnWriteArrayList<>();
+        final AuditLog auditLog = new AuditLog(CLOCK, 1024, 0.0, lines::add);
+
+        for (int i = 0; i < 100; i++) {
+            auditLog.record(AuditOperation.DEPOSIT, AuditLog.SUCCESS, IBAN, null, 100);
+        }
+        auditLog.record(AuditOperation.DEPOSIT, "ACCOUNT_LOCKED", IBAN, null, 100);
+        auditLog.close();
+
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0)).contains("outcome=ACCOUNT_LOCKED");
+    }
+
+    @Test
+    public void shouldDropRecordsInsteadOfBlockingWhenTheRingIsFull() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> lines = new CopyOnWriteArrayList<>();
+        final AuditLog auditLog = new AuditLog(CLOCK, 4, 1.0, line -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lines.add(line);
+        });
+
+        auditLog.record(AuditOperation.DEPOSIT, AuditLog.SUCCESS, IBAN, null, 1);
+        assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 10; i++) {
+            auditLog.record(AuditOperation.DEPOSIT, AuditLog.SUCCESS, IBAN, null, 1);
+        }
+        release.countDown();
+        auditLog.close();
+
+        assertThat(auditLog.getDropped()).isEqualTo(6);
+        assertThat(lines).hasSize(5);
+    }
+
+    @Test
+    public void shouldWriteEveryRecordOfConcurrentProducers() throws Exception {
+        final List<String> lines = new CopyOnWriteArrayList<>();
+        final AuditLog auditLog = new AuditLog(CLOCK, 1 << 16, 1.0, lines::add);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    auditLog.record(AuditOperation.DEPOSIT, AuditLog.SUCCESS, IBAN, null, 1);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        auditLog.close();
+
+        assertThat(auditLog.getDropped()).isZero();
+        assertThat(lines).hasSize(8_000);
+    }
+}
@@ -0,0 +1,278 @@
+package com.codefactory.service.change;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.Transaction;
+import com.codefactory.domain.entity.TransactionType;
+import com.codefactory.exception.AccountChangeStreamDisabledException;
+import com.codefactory.exception.AccountChangesExpiredException;
+import com.codefactory.exception.InvalidPageRequestException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AccountChangeStreamTest {
+
+    private final static String IBAN = "DE80801817944420161050";
+    private final static Instant NOW = Instant.parse("2020-11-01T10:15:30Z");
+
+    private final Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+    private final List<AccountChangeStream> streams = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    public void tearDown() {
+        streams.forEach(AccountChangeStream::close);
+    }
+
+    @Test
+    public void shouldReadPublishedChangesInSequenceOrder() {
+        final AccountChangeStream stream = stream(8, null);
+        final Account account = buildAccount();
+
+        stream.publish(AccountChangeType.CREATED, account);
+        account.setBalance(78_000);
+        stream.publish(AccountChangeType.BALANCE_CHANGED, account);
+        account.setLocked(true);
+        stream.publish(AccountChangeType.LOCKED, account);
+
+        final List<AccountChange> changes = stream.read(0, 10);
+        assertThat(changes).extracting(AccountChange::getSequence).containsExactly(0L, 1L, 2L);
+        assertThat(changes).extracting(AccountChange::getChangeType)
+                .containsExactly(AccountChangeType.CREATED, AccountChangeType.BALANCE_CHANGED, AccountChangeType.LOCKED);
+        assertThat(changes.get(1).getBalance()).isEqualTo(78_000);
+        assertThat(changes.get(1).isLocked()).isFalse();
+        assertThat(changes.get(2).isLocked()).isTrue();
+        assertThat(changes.get(2).getIBAN()).isEqualTo(IBAN);
+        assertThat(changes.get(2).getChangedAt()).isEqualTo(NOW);
+        assertThat(stream.read(1, 1)).extracting(AccountChange::getSequence).containsExactly(1L);
+        assertThat(stream.read(3, 10)).isEmpty();
+        assertThat(stream.getNextSequence()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldExpireChangesOverwrittenInTheRingWithoutSpillFile() {
+        final AccountChangeStream stream = stream(4, null);
+        publish(stream, 6);
+
+        assertThatThrownBy(() -> stream.read(1, 10)).isInstanceOf(AccountChangesExpiredException.class);
+        assertThat(stream.read(2, 10)).extracting(AccountChange::getSequence).containsExactly(2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    public void shouldReplayChangesOverwrittenInTheRingFromTheSpillFile() {
+        final AccountChangeStream stream = stream(4, spillFile());
+        publishSpilled(stream, 100);
+
+        final List<Long> sequences = new ArrayList<>();
+        long next = 0;
+        while (next < 100) {
+            final List<AccountChange> changes = stream.read(next, 7);
+            assertThat(changes).isNotEmpty();
+            changes.forEach(change -> sequences.add(change.getSequence()));
+            next += changes.size();
+        }
+        assertThat(sequences).isEqualTo(LongStream.range(0, 100).boxed().collect(Collectors.toList()));
+        assertThat(stream.read(0, 1).get(0).getIBAN()).isEqualTo(IBAN);
+        assertThat(stream.read(0, 1).get(0).getChangedAt()).isEqualTo(NOW);
+    }
+
+    @Test
+    public void shouldExpireChangesOverwrittenInTheSpillFile() {
+        final AccountChangeStream stream = new AccountChangeStream(clock, true, 4, spillFile(), 16);
+        streams.add(stream);
+        publishSpilled(stream, 40);
+
+        assertThat(readAll(stream, 24)).containsExactlyElementsOf(LongStream.range(24, 40).boxed()
+                .collect(Collectors.toList()));
+        assertThatThrownBy(() -> stream.read(19, 10)).isInstanceOf(AccountChangesExpiredException.class);
+    }
+
+    @Test
+    public void shouldKeepEveryChangeOfConcurrentPublishers() throws Exception {
+        final AccountChangeStream stream = stream(4_096, spillFile());
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> publishers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            publishers.add(executor.submit(() -> publish(stream, 1_000)));
+        }
+        for (Future<?> publisher : publishers) {
+            publisher.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(readAll(stream, 0)).isEqualTo(LongStream.range(0, 4_000).boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldSpillTheAmountTransactionTypeAndExactTimeOfAChange() {
+        final AccountChangeStream stream = stream(4, spillFile());
+        final Account account = buildAccount();
+        final Instant changedAt = NOW.plusNanos(123_456_789);
+        final Transaction debit = Transaction.builder()
+                .amount(2_500)
+                .transactionType(TransactionType.DEBIT)
+                .createdAt(changedAt)
+                .build();
+
+        stream.publish(stream.capture(account, debit, 97_500));
+        awaitSpilled(stream, 1);
+        publishSpilled(stream, 4);
+
+        final AccountChange change = stream.read(0, 1).get(0);
+        assertThat(change.getChangeType()).isEqualTo(AccountChangeType.BALANCE_CHANGED);
+        assertThat(change.getBalance()).isEqualTo(97_500);
+        assertThat(change.getAmount()).isEqualTo(2_500);
+        assertThat(change.getTransactionType()).isEqualTo(TransactionType.DEBIT);
+        assertThat(change.getChangedAt()).isEqualTo(changedAt);
+        assertThat(stream.read(1, 1).get(0).getTransactionType()).isNull();
+    }
+
+    @Test
+    public void shouldNotWaitForTheSpillWhenPublishing() {
+        final AccountChangeStream stream = stream(4, spillFile());
+        publish(stream, 10_000);
+
+        assertThat(stream.getNextSequence()).isEqualTo(10_000);
+        awaitSpilled(stream, 10_000);
+        for (long sequence = 0; sequence < 10_000; sequence += 97) {
+            final long fromSequence = sequence;
+            try {
+                assertThat(stream.read(fromSequence, 1)).extracting(AccountChange::getSequence)
+                        .containsExactly(fromSequence);
+            } catch (AccountChangesExpiredException e) {
+                // overwritten in the ring before the spiller got to it
+            }
+        }
+        assertThat(stream.read(9_999, 1)).extracting(AccountChange::getSequence).containsExactly(9_999L);
+    }
+
+    @Test
+    public void shouldWaitForAChangeWhenPolling() throws Exception {
+        final AccountChangeStream stream = stream(8, null);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        final Future<List<AccountChange>> poll = executor.submit(() -> stream.poll(0, 10, 5_000));
+        Thread.sleep(50);
+        stream.publish(AccountChangeType.CREATED, buildAccount());
+
+        assertThat(poll.get(5, TimeUnit.SECONDS)).extracting(AccountChange::getSequence).containsExactly(0L);
+        assertThat(stream.poll(1, 10, 10)).isEmpty();
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldCompleteAWaiterWhenAChangeIsPublished() throws Exception {
+        final AccountChangeStream stream = stream(8, null);
+        publish(stream, 1);
+
+        assertThat(stream.await(0, 10).getNow(null)).extracting(AccountChange::getSequence).containsExactly(0L);
+        final CompletableFuture<List<AccountChange>> waiter = stream.await(1, 10);
+        final CompletableFuture<List<AccountChange>> cancelled = stream.await(1, 10);
+        assertThat(waiter).isNotDone();
+
+        cancelled.cancel(false);
+        stream.publish(AccountChangeType.CREATED, buildAccount());
+
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).extracting(AccountChange::getSequence).containsExactly(1L);
+        assertThat(cancelled).isCancelled();
+    }
+
+    @Test
+    public void shouldRejectAReadBeyondTheNextSequence() {
+        final AccountChangeStream stream = stream(8, null);
+        publish(stream, 2);
+
+        assertThatThrownBy(() -> stream.read(3, 10)).isInstanceOf(InvalidPageRequestException.class);
+        assertThatThrownBy(() -> stream.read(-1, 10)).isInstanceOf(InvalidPageRequestException.class);
+    }
+
+    @Test
+    public void shouldNotPublishWhenDisabled() {
+        final AccountChangeStream stream = new AccountChangeStream(clock, false, 8, null, 0);
+        stream.publish(AccountChangeType.CREATED, buildAccount());
+
+        assertThat(stream.getNextSequence()).isZero();
+        assertThatThrownBy(() -> stream.read(0, 10)).isInstanceOf(AccountChangeStreamDisabledException.class);
+    }
+
+    @Test
+    public void shouldRejectAnInvalidConfiguration() {
+        assertThatThrownBy(() -> new AccountChangeStream(clock, true, 6, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AccountChangeStream(clock, true, 8, spillFile(), 4))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private AccountChangeStream stream(final int capacity, final String spillFile) {
+        final AccountChangeStream stream = new AccountChangeStream(clock, true, capacity, spillFile, 1 << 16);
+        streams.add(stream);
+        return stream;
+    }
+
+    private String spillFile() {
+        return directory.resolve("changes.spill").toString();
+    }
+
+    private void publish(final AccountChangeStream stream, final int changes) {
+        final Account account = buildAccount();
+        for (int i = 0; i < changes; i++) {
+            stream.publish(AccountChangeType.BALANCE_CHANGED, account);
+        }
+    }
+
+    private void publishSpilled(final AccountChangeStream stream, final int changes) {
+        final Account account = buildAccount();
+        for (int i = 0; i < changes; i++) {
+            stream.publish(AccountChangeType.BALANCE_CHANGED, account);
+            awaitSpilled(stream, stream.getNextSequence());
+        }
+    }
+
+    private void awaitSpilled(final AccountChangeStream stream, final long sequence) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (stream.getSpilledSequence() < sequence && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(stream.getSpilledSequence()).isEqualTo(sequence);
+    }
+
+    private List<Long> readAll(final AccountChangeStream stream, final long fromSequence) {
+        final List<Long> sequences = new ArrayList<>();
+        long next = fromSequence;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (next < stream.getNextSequence() && System.nanoTime() < deadline) {
+            final List<AccountChange> changes = stream.poll(next, 100, 10);
+            changes.forEach(change -> sequences.add(change.getSequence()));
+            next += changes.size();
+        }
+        return sequences;
+    }
+
+    private Account buildAccount() {
+        return Account.builder()
+                .IBAN(IBAN)
+                .accountType(AccountType.CHECKING_ACCOUNT)
+                .createdAt(NOW)
+                .build();
+    }
+}
@@ -0,0 +1,198 @@
+package com.codefactory.service.coalescing;
+
+import com.codefactory.exception.InvalidAmountException;
+import com.codefactory.service.TransferResult;
+import com.codefactory.service.TransferStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DepositCoalescerTest {
+
+    private final static String IBAN = "DE80801817944420161050";
+    private final static String ANOTHER_IBAN = "DE80811817954420161158";
+
+    private final List<long[]> commits = new ArrayList<>();
+
+    @Test
+    public void shouldCommitALoneDepositOnItsOwnWithoutWaitingForTheWindow() throws Exception {
+        final DepositCoalescer depositCoalescer = new DepositCoalescer(true, TimeUnit.SECONDS.toMicros(10), 8);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        final Future<TransferResult> result = executor.submit(() -> depositCoalescer.deposit(IBAN, 100, this::commit));
+
+        assertThat(result.get(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(commits).containsExactly(new long[]{100});
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldCommitDepositsArrivingDuringACommitTogether() throws Exception {
+        final DepositCoalescer depositCoalescer = new DepositCoalescer(true, TimeUnit.SECONDS.toMicros(10), 4);
+        final ExecutorService executor = Executors.newFixedThreadPool(5);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<TransferResult> first = depositWhileBlocked(depositCoalescer, executor, release);
+
+        final List<Future<TransferResult>> queued = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            final long amount = i;
+            queued.add(executor.submit(() -> depositCoalescer.deposit(IBAN, amount, this::commit)));
+        }
+        for (Future<TransferResult> result : queued) {
+            assertThat(result.get(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        }
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(commits).hasSize(2);
+        assertThat(commits.get(0)).containsExactlyInAnyOrder(1, 2, 3, 4);
+        assertThat(commits.get(1)).containsExactly(100);
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldCommitTheDepositsOfAFailedBatchOneByOne() throws Exception {
+        final DepositCoalescer depositCoalescer = new DepositCoalescer(true, TimeUnit.SECONDS.toMicros(10), 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<TransferResult> first = depositWhileBlocked(depositCoalescer, executor, release);
+        final DepositCoalescer.Committer overflowing = (IBAN, amounts) -> {
+            for (long amount : amounts) {
+                if (amount == Long.MAX_VALUE) {
+                    throw new InvalidAmountException("Amount would overflow the balance range");
+                }
+            }
+            return commit(IBAN, amounts);
+        };
+
+        final Future<TransferResult> valid = executor.submit(() -> depositCoalescer.deposit(IBAN, 1, overflowing));
+        final Future<TransferResult> overflow = executor.submit(() -> depositCoalescer.deposit(IBAN, Long.MAX_VALUE, overflowing));
+
+        assertThat(valid.get(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThatThrownBy(() -> overflow.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(InvalidAmountException.class);
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(commits).containsExactly(new long[]{1}, new long[]{100});
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldNotCommitMoreThanMaxDepositsAtOnce() throws Exception {
+        final DepositCoalescer depositCoalescer = new DepositCoalescer(true, 1_000, 3);
+
+        final List<TransferResult> results = depositConcurrently(depositCoalescer, 16, IBAN);
+
+        assertThat(results).hasSize(16).allMatch(TransferResult::isSuccess);
+        assertThat(commits).allMatch(amounts -> amounts.length <= 3);
+        assertThat(commits.stream().mapToLong(amounts -> amounts.length).sum()).isEqualTo(16);
+    }
+
+    @Test
+    public void shouldKeepBatchesOfDifferentAccountsApart() throws Exception {
+        final DepositCoalescer depositCoalescer = new DepositCoalescer(true, 1_000, 8);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        final Future<TransferResult> first = executor.submit(() -> depositCoalescer.deposit(IBAN, 1, this::commit));
+        final Future<TransferResult> second = executor.submit(() -> depositCoalescer.deposit(ANOTHER_IBAN, 2, this::commit));
+
+        assertThat(first.get(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(second.get(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(commits).containsExactlyInAnyOrder(new long[]{1}, new long[]{2});
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldGiveEveryDepositOfABatchItsRejectionOrFailure() throws Exception {
+        final DepositCoalescer depositCoalescer = new DepositCoalescer(true, TimeUnit.SECONDS.toMicros(10), 2);
+        final TransferResult locked = TransferResult.rejected(TransferStatus.ACCOUNT_LOCKED, IBAN);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        final List<Future<TransferResult>> rejected = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            rejected.add(executor.submit(() -> depositCoalescer.deposit(IBAN, 1, (IBAN, amounts) -> locked)));
+        }
+        for (Future<TransferResult> result : rejected) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(locked);
+        }
+
+        final AtomicLong failures = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            executor.submit(() -> {
+                try {
+                    depositCoalescer.deposit(IBAN, 1, (IBAN, amounts) -> {
+                        throw new InvalidAmountException("Amount would overflow the balance range");
+                    });
+                } catch (InvalidAmountException e) {
+                    failures.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(failures).hasValue(2);
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldRejectAnInvalidConfiguration() {
+        assertThatThrownBy(() -> new DepositCoalescer(true, -1, 8)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DepositCoalescer(true, 100, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Deposits 100 with a commit that blocks until {@code release}, and returns once that commit has started.
+     */
+    private Future<TransferResult> depositWhileBlocked(final DepositCoalescer depositCoalescer,
+                                                      final ExecutorService executor,
+                                                      final CountDownLatch release) throws InterruptedException {
+        final CountDownLatch committing = new CountDownLatch(1);
+        final Future<TransferResult> result = executor.submit(() -> depositCoalescer.deposit(IBAN, 100, (IBAN, amounts) -> {
+            committing.countDown();
+            await(release);
+            return commit(IBAN, amounts);
+        }));
+        assertThat(committing.await(5, TimeUnit.SECONDS)).isTrue();
+        return result;
+    }
+
+    private List<TransferResult> depositConcurrently(final DepositCoalescer depositCoalescer, final int deposits,
+                                                     final String IBAN) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(deposits);
+        final List<Future<TransferResult>> futures = new ArrayList<>();
+        for (int i = 1; i <= deposits; i++) {
+            final long amount = i;
+            futures.add(executor.submit(() -> depositCoalescer.deposit(IBAN, amount, this::commit)));
+        }
+
+        final List<TransferResult> results = new ArrayList<>();
+        for (Future<TransferResult> future : futures) {
+            results.add(future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized TransferResult commit(final String IBAN, final long[] amounts) {
+        commits.add(amounts);
+        return TransferResult.SUCCESS;
+    }
+}
@@ -0,0 +1,187 @@
+package com.codefactory.service.hot;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.entity.Transaction;
+import com.codefactory.domain.entity.TransactionType;
+import com.codefactory.domain.repository.InMemoryAccountRepository;
+import com.codefactory.service.TransferStatus;
+import com.codefactory.service.aggregate.AccountAggregates;
+import com.codefactory.service.change.AccountChangeStream;
+import com.codefactory.service.lock.StripedAccountLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HotAccountsTest {
+
+    private final static String IBAN = "DE80801817944420161050";
+    private final static int THRESHOLD = 4;
+    private final static Instant NOW = Instant.parse("2020-11-01T10:15:30Z");
+
+    private final InMemoryAccountRepository accountRepository = new InMemoryAccountRepository();
+    private final HotAccounts hotAccounts = new HotAccounts(accountRepository, new StripedAccountLock(16),
+            new AccountAggregates(accountRepository), new AccountChangeStream(Clock.systemUTC(), false, 1, null, 0), true,
+            THRESHOLD, 4);
+
+    @BeforeEach
+    public void setup() {
+        accountRepository.saveAccount(Account.builder()
+                .IBAN(IBAN)
+                .accountType(AccountType.CHECKING_ACCOUNT)
+                .createdAt(NOW)
+                .updatedAt(NOW)
+                .build());
+    }
+
+    @Test
+    public void shouldPromoteAnAccountOnceItReachesTheThreshold() {
+        for (int i = 1; i < THRESHOLD; i++) {
+            hotAccounts.recordCredit(IBAN);
+        }
+        assertThat(hotAccounts.isHot(IBAN)).isFalse();
+
+        hotAccounts.recordCredit(IBAN);
+
+        assertThat(hotAccounts.isHot(IBAN)).isTrue();
+        assertThat(hotAccounts.isTracked(IBAN)).isTrue();
+    }
+
+    @Test
+    public void shouldMergePendingCreditsInTimeOrderWhenTheAccountIsLookedUp() {
+        promote();
+
+        assertThat(hotAccounts.credit(IBAN, credit(300, NOW.plusSeconds(3))).isSuccess()).isTrue();
+        assertThat(hotAccounts.credit(IBAN, credit(100, NOW.plusSeconds(1))).isSuccess()).isTrue();
+        assertThat(hotAccounts.credit(IBAN, credit(200, NOW.plusSeconds(2))).isSuccess()).isTrue();
+        assertThat(accountRepository.getBankAccount(IBAN).get().getBalance()).isZero();
+
+        final Account account = hotAccounts.getMergedBankAccount(IBAN).get();
+
+        assertThat(account.getBalance()).isEqualTo(600);
+        assertThat(account.getUpdatedAt()).isEqualTo(NOW.plusSeconds(3));
+        assertThat(account.getTransactions()).extracting(Transaction::getAmount).containsExactly(100L, 200L, 300L);
+    }
+
+    @Test
+    public void shouldRejectCreditsToLockedAccounts() {
+        promote();
+        accountRepository.getBankAccount(IBAN).get().setLocked(true);
+
+        assertThat(hotAccounts.credit(IBAN, credit(100, NOW)).getStatus()).isEqualTo(TransferStatus.ACCOUNT_LOCKED);
+        assertThat(hotAccounts.getMergedBankAccount(IBAN).get().getBalance()).isZero();
+    }
+
+    @Test
+    public void shouldMergeAndCreditTheRegularWayOnceUntracked() {
+        promote();
+        assertThat(hotAccounts.credit(IBAN, credit(100, NOW)).isSuccess()).isTrue();
+
+        hotAccounts.untrack(IBAN);
+
+        assertThat(accountRepository.getBankAccount(IBAN).get().getBalance()).isEqualTo(100);
+        assertThat(hotAccounts.isTracked(IBAN)).isFalse();
+        assertThat(hotAccounts.credit(IBAN, credit(100, NOW))).isNull();
+    }
+
+    @Test
+    public void shouldLookUpWithoutSavingWhenNothingIsPending() {
+        final AtomicInteger saves = new AtomicInteger();
+        final InMemoryAccountRepository countingRepository = new InMemoryAccountRepository() {
+            @Override
+            public String saveAccount(final Account account) {
+                saves.incrementAndGet();
+                return super.saveAccount(account);
+            }
+        };
+        countingRepository.saveAccount(accountRepository.getBankAccount(IBAN).get());
+        final HotAccounts countingHotAccounts = new HotAccounts(countingRepository, new StripedAccountLock(16),
+                new AccountAggregates(countingRepository), new AccountChangeStream(Clock.systemUTC(), false, 1, null, 0),
+                true, THRESHOLD, 4);
+        for (int i = 0; i < THRESHOLD; i++) {
+            countingHotAccounts.recordCredit(IBAN);
+        }
+        countingHotAccounts.credit(IBAN, credit(100, NOW));
+
+        assertThat(countingHotAccounts.getMergedBankAccount(IBAN).get().getBalance()).isEqualTo(100);
+        assertThat(countingHotAccounts.getMergedBankAccount(IBAN).get().getBalance()).isEqualTo(100);
+        assertThat(saves).hasValue(2);
+    }
+
+    @Test
+    public void shouldCreditAccountsThatAreNotHotTheRegularWay() {
+        assertThat(hotAccounts.credit(IBAN, credit(100, NOW))).isNull();
+    }
+
+    @Test
+    public void shouldCoolDownAndStopTrackingAnAccountWithoutCredits() {
+        promote();
+        hotAccounts.credit(IBAN, credit(100, NOW));
+
+        hotAccounts.flush();
+        assertThat(hotAccounts.isHot(IBAN)).isTrue();
+        assertThat(accountRepository.getBankAccount(IBAN).get().getBalance()).isEqualTo(100);
+
+        hotAccounts.flush();
+        assertThat(hotAccounts.isHot(IBAN)).isFalse();
+        assertThat(hotAccounts.isTracked(IBAN)).isFalse();
+    }
+
+    @Test
+    public void shouldNotLoseCreditsWhileFlushingConcurrently() throws Exception {
+        promote();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<Integer>> futures = new ArrayList<>();
+        final AtomicBoolean crediting = new AtomicBoolean(true);
+
+        final Future<?> flusher = executor.submit(() -> {
+            while (crediting.get()) {
+                hotAccounts.flush();
+            }
+        });
+        for (int t = 0; t < 7; t++) {
+            futures.add(executor.submit(() -> {
+                int regular = 0;
+                for (int i = 0; i < 10_000; i++) {
+                    if (hotAccounts.credit(IBAN, credit(1, NOW)) == null) {
+                        regular++;
+                    }
+                }
+                return regular;
+            }));
+        }
+        long regular = 0;
+        for (Future<Integer> future : futures) {
+            regular += future.get(30, TimeUnit.SECONDS);
+        }
+        crediting.set(false);
+        flusher.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        final Account account = hotAccounts.getMergedBankAccount(IBAN).get();
+        assertThat(account.getBalance() + regular).isEqualTo(70_000);
+        assertThat(account.getTransactions().size() + regular).isEqualTo(70_000);
+    }
+
+    private void promote() {
+        for (int i = 0; i < THRESHOLD; i++) {
+            hotAccounts.recordCredit(IBAN);
+        }
+    }
+
+    private static Transaction credit(final long amount, final Instant createdAt) {
+        return Transaction.builder().amount(amount).transactionType(TransactionType.CREDIT).createdAt(createdAt).build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.codefactory.service.iban;
+
+import com.codefactory.domain.entity.Account;
+import com.codefactory.domain.entity.AccountType;
+import com.codefactory.domain.repository.IBANKey;
+import com.codefactory.domain.repository.InMemoryAccountRepository;
+import org.iban4j.IbanUtil;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class IBANAllocatorTest {
+
+    @Test
+    public void shouldAllocateValidIBANsOfTheBankCode() {
+        final IBANAllocator ibanAllocator = new IBANAllocator(0, 100);
+
+        for (int i = 0; i < 10_000; i++) {
+            final String IBAN = ibanAllocator.next();
+            IbanUtil.validate(IBAN);
+            assertThat(IbanUtil.getBankCode(IBAN)).isEqualTo(IBANKey.BANK_CODE);
+        }
+        IbanUtil.validate(IBANKey.toIBAN(9_999_999_999L));
+    }
+
+    @Test
+    public void shouldAllocateUniqueIBANsAcrossThreads() throws Exception {
+        final IBANAllocator ibanAllocator = new IBANAllocator(1, 64);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                final List<String> IBANs = new ArrayList<>();
+                for (int i = 0; i < 10_000; i++) {
+                    IBANs.add(ibanAllocator.next());
+                }
+                return IBANs;
+            }));
+        }
+
+        final Set<String> allocated = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            allocated.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertThat(allocated).hasSize(80_000);
+    }
+
+    @Test
+    public void shouldContinueAfterHighestStoredAccountNumber() {
+        final InMemoryAccountRepository accountRepository = new InMemoryAccountRepository();
+        final String stored = IBANKey.toIBAN(41);
+        accountRepository.saveAccount(Account.builder()
+                .accountType(AccountType.CHECKING_ACCOUNT)
+                .IBAN(stored)
+                .createdAt(Instant.EPOCH)
+                .updatedAt(Instant.EPOCH)
+                .build());
+
+        final IBANAllocator ibanAllocator = new IBANAllocator(accountRepository, 16);
+
+        assertThat(ibanAllocator.next()).isEqualTo(IBANKey.toIBAN(42));
+    }
+
+    @Test
+    public void shouldFailWhenAccountNumbersAreExhausted() {
+        final IBANAllocator ibanAllocator = new IBANAllocator(9_999_999_990L, 16);
+
+        Throwable throwable = catchThrowable(ibanAllocator::next);
+
+        assertThat(throwable).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldTakeNothingWhenAReservationIsRefused() {
+        final IBANAllocator ibanAllocator = new IBANAllocator(1, 16);
+
+        assertThat(catchThrowable(() -> ibanAllocator.reserve(2 * 1_500_000_000))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> ibanAllocator.reserve(0))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> ibanAllocator.reserve(10_000_000_000L))).isInstanceOf(IllegalStateException.class);
+
+        assertThat(IBANKey.of(ibanAllocator.reserve(1).next())).isEqualTo(1);
+    }
+}
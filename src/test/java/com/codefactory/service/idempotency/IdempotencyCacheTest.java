@@ -0,0 +1,167 @@
+package com.codefactory.service.idempotency;
+
+import com.codefactory.exception.IdempotencyKeyReusedException;
+import com.codefactory.exception.InvalidIdempotencyKeyException;
+import com.codefactory.service.TransferResult;
+import com.codefactory.service.TransferStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class IdempotencyCacheTest {
+
+    private final static String KEY = "5f0c6e1a-7d1b-4c59-8d8e-2d4b7c9e0f11";
+    private final static String REQUEST = "/transaction/deposit DE80801817944420161050 100";
+    private final static TransferResult LOCKED = TransferResult.rejected(TransferStatus.ACCOUNT_LOCKED, "DE80801817944420161050");
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Test
+    public void shouldReturnTheFirstResultWithoutRunningTheOperationAgain() {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.ofMinutes(10), 16, now::get);
+
+        final TransferResult first = cache.execute(KEY, REQUEST, this::lockedAccount);
+        final TransferResult retry = cache.execute(KEY, REQUEST, this::lockedAccount);
+
+        assertThat(retry).isSameAs(first).isSameAs(LOCKED);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRefuseAKeyReusedForADifferentRequest() {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.ofMinutes(10), 16, now::get);
+        cache.execute(KEY, REQUEST, this::lockedAccount);
+
+        final Throwable throwable = catchThrowable(() -> cache.execute(KEY, REQUEST + "0", this::lockedAccount));
+
+        assertThat(throwable).isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRejectKeysThatAreTooLong() {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.ofMinutes(10), 16, now::get);
+
+        final Throwable throwable = catchThrowable(() -> cache.execute("k".repeat(IdempotencyCache.MAX_KEY_LENGTH + 1),
+                REQUEST, this::lockedAccount));
+
+        assertThat(throwable).isInstanceOf(InvalidIdempotencyKeyException.class);
+        assertThat(runs.get()).isZero();
+    }
+
+    @Test
+    public void shouldRunTheOperationAgainOnceTheKeyExpired() {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.ofSeconds(60), 16, now::get);
+        cache.execute(KEY, REQUEST, this::lockedAccount);
+
+        now.addAndGet(Duration.ofSeconds(60).toNanos());
+        cache.execute(KEY, REQUEST + "0", this::lockedAccount);
+
+        assertThat(runs.get()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldEvictTheOldestKeysBeyondMaxKeys() {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.ofMinutes(10), 4, now::get);
+        for (int i = 0; i < 10; i++) {
+            cache.execute(KEY + i, REQUEST, this::lockedAccount);
+        }
+
+        assertThat(cache.size()).isEqualTo(4);
+        cache.execute(KEY + 9, REQUEST, this::lockedAccount);
+        assertThat(runs.get()).isEqualTo(10);
+        cache.execute(KEY + 0, REQUEST, this::lockedAccount);
+        assertThat(runs.get()).isEqualTo(11);
+    }
+
+    @Test
+    public void shouldNotEvictAKeyWhoseFirstRequestIsStillRunning() throws Exception {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.ofSeconds(60), 1, now::get);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        final Future<TransferResult> first = executor.submit(() -> cache.execute(KEY, REQUEST, () -> {
+            running.countDown();
+            awaitQuietly(release);
+            return lockedAccount();
+        }));
+        assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+        cache.execute(KEY + 0, REQUEST, this::lockedAccount);
+        now.addAndGet(Duration.ofSeconds(60).toNanos());
+        final Throwable throwable = catchThrowable(() -> cache.execute(KEY, REQUEST + "0", this::lockedAccount));
+        release.countDown();
+        executor.shutdown();
+
+        assertThat(throwable).isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(first.get(10, TimeUnit.SECONDS)).isSameAs(LOCKED);
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotRememberAnOperationThatFailed() {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.ofMinutes(10), 16, now::get);
+
+        final Throwable throwable = catchThrowable(() -> cache.execute(KEY, REQUEST, () -> {
+            throw new IllegalStateException("journal closed");
+        }));
+        final TransferResult retry = cache.execute(KEY, REQUEST, this::lockedAccount);
+
+        assertThat(throwable).isInstanceOf(IllegalStateException.class);
+        assertThat(retry).isSameAs(LOCKED);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRunConcurrentRetriesOfTheSameKeyOnce() throws Exception {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.ofMinutes(10), 16, now::get);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<TransferResult>> results = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return cache.execute(KEY, REQUEST, () -> {
+                    runs.incrementAndGet();
+                    return TransferResult.SUCCESS;
+                });
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        for (Future<TransferResult> result : results) {
+            assertThat(result.get().isSuccess()).isTrue();
+        }
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private TransferResult lockedAccount() {
+        runs.incrementAndGet();
+        return LOCKED;
+    }
+}
@@ -0,0 +1,87 @@
+package com.codefactory.service.shard;
+
+import com.codefactory.service.lock.StripedAccountLock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LedgerShardsTest {
+
+    private final static String IBAN = "DE80801817944420161050";
+
+    private final StripedAccountLock accountLock = new StripedAccountLock(64);
+    private final LedgerShards ledgerShards = new LedgerShards(accountLock, true, 4, 2);
+
+    @AfterEach
+    public void tearDown() {
+        ledgerShards.close();
+    }
+
+    @Test
+    public void shouldRunTasksForOneAccountOnOneThreadInSubmissionOrder() {
+        final List<Integer> order = new ArrayList<>();
+        final List<String> threads = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final int task = i;
+            ledgerShards.submit(IBAN, () -> {
+                order.add(task);
+                threads.add(Thread.currentThread().getName());
+            });
+        }
+
+        final int size = ledgerShards.call(IBAN, order::size);
+
+        assertThat(size).isEqualTo(100);
+        assertThat(order).isSorted();
+        assertThat(threads).containsOnly(threads.get(0));
+        assertThat(threads.get(0)).startsWith("ledger-shard-");
+    }
+
+    @Test
+    public void shouldAssignAccountsSharingAStripeToTheSameShard() {
+        for (int i = 0; i < 1000; i++) {
+            final String first = "DE" + i;
+            final String second = "DE" + (i * 31 + 7);
+            if (accountLock.stripeOf(first) == accountLock.stripeOf(second)) {
+                assertThat(ledgerShards.call(first, () -> Thread.currentThread().getName()))
+                        .isEqualTo(ledgerShards.call(second, () -> Thread.currentThread().getName()));
+            }
+        }
+    }
+
+    @Test
+    public void shouldRethrowWhatTheTaskThrew() {
+        assertThatThrownBy(() -> ledgerShards.call(IBAN, () -> {
+            throw new IllegalArgumentException("rejected");
+        })).isInstanceOf(IllegalArgumentException.class).hasMessage("rejected");
+
+        assertThat(ledgerShards.call(IBAN, () -> "still running")).isEqualTo("still running");
+    }
+
+    @Test
+    public void shouldRunEverythingQueuedBeforeClosingAndRejectLaterRequests() {
+        final AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            ledgerShards.submit("DE" + i, ran::incrementAndGet);
+        }
+
+        ledgerShards.close();
+
+        assertThat(ran).hasValue(10);
+        assertThatThrownBy(() -> ledgerShards.submit(IBAN, ran::incrementAndGet)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldNotStartShardsWhenDisabled() {
+        final LedgerShards disabled = new LedgerShards(accountLock, false, 4, 2);
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThatThrownBy(() -> disabled.call(IBAN, () -> 1)).isInstanceOf(IllegalStateException.class);
+    }
+}